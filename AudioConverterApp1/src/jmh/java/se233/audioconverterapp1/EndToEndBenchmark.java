@@ -0,0 +1,296 @@
+package se233.audioconverterapp1;
+
+import se233.audioconverterapp1.model.ConversionListener;
+import se233.audioconverterapp1.model.ConversionManager;
+import se233.audioconverterapp1.model.FileInfo;
+import se233.audioconverterapp1.util.AudioFormatSniffer;
+import se233.audioconverterapp1.util.FFmpegManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// benchmark แบบ end-to-end: สร้างไฟล์เสียงทดสอบด้วย lavfi ของ ffmpeg (ได้ไฟล์เดิมทุกครั้ง)
+// แล้วแปลงทั้งชุดผ่าน ConversionManager/ConversionTask จริงที่จำนวนงานพร้อมกันต่าง ๆ
+// รายงาน files/sec, realtime factor, latency p50/p95 ต่องาน และ RSS สูงสุด (JVM + ffmpeg) เป็น JSON
+// รัน: mvn -P benchmark package exec:exec@e2e -De2e.args="--concurrency 1,4,8 --format mp3"
+public class EndToEndBenchmark {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: EndToEndBenchmark [options]",
+            "  --corpus DIR          where the synthetic inputs are generated/reused (default: target/e2e-corpus)",
+            "  --durations LIST      input lengths in seconds (default: 10,60,180)",
+            "  --copies N            files per duration/format/channel combination (default: 2)",
+            "  --concurrency LIST    concurrency levels to run (default: 1,2,4,<cores>)",
+            "  --format FORMAT       target format, may be several joined with + (default: mp3)",
+            "  --segment-min SEC     segment-parallel threshold passed to ConversionManager (default: 600)",
+            "  --ffmpeg PATH         ffmpeg binary to use",
+            "  --report FILE         JSON report (default: target/e2e-report.json)");
+
+    private static final String[] SOURCE_FORMATS = {"wav", "flac", "mp3", "m4a"};
+    private static final int[] CHANNELS = {1, 2};
+    private static final long RSS_SAMPLE_MS = 100;
+
+    public static void main(String[] args) throws Exception {
+        Path corpus = Path.of("target", "e2e-corpus");
+        Path report = Path.of("target", "e2e-report.json");
+        int[] durations = {10, 60, 180};
+        int copies = 2;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int[] concurrency = Arrays.stream(new int[]{1, 2, 4, cores}).filter(c -> c <= cores).distinct().toArray();
+        String format = "mp3";
+        double segmentMin = ConversionManager.DEFAULT_SEGMENT_MIN_DURATION;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--corpus" -> corpus = Path.of(args[++i]);
+                    case "--durations" -> durations = parseList(args[++i]);
+                    case "--copies" -> copies = Integer.parseInt(args[++i]);
+                    case "--concurrency" -> concurrency = parseList(args[++i]);
+                    case "--format" -> format = args[++i];
+                    case "--segment-min" -> segmentMin = Double.parseDouble(args[++i]);
+                    case "--ffmpeg" -> System.setProperty(FFmpegManager.OVERRIDE_PROPERTY, args[++i]);
+                    case "--report" -> report = Path.of(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e.getMessage() != null ? e.getMessage() : "Missing option value.");
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        if (!FFmpegManager.isFFmpegAvailable()) {
+            System.err.println("FFmpeg is not available; set it with --ffmpeg PATH.");
+            System.exit(1);
+        }
+
+        List<Path> inputs = generateCorpus(corpus, durations, copies);
+        double audioSeconds = 0;
+        for (int d : durations) audioSeconds += (double) d * copies * SOURCE_FORMATS.length * CHANNELS.length;
+        System.out.printf(Locale.ROOT, "Corpus: %d files, %.0f s of audio in %s%n", inputs.size(), audioSeconds,
+                corpus.toAbsolutePath());
+
+        List<String> runs = new ArrayList<>();
+        for (int jobs : concurrency) {
+            runs.add(runOnce(inputs, audioSeconds, jobs, format, segmentMin, corpus.resolve("out-" + jobs)));
+        }
+
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        try (PrintStream out = new PrintStream(Files.newOutputStream(report), true, StandardCharsets.UTF_8)) {
+            out.println("{");
+            out.println("  \"cores\": " + cores + ",");
+            out.println("  \"java\": " + quote(System.getProperty("java.version")) + ",");
+            out.println("  \"os\": " + quote(System.getProperty("os.name") + " " + System.getProperty("os.arch")) + ",");
+            out.println("  \"ffmpeg\": " + quote(String.valueOf(FFmpegManager.getCapabilities().getVersion())) + ",");
+            out.println("  \"format\": " + quote(format) + ",");
+            out.println("  \"files\": " + inputs.size() + ",");
+            out.println("  \"audioSeconds\": " + audioSeconds + ",");
+            out.println("  \"runs\": [");
+            out.println(String.join(",\n", runs));
+            out.println("  ]");
+            out.println("}");
+        }
+        System.out.println("Report written to " + report.toAbsolutePath());
+    }
+
+    // สร้างไฟล์ทดสอบทุกแบบ (ข้ามไฟล์ที่มีอยู่แล้ว) ใช้ pink noise แบบกำหนด seed เพื่อให้ได้ไฟล์เดิมทุกครั้ง
+    // และให้ encoder ทำงานจริง (เสียงเงียบหรือ sine บีบอัดง่ายเกินไป)
+    // ต้นฉบับ mp3/m4a ใช้ 128k เพื่อไม่ให้ตรงกับค่าตั้งของการแปลงแล้วกลายเป็นแค่การคัดลอก
+    private static List<Path> generateCorpus(Path corpus, int[] durations, int copies)
+            throws IOException, InterruptedException {
+        Files.createDirectories(corpus);
+        String ffmpeg = FFmpegManager.getFFmpegPath();
+        List<Path> inputs = new ArrayList<>();
+        for (int duration : durations) {
+            for (String format : SOURCE_FORMATS) {
+                for (int channels : CHANNELS) {
+                    for (int copy = 0; copy < copies; copy++) {
+                        Path file = corpus.resolve(String.format(Locale.ROOT, "noise-%ds-%s-%dch-%d.%s",
+                                duration, format, channels, copy, format));
+                        inputs.add(file);
+                        if (Files.isRegularFile(file) && Files.size(file) > 0) continue;
+
+                        List<String> command = new ArrayList<>(List.of(ffmpeg, "-y", "-nostdin", "-v", "error",
+                                "-f", "lavfi", "-i", String.format(Locale.ROOT,
+                                        "anoisesrc=d=%d:c=pink:r=44100:a=0.3:seed=%d", duration, 42 + copy),
+                                "-ac", Integer.toString(channels)));
+                        switch (format) {
+                            case "mp3" -> command.addAll(List.of("-c:a", "libmp3lame", "-b:a", "128k"));
+                            case "m4a" -> command.addAll(List.of("-c:a", "aac", "-b:a", "128k"));
+                            default -> { }
+                        }
+                        command.add(file.toString());
+                        Process process = new ProcessBuilder(command).inheritIO().start();
+                        if (process.waitFor() != 0) throw new IOException("ffmpeg could not generate " + file);
+                    }
+                }
+            }
+        }
+        return inputs;
+    }
+
+    // แปลงทั้งชุดหนึ่งรอบที่จำนวนงานพร้อมกันที่กำหนด คืนผลเป็น JSON object
+    private static String runOnce(List<Path> inputs, double audioSeconds, int jobs, String format, double segmentMin,
+                                  Path outputDir) throws IOException, InterruptedException {
+        deleteTree(outputDir); // เริ่มจากโฟลเดอร์ว่าง ไม่ให้ manifest ข้ามไฟล์ที่เคยแปลงแล้ว
+        Files.createDirectories(outputDir);
+
+        List<FileInfo> files = new ArrayList<>(inputs.size());
+        for (Path input : inputs) {
+            File file = input.toFile();
+            FileInfo info = new FileInfo(file.getAbsolutePath(), AudioFormatSniffer.detect(file), file.length());
+            info.setTargetFormat(format);
+            files.add(info);
+        }
+
+        LatencyRecorder recorder = new LatencyRecorder();
+        RssSampler rss = new RssSampler();
+        ConversionManager manager = new ConversionManager(jobs);
+        manager.setSegmentMinDuration(segmentMin);
+
+        System.out.printf(Locale.ROOT, "Running %d file(s) with %d concurrent job(s)...%n", files.size(), jobs);
+        rss.start();
+        long start = System.nanoTime();
+        manager.startConversions(files, format, recorder, "192k", "44100", "2", outputDir.toFile());
+        manager.awaitCompletion();
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+        rss.stop();
+
+        long[] latencies = recorder.latenciesNanos();
+        long failed = files.stream().filter(f -> !f.getStatus().startsWith("Done")).count();
+        String result = String.format(Locale.ROOT,
+                "    {\"concurrency\": %d, \"wallSeconds\": %.3f, \"filesPerSecond\": %.3f, \"realtimeFactor\": %.2f, "
+                        + "\"latencyP50Ms\": %.1f, \"latencyP95Ms\": %.1f, \"latencyMaxMs\": %.1f, "
+                        + "\"peakRssBytes\": %d, \"peakJvmRssBytes\": %d, \"failed\": %d}",
+                jobs, wallSeconds, files.size() / wallSeconds, audioSeconds / wallSeconds,
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.95) / 1e6,
+                percentile(latencies, 1.0) / 1e6, rss.peakTotal(), rss.peakJvm(), failed);
+        System.out.println(result.trim());
+        return result;
+    }
+
+    // เวลาของแต่ละงานนับจากเริ่มแปลง ("Converting...") จนได้สถานะสุดท้าย (ไม่รวมเวลารอคิว)
+    private static class LatencyRecorder implements ConversionListener {
+        private final Map<FileInfo, Long> started = new ConcurrentHashMap<>();
+        private final Map<FileInfo, Long> latency = new ConcurrentHashMap<>();
+
+        @Override
+        public void onProgress(FileInfo file, double progress) {
+            file.setProgress(progress);
+        }
+
+        @Override
+        public void onStatus(FileInfo file, String status) {
+            file.setStatus(status);
+            if (status.startsWith("Converting")) {
+                started.putIfAbsent(file, System.nanoTime());
+            } else if (!status.equals("Queued")) {
+                Long begin = started.get(file);
+                if (begin != null) latency.putIfAbsent(file, System.nanoTime() - begin);
+            }
+        }
+
+        long[] latenciesNanos() {
+            return latency.values().stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+    }
+
+    // วัด RSS ทุก 100 ms: ของ JVM เองและของ process ลูก (ffmpeg) รวมกัน (อ่านจาก /proc บน Linux)
+    // ระบบอื่นที่ไม่มี /proc จะรายงานเฉพาะหน่วยความจำ heap ที่ JVM ใช้อยู่
+    private static class RssSampler {
+        private final AtomicLong peakTotal = new AtomicLong();
+        private final AtomicLong peakJvm = new AtomicLong();
+        private volatile boolean running;
+        private Thread thread;
+
+        void start() {
+            running = true;
+            thread = Thread.ofPlatform().daemon().name("rss-sampler").start(() -> {
+                while (running) {
+                    sample();
+                    try {
+                        Thread.sleep(RSS_SAMPLE_MS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.interrupt();
+            thread.join();
+            sample();
+        }
+
+        long peakTotal() { return peakTotal.get(); }
+        long peakJvm() { return peakJvm.get(); }
+
+        private void sample() {
+            long jvm = rssOf(ProcessHandle.current().pid());
+            if (jvm < 0) {
+                Runtime rt = Runtime.getRuntime();
+                jvm = rt.totalMemory() - rt.freeMemory();
+            }
+            long total = jvm;
+            for (ProcessHandle child : ProcessHandle.current().descendants().toList()) {
+                total += Math.max(0, rssOf(child.pid()));
+            }
+            peakJvm.accumulateAndGet(jvm, Math::max);
+            peakTotal.accumulateAndGet(total, Math::max);
+        }
+
+        private static long rssOf(long pid) {
+            Path status = Path.of("/proc", Long.toString(pid), "status");
+            try {
+                for (String line : Files.readAllLines(status)) {
+                    if (line.startsWith("VmRSS:")) {
+                        String[] parts = line.trim().split("\\s+"); // "VmRSS:   123456 kB"
+                        return Long.parseLong(parts[1]) * 1024;
+                    }
+                }
+            } catch (IOException | RuntimeException ignored) {
+                // process จบไปแล้ว หรือไม่ใช่ Linux
+            }
+            return -1;
+        }
+    }
+
+    // percentile แบบ nearest-rank จากค่าที่เรียงแล้ว
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static int[] parseList(String value) {
+        return Arrays.stream(value.split(",")).map(String::trim).filter(s -> !s.isEmpty())
+                .mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+        }
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
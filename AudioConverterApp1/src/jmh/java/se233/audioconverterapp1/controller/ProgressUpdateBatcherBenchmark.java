@@ -0,0 +1,68 @@
+package se233.audioconverterapp1.controller;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.*;
+import se233.audioconverterapp1.model.FileInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// วัดต้นทุนต่อเฟรมของการอัปเดต progress ในตาราง (สิ่งที่ ConversionController.updateGlobalProgress ทำ)
+// ตามจำนวนแถว 1k - 100k: เฟรมหนึ่งมีงานรายงานเข้ามาเท่าจำนวน worker แล้วคำนวณ progress รวม
+// ไม่ต้องใช้ FX toolkit: ส่ง frameRequest ว่างให้ batcher แล้วเรียก applyPending เองแทนเฟรม
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProgressUpdateBatcherBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    @Param({"8"})
+    public int activeJobs; // จำนวนงานที่รายงาน progress ในแต่ละเฟรม
+
+    private ObservableList<FileInfo> fileData;
+    private ProgressUpdateBatcher batcher;
+    private FileInfo[] reporting;
+    private double step;
+
+    @Setup
+    public void setup() {
+        List<FileInfo> files = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            files.add(new FileInfo("/music/album-" + (i / 12) + "/track-" + i + ".flac", "flac", 32_089_088L));
+        }
+        fileData = FXCollections.observableArrayList(files);
+        batcher = new ProgressUpdateBatcher(fileData, _ -> { }, () -> { });
+        reporting = new FileInfo[activeJobs];
+        for (int i = 0; i < activeJobs; i++) reporting[i] = files.get(i * (rows / activeJobs));
+    }
+
+    // หนึ่งเฟรม: worker รายงานค่าใหม่ -> นำไปใช้กับแถว -> อ่าน progress รวมให้แถบด้านล่าง
+    @Benchmark
+    public double frame() {
+        step = step >= 1.0 ? 0.0 : step + 0.001;
+        for (FileInfo file : reporting) batcher.onProgress(file, step);
+        batcher.applyPending();
+        return batcher.getOverallProgress();
+    }
+
+    // progress รวมอย่างเดียว (ควรคงที่ไม่ว่าจะมีกี่แถว)
+    @Benchmark
+    public double overallProgress() {
+        return batcher.getOverallProgress();
+    }
+
+    // วิธีเดิมที่วนทุกแถว เก็บไว้เป็นเส้นฐานให้เห็นว่า regression กลับไปเป็น O(N) หน้าตาเป็นอย่างไร
+    @Benchmark
+    public double overallProgressFullScan() {
+        double sum = 0;
+        for (FileInfo file : fileData) sum += file.getProgress();
+        return fileData.isEmpty() ? 0.0 : sum / fileData.size();
+    }
+}
@@ -0,0 +1,60 @@
+package se233.audioconverterapp1.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// วัดต้นทุนของคิวงานที่ ConversionManager ใช้ (ส่งงานเข้าคิว -> worker หยิบไปรัน -> จบ)
+// งานว่างเปล่าจึงเห็นเฉพาะค่าใช้จ่ายของการจัดคิว ไม่รวมเวลาของ ffmpeg
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConversionSchedulerBenchmark {
+
+    @Param({"100", "1000"})
+    public int jobs;
+
+    private ConversionScheduler scheduler;
+
+    @Setup
+    public void setup() {
+        scheduler = new ConversionScheduler();
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    // ส่งงานทั้งชุดแล้วรอจนทุกงานจบ (เหมือนกด Convert กับไฟล์ jobs ไฟล์)
+    @Benchmark
+    public void submitAndDrain() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(jobs);
+        for (int i = 0; i < jobs; i++) scheduler.submit(done::countDown);
+        done.await();
+    }
+
+    // ส่งงานเข้าคิวแล้วล้างคิวทิ้ง (เหมือนกด Convert แล้ว Cancel ทันที)
+    @Benchmark
+    public int submitAndClear() {
+        scheduler.setMaxConcurrent(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        scheduler.submit(() -> {
+            try {
+                gate.await(); // กัน worker ไว้ ให้งานที่เหลือค้างอยู่ในคิว
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < jobs; i++) scheduler.submit(() -> { });
+        int queued = scheduler.getQueuedCount();
+        scheduler.clearQueue();
+        gate.countDown();
+        scheduler.setMaxConcurrent(ConversionScheduler.DEFAULT_CONCURRENCY);
+        return queued;
+    }
+}
@@ -0,0 +1,44 @@
+package se233.audioconverterapp1.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// วัดต้นทุนการสร้าง FileInfo หนึ่งแถว (นำเข้าโฟลเดอร์ใหญ่ ๆ สร้างเป็นหมื่นแถว)
+// ดูขนาดที่จองต่อแถวได้จาก gc.alloc.rate.norm เมื่อรันด้วย -prof gc
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FileInfoBenchmark {
+
+    private static final int PATHS = 1024;
+
+    private String[] paths;
+    private int next;
+
+    @Setup
+    public void setup() {
+        paths = new String[PATHS];
+        for (int i = 0; i < PATHS; i++) {
+            paths[i] = "/home/user/Music/Artist " + (i / 100) + "/Album " + (i / 12) + "/" + (i % 12 + 1)
+                    + " - Track title " + i + ".flac";
+        }
+    }
+
+    @Benchmark
+    public FileInfo construct() {
+        String path = paths[next++ & (PATHS - 1)];
+        return new FileInfo(path, "flac", 32_089_088L);
+    }
+
+    // สร้างแล้วอ่านค่าที่ตารางใช้แสดงผลทุกคอลัมน์
+    @Benchmark
+    public int constructAndRead() {
+        FileInfo info = construct();
+        return info.getFileName().length() + info.getFormat().length() + info.getSize().length()
+                + info.getStatus().length() + info.getTargetFormat().length() + (int) info.getProgress();
+    }
+}
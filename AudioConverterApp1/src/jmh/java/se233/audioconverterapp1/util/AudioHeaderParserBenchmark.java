@@ -0,0 +1,80 @@
+package se233.audioconverterapp1.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// วัดเวลาอ่านข้อมูลสตรีมจากหัวไฟล์ (แทน ffprobe ที่ใช้หลายสิบมิลลิวินาทีต่อไฟล์)
+// ไฟล์ทดสอบสร้างเองใน @Setup ให้มีโครงสร้างหัวไฟล์เหมือนไฟล์จริง (ข้อมูลเสียงเป็นค่าว่าง)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AudioHeaderParserBenchmark {
+
+    @Param({"wav", "flac", "mp3"})
+    public String format;
+
+    private Path dir;
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("header-bench");
+        file = dir.resolve("sample." + format).toFile();
+        Files.write(file.toPath(), switch (format) {
+            case "wav" -> wav();
+            case "flac" -> flac();
+            default -> mp3();
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public MediaInfo parse() {
+        return AudioHeaderParser.parse(file);
+    }
+
+    // 10 วินาที 44.1 kHz stereo 16 บิต
+    private static byte[] wav() {
+        int data = 44100 * 4 * 10;
+        ByteBuffer b = ByteBuffer.allocate(44 + data).order(ByteOrder.LITTLE_ENDIAN);
+        b.put("RIFF".getBytes()).putInt(36 + data).put("WAVEfmt ".getBytes()).putInt(16)
+                .putShort((short) 1).putShort((short) 2).putInt(44100).putInt(44100 * 4)
+                .putShort((short) 4).putShort((short) 16).put("data".getBytes()).putInt(data);
+        return b.array();
+    }
+
+    // STREAMINFO ของ 10 วินาที 44.1 kHz stereo 16 บิต ตามด้วยข้อมูลว่าง
+    private static byte[] flac() {
+        ByteBuffer b = ByteBuffer.allocate(4 + 4 + 34 + 64 * 1024);
+        long packed = (44100L << 44) | (1L << 41) | (15L << 36) | 441000L;
+        b.put("fLaC".getBytes()).put(new byte[]{(byte) 0x80, 0, 0, 34})
+                .putShort((short) 4096).putShort((short) 4096).put(new byte[6]).putLong(packed);
+        return b.array();
+    }
+
+    // mp3 CBR 128 kbit/s 44.1 kHz stereo ~10 วินาที
+    private static byte[] mp3() {
+        ByteBuffer b = ByteBuffer.allocate(383 * 418);
+        for (int i = 0; i < 383; i++) {
+            int padding = i % 2;
+            b.put(new byte[]{(byte) 0xFF, (byte) 0xFB, (byte) (0x90 | padding << 1), 0});
+            b.position(b.position() + 144 * 128000 / 44100 + padding - 4);
+        }
+        return b.array();
+    }
+}
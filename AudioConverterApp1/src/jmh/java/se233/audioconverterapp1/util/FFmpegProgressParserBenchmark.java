@@ -0,0 +1,62 @@
+package se233.audioconverterapp1.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// วัดความเร็วการอ่าน progress ของ ffmpeg (ทำทุกครั้งที่ ffmpeg ส่งข้อมูล ในทุกงานที่รันอยู่)
+// ข้อมูลทดสอบเป็นชุด key=value แบบเดียวกับที่ ffmpeg -progress ส่งจริง
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FFmpegProgressParserBenchmark {
+
+    private static final int BLOCKS = 1000; // ~ไฟล์ยาว 8 นาทีที่ ffmpeg รายงานทุก 0.5 วินาที
+
+    private byte[] stream;  // ทั้ง stream ของหนึ่งงาน
+    private byte[] block;   // หนึ่งชุด (หนึ่งการอัปเดต)
+    private FFmpegProgressParser reused;
+
+    @Setup
+    public void setup() {
+        StringBuilder all = new StringBuilder();
+        for (int i = 0; i < BLOCKS; i++) all.append(block(i, i == BLOCKS - 1));
+        stream = all.toString().getBytes(StandardCharsets.US_ASCII);
+        block = block(42, false).getBytes(StandardCharsets.US_ASCII);
+        reused = new FFmpegProgressParser();
+        reused.setListener(p -> true);
+    }
+
+    // หนึ่งชุดตามรูปแบบของ ffmpeg 6.x (audio-only จึงไม่มี frame/fps)
+    private static String block(int i, boolean last) {
+        long us = i * 500_000L;
+        return String.format(Locale.ROOT,
+                "bitrate=%.1fkbits/s\ntotal_size=%d\nout_time_us=%d\nout_time_ms=%d\nout_time=00:%02d:%02d.%06d\n"
+                        + "dup_frames=0\ndrop_frames=0\nspeed=%.3gx\nprogress=%s\n",
+                192.0 + (i % 7) / 10.0, 12_000L * i, us, us, (us / 60_000_000) % 60, (us / 1_000_000) % 60,
+                us % 1_000_000, 40.0 + (i % 13), last ? "end" : "continue");
+    }
+
+    // อ่าน stream ทั้งงานผ่าน InputStream (เส้นทางเดียวกับ ConversionTask)
+    @Benchmark
+    @OperationsPerInvocation(BLOCKS)
+    public long parseStream() throws IOException {
+        FFmpegProgressParser parser = new FFmpegProgressParser();
+        parser.parse(new ByteArrayInputStream(stream), p -> true);
+        return parser.getUpdateCount();
+    }
+
+    // ต้นทุนต่อหนึ่งการอัปเดต เมื่อ parser ถูกสร้างไว้แล้ว
+    @Benchmark
+    public long feedBlock() {
+        reused.feed(block, 0, block.length);
+        return reused.getOutTimeUs();
+    }
+}
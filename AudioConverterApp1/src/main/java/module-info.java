@@ -2,6 +2,8 @@ module se233.audioconverterapp1 {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.prefs;
+    requires jdk.jfr;             // per-job ConversionJob events
+    requires jdk.management;      // system CPU load for adaptive concurrency
 
     // no explicit requires for ffmpeg; Maven/Java will treat it as automatic
     //requires slf4j.simple;  // logger backend
@@ -8,6 +8,8 @@ import javafx.stage.Stage;
 import se233.audioconverterapp1.controller.AudioConverterController;
 import se233.audioconverterapp1.view.ThemeController;
 
+import java.util.Arrays;
+
 public class AudioConverterApp extends Application {
     @Override
     public void start(@SuppressWarnings("exports") Stage stage) throws Exception {
@@ -25,6 +27,10 @@ public class AudioConverterApp extends Application {
     }
 
     public static void main(String[] args) {
+        // --headless runs the same conversion engine from the command line without starting JavaFX
+        if (Arrays.asList(args).contains("--headless")) {
+            System.exit(HeadlessConverter.run(args));
+        }
         launch(args);
     }
 }
@@ -0,0 +1,381 @@
+package se233.audioconverterapp1;
+
+import se233.audioconverterapp1.model.ConversionListener;
+import se233.audioconverterapp1.model.ConversionManager;
+import se233.audioconverterapp1.model.FileInfo;
+import se233.audioconverterapp1.model.FileStatus;
+import se233.audioconverterapp1.model.JobJournal;
+import se233.audioconverterapp1.model.SchedulingPolicy;
+import se233.audioconverterapp1.util.AudioFileScanner;
+import se233.audioconverterapp1.util.AudioFormatSniffer;
+import se233.audioconverterapp1.util.FFmpegManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+// โหมดแปลงไฟล์แบบไม่มีหน้าจอ (สำหรับเครื่อง server) ใช้ ConversionManager ตัวเดียวกับโปรแกรม UI
+// ตัวอย่าง: java ... AudioConverterApp --headless -f mp3 -b 192k -o out/ "music/**/*.flac"
+public class HeadlessConverter {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: AudioConverterApp --headless [options] <input files, folders or globs...>",
+            "  (folders are searched recursively; files are recognised by content, not extension)",
+            "  -o, --output DIR          output folder (required)",
+            "  -f, --format FORMAT       mp3 | wav | m4a | flac (default: mp3); several targets from one",
+            "                            decode with + or , (e.g. mp3+flac+m4a)",
+            "  -b, --bitrate RATE        e.g. 192k (default: 192k)",
+            "  -r, --sample-rate HZ      e.g. 44100 (default: 44100)",
+            "  -c, --channels CH         mono | stereo | 1 | 2 (default: stereo)",
+            "      --normalize           normalize loudness to EBU R128 (-23 LUFS, -1 dBTP) in two",
+            "                            passes; measurements are cached per source",
+            "  -j, --jobs N|auto         max concurrent conversions (default: CPU cores); auto adjusts",
+            "                            the count from measured throughput, CPU load and I/O wait",
+            "      --order fifo|shortest start jobs in input order (default) or shortest estimated",
+            "                            conversion first, so short files finish early",
+            "      --jobs-per-device N   max conversions reading or writing the same disk or share",
+            "                            (default: 2 for spinning disks, 4 for network shares,",
+            "                            otherwise only -j applies)",
+            "      --segment-min SEC     split sources at least this long into parallel segments when",
+            "                            the target is wav at the source sample rate (default: 600,",
+            "                            0 disables)",
+            "      --journal FILE        record job progress in FILE; re-running after a crash",
+            "                            discards half-written outputs and resumes the rest",
+            "      --no-report           do not write conversion-report-*.csv/.json (per-job phase",
+            "                            timings) into the output folder",
+            "      --staging DIR         encode into DIR (e.g. tmpfs or a local SSD) and move finished",
+            "                            outputs to the output folder in the background",
+            "      --ffmpeg PATH         ffmpeg binary to use for this run",
+            "      --progress-json FILE  write progress as JSON lines to FILE ('-' for stdout)");
+
+    private static final Set<String> TARGET_FORMATS = Set.of("mp3", "wav", "m4a", "flac");
+
+    // เรียกตรงได้โดยไม่ต้องมี JavaFX ใน module path (เช่นบนเครื่อง render server)
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    // จุดเริ่มต้นโหมด headless คืนค่า exit code (0 = สำเร็จทั้งหมด, 1 = มีไฟล์ล้มเหลว, 2 = ใช้คำสั่งผิด)
+    public static int run(String[] args) {
+        String format = "mp3";
+        String bitrate = "192k";
+        String sampleRate = "44100";
+        String channel = "2";
+        String output = null;
+        String progressJson = null;
+        String journalFile = null;
+        boolean normalize = false;
+        String stagingDir = null;
+        boolean writeReport = true;
+        int jobs = -1;
+        boolean adaptiveJobs = false;
+        int jobsPerDevice = 0;
+        SchedulingPolicy order = SchedulingPolicy.FIFO;
+        double segmentMin = ConversionManager.DEFAULT_SEGMENT_MIN_DURATION;
+        List<String> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--headless" -> { }
+                    case "-o", "--output" -> output = args[++i];
+                    case "-f", "--format" -> format = args[++i].toLowerCase(Locale.ROOT);
+                    case "-b", "--bitrate" -> bitrate = args[++i];
+                    case "-r", "--sample-rate" -> sampleRate = args[++i];
+                    case "-c", "--channels" -> channel = args[++i];
+                    case "--normalize" -> normalize = true;
+                    case "-j", "--jobs" -> {
+                        String value = args[++i];
+                        if (value.equalsIgnoreCase("auto")) adaptiveJobs = true;
+                        else jobs = Integer.parseInt(value);
+                    }
+                    case "--order" -> order = switch (args[++i].toLowerCase(Locale.ROOT)) {
+                        case "fifo" -> SchedulingPolicy.FIFO;
+                        case "shortest" -> SchedulingPolicy.SHORTEST_FIRST;
+                        default -> throw new IllegalArgumentException("Unknown order: " + args[i]);
+                    };
+                    case "--jobs-per-device" -> jobsPerDevice = Integer.parseInt(args[++i]);
+                    case "--segment-min" -> segmentMin = Double.parseDouble(args[++i]);
+                    case "--ffmpeg" -> System.setProperty(FFmpegManager.OVERRIDE_PROPERTY, args[++i]);
+                    case "--journal" -> journalFile = args[++i];
+                    case "--no-report" -> writeReport = false;
+                    case "--staging" -> stagingDir = args[++i];
+                    case "--progress-json" -> progressJson = args[++i];
+                    case "-h", "--help" -> {
+                        System.out.println(USAGE);
+                        return 0;
+                    }
+                    default -> {
+                        if (arg.startsWith("-")) throw new IllegalArgumentException("Unknown option: " + arg);
+                        inputs.add(arg);
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return usageError("Missing value for the last option.");
+        } catch (IllegalArgumentException e) {
+            return usageError(e.getMessage());
+        }
+
+        if (output == null) return usageError("An output folder (-o) is required.");
+        if (inputs.isEmpty()) return usageError("No input files given.");
+        List<String> formats = FileInfo.parseFormats(format);
+        if (formats.isEmpty()) return usageError("No output format given.");
+        for (String f : formats) {
+            if (!TARGET_FORMATS.contains(f)) return usageError("Unsupported format: " + f);
+        }
+        format = String.join("+", formats);
+
+        File outputDir = new File(output);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("Cannot create output folder: " + outputDir.getAbsolutePath());
+            return 1;
+        }
+
+        List<FileInfo> files = new ArrayList<>();
+        for (Path path : expandInputs(inputs)) {
+            File file = path.toFile();
+            String sourceFormat = AudioFormatSniffer.detect(file); // ตรวจชนิดจากเนื้อไฟล์ ไม่ใช่นามสกุล
+            if (sourceFormat == null) continue;
+            FileInfo info = new FileInfo(file.getAbsolutePath(), sourceFormat, file.length());
+            info.setTargetFormat(format);
+            files.add(info);
+        }
+        if (files.isEmpty()) {
+            System.err.println("No audio files matched the given inputs.");
+            return 1;
+        }
+
+        ConversionManager manager = jobs > 0 ? new ConversionManager(jobs) : new ConversionManager();
+        manager.setSegmentMinDuration(segmentMin);
+        manager.setAdaptiveConcurrency(adaptiveJobs);
+        manager.setMaxJobsPerDevice(jobsPerDevice);
+        manager.setSchedulingPolicy(order);
+        manager.setWriteReports(writeReport);
+        manager.setNormalizeLoudness(normalize);
+        if (stagingDir != null) {
+            File staging = new File(stagingDir);
+            if (!staging.isDirectory() && !staging.mkdirs()) {
+                System.err.println("Cannot create staging folder: " + staging.getAbsolutePath());
+                return 1;
+            }
+            manager.setStagingDir(staging);
+        }
+        JobJournal journal = null;
+        if (journalFile != null) {
+            journal = JobJournal.open(Path.of(journalFile));
+            manager.setJournal(journal);
+            int interrupted = manager.discardUnfinished();
+            if (interrupted > 0) {
+                System.err.println("Resuming after an interrupted run (" + interrupted + " unfinished job(s)).");
+            }
+        }
+        try (ProgressReporter reporter = new ProgressReporter(files.size(), progressJson)) {
+            manager.startConversions(files, format, reporter, bitrate, sampleRate, channel, outputDir);
+            manager.awaitCompletion();
+            reporter.summary(files);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            manager.cancelConversions();
+            return 1;
+        } catch (IOException e) {
+            System.err.println("Cannot write progress file: " + e.getMessage());
+            return 1;
+        } finally {
+            if (journal != null) journal.close();
+        }
+
+        return files.stream().allMatch(HeadlessConverter::isSuccess) ? 0 : 1;
+    }
+
+    // ไฟล์ที่แปลงเสร็จ หรือไม่ต้องแปลงเพราะผลลัพธ์เดิมยังใหม่อยู่ ถือว่าสำเร็จ
+    private static boolean isSuccess(FileInfo file) {
+        return file.getStatusKind().isSuccess();
+    }
+
+    private static int usageError(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        return 2;
+    }
+
+    // แปลง argument เป็นรายการไฟล์: ไฟล์ตรง ๆ, โฟลเดอร์ (ค้นทุกชั้นย่อย), หรือ glob เช่น music/**/*.flac
+    static List<Path> expandInputs(List<String> inputs) {
+        Set<Path> result = new LinkedHashSet<>();
+        for (String input : inputs) {
+            Path path = Path.of(input);
+            if (Files.isRegularFile(path)) {
+                result.add(path.toAbsolutePath().normalize());
+            } else if (Files.isDirectory(path)) {
+                // ค้นทุกชั้นย่อยแบบขนาน ไฟล์ที่ไม่ใช่เสียงจะถูกกรองทีหลังด้วย AudioFormatSniffer
+                try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                    for (File file : AudioFileScanner.collectFiles(List.of(path.toFile()), executor, null)) {
+                        result.add(file.toPath().toAbsolutePath().normalize());
+                    }
+                }
+            } else if (hasGlob(input)) {
+                // โฟลเดอร์เริ่มต้นคือส่วนหน้าของ pattern ที่ยังไม่มีอักขระ glob
+                int cut = firstGlobChar(input);
+                int slash = Math.max(input.lastIndexOf('/', cut), input.lastIndexOf(File.separatorChar, cut));
+                Path base = slash >= 0 ? Path.of(input.substring(0, slash + 1)) : Path.of(".");
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+                walk(base, p -> matcher.matches(p) || matcher.matches(base.relativize(p)), result);
+            } else {
+                System.err.println("Skipping missing input: " + input);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    private interface PathFilter { boolean accept(Path p); }
+
+    private static void walk(Path root, PathFilter filter, Set<Path> result) {
+        try (Stream<Path> stream = Files.walk(root)) {
+            stream.filter(Files::isRegularFile)
+                    .filter(filter::accept)
+                    .sorted()
+                    .forEach(p -> result.add(p.toAbsolutePath().normalize()));
+        } catch (IOException e) {
+            System.err.println("Cannot read " + root + ": " + e.getMessage());
+        }
+    }
+
+    private static boolean hasGlob(String s) {
+        return firstGlobChar(s) < s.length();
+    }
+
+    private static int firstGlobChar(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') return i;
+        }
+        return s.length();
+    }
+
+    // รายงานความคืบหน้าทาง stdout (ข้อความ) หรือเป็น JSON lines ลงไฟล์
+    private static class ProgressReporter implements ConversionListener, AutoCloseable {
+        private static final long TEXT_INTERVAL_MS = 1000;
+
+        private final int total;
+        private final PrintStream json;            // null ถ้าใช้รายงานแบบข้อความ
+        private final boolean closeJson;
+        private final Map<FileInfo, Double> lastReported = new ConcurrentHashMap<>();
+        private double progressSum = 0.0;
+        private int finished = 0;
+        private long lastTextPrint = 0;
+
+        ProgressReporter(int total, String jsonTarget) throws IOException {
+            this.total = total;
+            if (jsonTarget == null) {
+                json = null;
+                closeJson = false;
+            } else if (jsonTarget.equals("-")) {
+                json = System.out;
+                closeJson = false;
+            } else {
+                json = new PrintStream(Files.newOutputStream(Path.of(jsonTarget)), true, StandardCharsets.UTF_8);
+                closeJson = true;
+            }
+        }
+
+        @Override
+        public synchronized void onProgress(FileInfo file, double progress) {
+            double previous = file.getProgress();
+            file.setProgress(progress);
+            progressSum += progress - previous;
+
+            if (json != null) {
+                // ส่งเฉพาะเมื่อเปลี่ยนอย่างน้อย 1% เพื่อไม่ให้ไฟล์ใหญ่เกินไป
+                Double last = lastReported.get(file);
+                if (last == null || progress - last >= 0.01 || progress >= 1.0) {
+                    lastReported.put(file, progress);
+                    json.println("{\"ts\":" + System.currentTimeMillis() + ",\"event\":\"progress\",\"file\":"
+                            + quote(file.getFilePath()) + ",\"progress\":" + String.format(Locale.ROOT, "%.4f", progress)
+                            + ",\"overall\":" + String.format(Locale.ROOT, "%.4f", progressSum / total) + "}");
+                }
+            } else {
+                long now = System.currentTimeMillis();
+                if (now - lastTextPrint >= TEXT_INTERVAL_MS) {
+                    lastTextPrint = now;
+                    System.out.printf(Locale.ROOT, "Progress: %3d%% (%d/%d finished)%n",
+                            (int) (progressSum / total * 100), finished, total);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void onStatus(FileInfo file, String status) {
+            file.setStatus(status);
+            FileStatus kind = file.getStatusKind();
+            boolean terminal = kind != FileStatus.QUEUED && kind != FileStatus.CONVERTING
+                    && kind != FileStatus.MEASURING && kind != FileStatus.PAUSED && kind != FileStatus.PUBLISHING;
+            if (terminal) finished++;
+            if (json != null) {
+                json.println("{\"ts\":" + System.currentTimeMillis() + ",\"event\":\"status\",\"file\":"
+                        + quote(file.getFilePath()) + ",\"status\":" + quote(status) + "}");
+            } else if (!status.equals("Queued")) {
+                System.out.printf(Locale.ROOT, "[%d/%d] %-20s %s%n", finished, total, status, file.getFileName());
+            }
+        }
+
+        @Override
+        public synchronized void onError(FileInfo file, Exception e) {
+            String message = e.getMessage() != null ? e.getMessage() : e.toString();
+            if (json != null) {
+                json.println("{\"ts\":" + System.currentTimeMillis() + ",\"event\":\"error\",\"file\":"
+                        + (file != null ? quote(file.getFilePath()) : "null") + ",\"message\":" + quote(message) + "}");
+            }
+            System.err.println("Error" + (file != null ? " (" + file.getFileName() + ")" : "") + ": " + message);
+        }
+
+        synchronized void summary(List<FileInfo> files) {
+            long done = files.stream().filter(HeadlessConverter::isSuccess).count();
+            if (json != null) {
+                json.println("{\"ts\":" + System.currentTimeMillis() + ",\"event\":\"summary\",\"total\":" + total
+                        + ",\"done\":" + done + ",\"failed\":" + (total - done) + "}");
+            } else {
+                System.out.println("Finished: " + done + " of " + total + " file(s) converted.");
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closeJson) json.close();
+        }
+
+        private static String quote(String s) {
+            StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"' -> sb.append("\\\"");
+                    case '\\' -> sb.append("\\\\");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\t' -> sb.append("\\t");
+                    default -> {
+                        if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                        else sb.append(c);
+                    }
+                }
+            }
+            return sb.append('"').toString();
+        }
+    }
+}
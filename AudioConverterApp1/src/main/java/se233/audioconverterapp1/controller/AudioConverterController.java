@@ -12,8 +12,13 @@ import javafx.util.Duration;
 import se233.audioconverterapp1.exception.AppExceptionHandler;
 import se233.audioconverterapp1.model.ConversionManager;
 import se233.audioconverterapp1.model.FileInfo;
+import se233.audioconverterapp1.model.JobJournal;
+import se233.audioconverterapp1.model.SchedulingPolicy;
+import se233.audioconverterapp1.util.ProcessControl;
 import se233.audioconverterapp1.view.ThemeController;
 
+import java.io.File;
+
 public class AudioConverterController {
 
     // ==== ส่วนประกาศ UI Elements (องค์ประกอบในหน้าจอ) ====
@@ -24,7 +29,7 @@ public class AudioConverterController {
     @FXML
     private TableColumn<FileInfo, String> formatColumn; // คอลัมน์รูปแบบไฟล์
     @FXML
-    private TableColumn<FileInfo, String> sizeColumn; // คอลัมน์ขนาดไฟล์
+    private TableColumn<FileInfo, Number> sizeColumn; // คอลัมน์ขนาดไฟล์
     @FXML
     private TableColumn<FileInfo, Double> progressColumn; // คอลัมน์แสดงความคืบหน้า
     @FXML
@@ -32,7 +37,7 @@ public class AudioConverterController {
     @FXML
     private TableColumn<FileInfo, String> targetFormatColumn; // คอลัมน์รูปแบบเป้าหมาย
     @FXML
-    private TableColumn<FileInfo, Void> actionColumn; // คอลัมน์ปุ่มการกระทำ (ลบ/ยกเลิก)
+    private TableColumn<FileInfo, String> actionColumn; // คอลัมน์ปุ่มการกระทำ (หยุด/ยกเลิก/ลบ) ผูกกับสถานะ
 
     @FXML
     private ChoiceBox<String> formatChoiceBox; // กล่องเลือกฟอร์แมตรูปแบบไฟล์
@@ -43,18 +48,28 @@ public class AudioConverterController {
     @FXML
     private ChoiceBox<String> channelChoiceBox; // กล่องเลือกช่องเสียง (โมโน/สเตอริโอ)
     @FXML
+    private ChoiceBox<SchedulingPolicy> queueOrderChoiceBox; // กล่องเลือกลำดับการเริ่มงานในคิว
+    @FXML
+    private CheckBox normalizeCheckBox; // เช็คบ็อกซ์ปรับความดังตาม EBU R128
+    @FXML
+    private CheckBox autoJobsCheckBox; // เช็คบ็อกซ์ให้ปรับจำนวนงานพร้อมกันเอง
+    @FXML
     private Button convertButton; // ปุ่มเริ่มแปลงไฟล์
     @FXML
     private Button clearButton; // ปุ่มล้างรายการไฟล์
     @FXML
     private Button cancelButton; // ปุ่มยกเลิกการแปลง
     @FXML
+    private Button pauseButton; // ปุ่มหยุดชั่วคราว/ทำต่อทุกงาน
+    @FXML
     private Button applyFormatButton; // ปุ่มนำค่าฟอร์แมตไปใช้กับทุกไฟล์
     @FXML
     private StackPane dropContainer; // พื้นที่ลากและวางไฟล์
     @FXML
     private Label dropZone; // ข้อความในพื้นที่วางไฟล์
     @FXML
+    private ProgressBar importProgress; // แถบความคืบหน้าการนำเข้าไฟล์
+    @FXML
     private ProgressBar overallProgress; // แถบแสดงความคืบหน้าโดยรวม
     @FXML
     private Label overallProgressText; // ตัวเลขเปอร์เซ็นต์ความคืบหน้าโดยรวม
@@ -83,7 +98,8 @@ public class AudioConverterController {
         // สร้างตัวควบคุมย่อยเพื่อแบ่งหน้าที่แต่ละส่วน
         tableController = new TableController(fileTable, fileNameColumn, formatColumn, sizeColumn, progressColumn,
                 statusColumn, targetFormatColumn, actionColumn, conversionManager);
-        fileImportController = new FileImportController(dropContainer, dropZone, fileData::add, this::showConfigPanel);
+        fileImportController = new FileImportController(dropContainer, dropZone, importProgress, fileData::addAll,
+                this::showConfigPanel);
         tableController.setupTable(fileData); // กำหนดตารางให้แสดงรายการไฟล์
         fileImportController.setupFileImport(); // ตั้งค่าการลากวางหรือนำเข้าไฟล์
         setupFormatChoiceBox(); // ตั้งค่าเมนูเลือกฟอร์แมตเบื้องต้น
@@ -102,6 +118,19 @@ public class AudioConverterController {
 
         overallProgress.setProgress(0); // ตั้งค่าความคืบหน้าเริ่มต้น
         overallProgressText.setText("0%");
+
+        // แปลงลง scratch disk ก่อนแล้วค่อยย้ายไปโฟลเดอร์ผลลัพธ์ ถ้าระบุไว้ (เช่นโฟลเดอร์ผลลัพธ์อยู่บน NAS)
+        String staging = System.getProperty(ConversionManager.STAGING_DIR_PROPERTY);
+        if (staging != null && new File(staging).isDirectory()) conversionManager.setStagingDir(new File(staging));
+
+        // เปิด journal ของงาน แล้วแปลงต่อจากงานที่ค้างไว้ถ้าครั้งก่อนโปรแกรมปิดกะทันหัน
+        conversionManager.setJournal(JobJournal.openDefault());
+        if (conversionController.resumeUnfinished() > 0) {
+            dropContainer.setMinHeight(60);
+            dropContainer.setMaxHeight(80);
+            dropZone.setText("Add more files by dropping here or double clicking");
+            showConfigPanel();
+        }
     }
 
     // รีเซ็ตกล่องวางไฟล์เมื่อไม่มีไฟล์ในรายการ
@@ -115,21 +144,35 @@ public class AudioConverterController {
 
     // ตั้งค่ากล่องเลือกฟอร์แมตรูปแบบไฟล์
     private void setupFormatChoiceBox() {
-        formatChoiceBox.setItems(FXCollections.observableArrayList("mp3", "wav", "m4a", "flac"));
+        // ชุดหลายฟอร์แมตแปลงจากการถอดรหัสครั้งเดียว (ffmpeg process เดียวต่อไฟล์)
+        formatChoiceBox.setItems(FXCollections.observableArrayList("mp3", "wav", "m4a", "flac",
+                "mp3+flac", "mp3+m4a", "mp3+flac+m4a"));
         formatChoiceBox.setValue("mp3");
     }
 
     // ตั้งค่าการทำงานของปุ่มต่าง ๆ
     private void setupButtons() {
-        convertButton.setOnAction(_ -> conversionController.handleConvert());
+        convertButton.setOnAction(_ -> {
+            conversionController.handleConvert();
+            pauseButton.setText("Pause"); // ชุดใหม่เริ่มแบบไม่หยุด
+        });
         // เมื่อกดเริ่มแปลง
         clearButton.setOnAction(_ -> conversionController.handleClear()); // เมื่อล้างรายการ
-        cancelButton.setOnAction(_ -> conversionController.handleCancel()); // เมื่อต้องการยกเลิก
+        cancelButton.setOnAction(_ -> {
+            conversionController.handleCancel(); // เมื่อต้องการยกเลิก
+            pauseButton.setText("Pause");
+        });
+        // หยุดทุกงานชั่วคราวเพื่อคืน CPU ให้งานอื่น แล้วกดอีกครั้งเพื่อทำต่อจากจุดเดิม (ไม่มีบน Windows)
+        pauseButton.setOnAction(_ -> pauseButton.setText(conversionController.togglePause() ? "Resume" : "Pause"));
+        pauseButton.setVisible(ProcessControl.isSuspendSupported());
+        pauseButton.setManaged(ProcessControl.isSuspendSupported());
         applyFormatButton.setOnAction(_ -> conversionController.applyGlobalFormat()); // นำฟอร์แมตไปใช้กับทุกไฟล์
 
         // เพิ่มคลาสสไตล์ถ้ายังไม่มี เพื่อใช้ตกแต่งปุ่ม
         if (!cancelButton.getStyleClass().contains("button"))
             cancelButton.getStyleClass().addAll("button", "button-secondary");
+        if (!pauseButton.getStyleClass().contains("button"))
+            pauseButton.getStyleClass().addAll("button", "button-secondary");
         if (!clearButton.getStyleClass().contains("button"))
             clearButton.getStyleClass().addAll("button", "button-danger");
     }
@@ -144,6 +187,24 @@ public class AudioConverterController {
 
         channelChoiceBox.setItems(FXCollections.observableArrayList("Mono", "Stereo"));
         channelChoiceBox.setValue("Stereo");
+
+        // ปรับความดังแบบสองรอบ (ใช้กับชุดที่เริ่มแปลงหลังจากนี้) ผลวัดของแต่ละไฟล์ถูกแคชไว้ใช้ซ้ำ
+        normalizeCheckBox.setSelected(conversionManager.isNormalizeLoudness());
+        normalizeCheckBox.selectedProperty().addListener((_, _, selected) ->
+                conversionManager.setNormalizeLoudness(selected));
+
+        // ให้จำนวนงานพร้อมกันปรับตามความเร็วที่วัดได้จริงของเครื่อง (ปิดไว้ก่อน ใช้จำนวนคอร์เป็นค่าคงที่)
+        // ปิดระหว่างแปลง จำนวนงานพร้อมกันค้างอยู่ที่ค่าล่าสุดที่ปรับไว้
+        autoJobsCheckBox.setSelected(conversionManager.isAdaptiveConcurrency());
+        autoJobsCheckBox.selectedProperty().addListener((_, _, selected) ->
+                conversionManager.setAdaptiveConcurrency(selected));
+
+        // เปลี่ยนได้ระหว่างแปลง งานที่ยังรอคิวจะถูกเรียงใหม่ทันที
+        queueOrderChoiceBox.setItems(FXCollections.observableArrayList(SchedulingPolicy.values()));
+        queueOrderChoiceBox.setValue(conversionManager.getSchedulingPolicy());
+        queueOrderChoiceBox.valueProperty().addListener((_, _, policy) -> {
+            if (policy != null) conversionManager.setSchedulingPolicy(policy);
+        });
     }
 
     // แสดงแผงการตั้งค่าด้วยแอนิเมชันเลื่อนลง
@@ -12,6 +12,7 @@ import se233.audioconverterapp1.model.FileInfo;
 import se233.audioconverterapp1.util.FFmpegManager;
 
 import java.io.File;
+import java.util.List;
 
 public class ConversionController {
     // ประกาศตัวแปรสำหรับควบคุม UI และข้อมูลไฟล์
@@ -28,6 +29,7 @@ public class ConversionController {
     private final ProgressBar overallProgress; // แถบความคืบหน้าโดยรวม
     private final Label overallProgressText; // ข้อความเปอร์เซ็นต์ความคืบหน้า
     private final VBox configPanel; // ส่วนแผงตั้งค่าการแปลงไฟล์
+    private final ProgressUpdateBatcher progressBatcher; // รวบการอัปเดตจาก worker ให้เหลือครั้งเดียวต่อเฟรม
 
     // คอนสตรัคเตอร์ รับค่าควบคุมต่างๆจากคลาสแม่
     public ConversionController(TableView<FileInfo> fileTable,
@@ -50,22 +52,26 @@ public class ConversionController {
         this.overallProgress = overallProgress;
         this.overallProgressText = overallProgressText;
         this.configPanel = configPanel;
+        // callback ไม่อ้าง this (ยังสร้างไม่เสร็จ) ใช้แค่ control ที่ส่งเข้ามา
+        this.progressBatcher = new ProgressUpdateBatcher(fileData,
+                overall -> showOverallProgress(overallProgress, overallProgressText, overall));
     }
 
     // ---- เมธอดจัดการการแปลงไฟล์ ----
     public void handleConvert() {
         try {
-            // ตรวจสอบก่อนว่า FFmpeg พร้อมใช้งานหรือยัง
-            if (!FFmpegManager.isFFmpegAvailable()) {
-                throw new MissingFFmpegException("FFmpeg is not configured. Please set the FFmpeg path.");
-            }
-
             // ถ้าไม่มีไฟล์ให้ขึ้นแจ้งเตือน
             if (fileData.isEmpty()) {
                 showAlert("No files to convert!");
                 return;
             }
 
+            // ตรวจสอบก่อนว่า FFmpeg พร้อมใช้งานหรือยัง (ถ้าทุกไฟล์เป็น WAV -> WAV ไม่ต้องใช้ FFmpeg)
+            if (conversionManager.needsFFmpeg(fileData, formatChoiceBox.getValue())
+                    && !FFmpegManager.isFFmpegAvailable()) {
+                throw new MissingFFmpegException("FFmpeg is not configured. Please set the FFmpeg path.");
+            }
+
             // ให้ผู้ใช้เลือกโฟลเดอร์เอาไฟล์ออก
             DirectoryChooser chooser = new DirectoryChooser();
             chooser.setTitle("Select Output Folder");
@@ -81,21 +87,11 @@ public class ConversionController {
             String sampleRate = sampleRateChoiceBox.getValue().replace(" Hz", "");
             String channel = channelChoiceBox.getValue().equals("Mono") ? "1" : "2";
 
-            // ตรวจสอบไฟล์ที่อยู่ในฟอร์แมตเดียวกันแล้วไม่ต้องแปลงซ้ำ
-            for (FileInfo file : fileData) {
-                String inputExt = getExtension(new File(file.getFilePath()));
-                if (inputExt.equalsIgnoreCase(outputFormat)) {
-                    showAlert("File \"" + file.getFileName() + "\" is already in ." + outputFormat
-                            + " format. Skipping to avoid duplicate output.");
-                    continue;
-                }
-            }
-
             // เรียกใช้งาน conversionManager เพื่อเริ่มแปลงไฟล์
             conversionManager.startConversions(
                     fileData,
                     outputFormat,
-                    this::updateGlobalProgress,
+                    progressBatcher,
                     bitrate,
                     sampleRate,
                     channel,
@@ -108,6 +104,13 @@ public class ConversionController {
         }
     }
 
+    // งานที่ค้างจากครั้งก่อน (โปรแกรมปิดกะทันหัน) ใส่กลับเข้าตารางแล้วแปลงต่อ คืนจำนวนไฟล์ที่กู้คืน
+    public int resumeUnfinished() {
+        List<FileInfo> resumed = conversionManager.resumeUnfinished(progressBatcher);
+        fileData.addAll(resumed);
+        return resumed.size();
+    }
+
     // ฟังก์ชันแสดงแจ้งเตือนหากยังไม่ได้ตั้งค่า FFmpeg
     // private void showFFmpegAlert() {
     //     Alert alert = new Alert(Alert.AlertType.WARNING);
@@ -123,12 +126,6 @@ public class ConversionController {
     //     });
     // }
 
-    // ดึงนามสกุลไฟล์จากชื่อไฟล์
-    private String getExtension(File file) {
-        int dot = file.getName().lastIndexOf('.');
-        return (dot == -1) ? "" : file.getName().substring(dot + 1);
-    }
-
     // เมธอดล้างรายการไฟล์ทั้งหมด และรีเซ็ตแผงตั้งค่า
     public void handleClear() {
         fileData.clear();
@@ -143,6 +140,15 @@ public class ConversionController {
         updateGlobalProgress();
     }
 
+    // หยุดทุกงานชั่วคราว หรือทำต่อถ้าหยุดอยู่ คืนค่าว่าตอนนี้หยุดอยู่หรือไม่
+    public boolean togglePause() {
+        if (conversionManager.isPaused()) {
+            conversionManager.resumeAll();
+            return false;
+        }
+        return conversionManager.pauseAll();
+    }
+
     // นำค่าฟอร์แมตรูปแบบไปใช้กับไฟล์ทั้งหมด
     public void applyGlobalFormat() {
         String globalFormat = formatChoiceBox.getValue();
@@ -152,19 +158,14 @@ public class ConversionController {
         showAlert("Applied global format (" + globalFormat + ") to all files.");
     }
 
-    // เมธอดอัปเดตค่าแถบความคืบหน้าโดยรวมและตัวเลขเปอร์เซ็นต์
+    // เมธอดอัปเดตค่าแถบความคืบหน้าโดยรวมและตัวเลขเปอร์เซ็นต์ (ใช้ผลรวมสะสม ไม่วนทั้งรายการ)
     public void updateGlobalProgress() {
-        if (fileData.isEmpty()) {
-            overallProgress.setProgress(0);
-            overallProgressText.setText("0%");
-            return;
-        }
-
-        double sum = fileData.stream().mapToDouble(f -> f.progressProperty().get()).sum();
-        overallProgress.setProgress(sum / fileData.size());
+        showOverallProgress(overallProgress, overallProgressText, progressBatcher.getOverallProgress());
+    }
 
-        int percent = (int) ((sum / fileData.size()) * 100);
-        overallProgressText.setText(percent + "%");
+    private static void showOverallProgress(ProgressBar bar, Label text, double overall) {
+        bar.setProgress(overall);
+        text.setText((int) (overall * 100) + "%");
     }
 
     // เมธอดเลือกไฟล์ Exe สำหรับตั้งค่า FFmpeg
@@ -1,30 +1,49 @@
 package se233.audioconverterapp1.controller;
 
+import javafx.application.Platform;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.layout.StackPane;
 import javafx.stage.FileChooser;
 import javafx.scene.input.Dragboard;
 import javafx.scene.input.TransferMode;
 import se233.audioconverterapp1.model.FileInfo;
+import se233.audioconverterapp1.util.AudioFileScanner;
+import se233.audioconverterapp1.util.AudioFormatSniffer;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
-import java.text.NumberFormat;
-import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 public class FileImportController {
+    // จำนวนไฟล์ต่อหนึ่งชุดที่ส่งเข้าตาราง (addAll ครั้งเดียวต่อชุด)
+    private static final int BATCH_SIZE = 256;
+    // thread สำหรับ stat ไฟล์เบื้องหลัง (virtual thread รอ I/O ได้จำนวนมากโดยไม่เปลือง thread จริง)
+    private static final ExecutorService scanExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
     // ประกาศตัวแปรใช้ควบคุม UI
     private final StackPane dropContainer; // กล่องรับไฟล์ (ลาก/วาง หรือคลิก)
     private final Label dropZone; // ป้ายข้อความบอกวิธีการใช้งาน
-    private final Consumer<FileInfo> fileConsumer; // ฟังก์ชันรับ FileInfo เพื่อเพิ่มไปในรายการ
+    private final ProgressBar importProgress; // แถบแสดงความคืบหน้าการนำเข้าไฟล์
+    private final Consumer<List<FileInfo>> filesConsumer; // ฟังก์ชันรับ FileInfo ทีละชุดเพื่อเพิ่มไปในรายการ
     private final Runnable showConfigPanelCallBack; // ฟังก์ชันโชว์ panel ตั้งค่าหลังเพิ่มไฟล์
 
+    // ตัวนับการนำเข้าที่ยังไม่เสร็จ (แก้เฉพาะบน FX thread)
+    private int activeScans = 0;       // จำนวนการค้นโฟลเดอร์ที่ยังไม่เสร็จ
+    private int pendingFiles = 0;
+    private int importedFiles = 0;
+
     // คอนสตรัคเตอร์ รับค่าควบคุมจากคลาสแม่
-    public FileImportController(StackPane dropContainer, Label dropZone, Consumer<FileInfo> fileConsumer, Runnable showConfigPanelCallBack) {
+    public FileImportController(StackPane dropContainer, Label dropZone, ProgressBar importProgress,
+                                Consumer<List<FileInfo>> filesConsumer, Runnable showConfigPanelCallBack) {
         this.dropContainer = dropContainer;
         this.dropZone = dropZone;
-        this.fileConsumer = fileConsumer;
+        this.importProgress = importProgress;
+        this.filesConsumer = filesConsumer;
         this.showConfigPanelCallBack = showConfigPanelCallBack;
     }
 
@@ -42,8 +61,8 @@ public class FileImportController {
         dropContainer.setOnDragDropped(event -> {
             Dragboard db = event.getDragboard();
             if (db.hasFiles()) {
-                // กรองและเพิ่มเฉพาะไฟล์เสียงเท่านั้น
-                db.getFiles().stream().filter(this::isAudioFile).forEach(this::addFile);
+                // รับทั้งไฟล์และโฟลเดอร์ (ค้นทุกชั้นย่อย) แล้วกรองเฉพาะไฟล์เสียงจากเนื้อหาไฟล์ (ทำงานเบื้องหลัง)
+                importFiles(db.getFiles());
                 event.setDropCompleted(true);
             } else {
                 event.setDropCompleted(false);
@@ -56,49 +75,110 @@ public class FileImportController {
             if (event.getClickCount() == 2) {
                 FileChooser fileChooser = new FileChooser();
                 fileChooser.setTitle("Select Audio Files");
-                fileChooser.getExtensionFilters().add(
-                        new FileChooser.ExtensionFilter("Audio Files", "*.mp3", "*.wav", "*.m4a", "*.flac")
+                fileChooser.getExtensionFilters().addAll(
+                        new FileChooser.ExtensionFilter("Audio Files", "*.mp3", "*.wav", "*.m4a", "*.flac"),
+                        new FileChooser.ExtensionFilter("All Files", "*.*") // ตรวจชนิดจากเนื้อไฟล์อยู่แล้ว
                 );
                 List<File> selectedFiles = fileChooser.showOpenMultipleDialog(dropContainer.getScene().getWindow());
                 if (selectedFiles != null) {
-                    selectedFiles.stream().filter(this::isAudioFile).forEach(this::addFile);
+                    importFiles(selectedFiles);
+                }
+            }
+        });
+    }
+
+    // เมธอดนำเข้าไฟล์แบบเบื้องหลัง: ค้นโฟลเดอร์แบบขนาน แบ่งไฟล์เป็นชุด ตรวจชนิดไฟล์บน virtual thread
+    // แล้วส่งเข้าตารางทีละชุดตามลำดับ
+    private void importFiles(List<File> dropped) {
+        if (dropped.isEmpty()) return;
+        List<File> roots = new ArrayList<>(dropped); // รายการจาก Dragboard ใช้ได้เฉพาะบน FX thread
+        beginScan();
+
+        Thread.ofVirtual().name("file-import").start(() -> {
+            List<File> files = AudioFileScanner.collectFiles(roots, scanExecutor, found -> {
+                if (found % 500 == 0) {
+                    Platform.runLater(() -> dropZone.setText("Scanning folders... " + found + " files found"));
+                }
+            });
+            Platform.runLater(() -> beginImport(files.size()));
+
+            List<Future<List<FileInfo>>> batches = new ArrayList<>();
+            for (int start = 0; start < files.size(); start += BATCH_SIZE) {
+                List<File> chunk = files.subList(start, Math.min(start + BATCH_SIZE, files.size()));
+                batches.add(scanExecutor.submit(() -> scanBatch(chunk)));
+            }
+            for (int i = 0; i < batches.size(); i++) {
+                int scanned = Math.min(BATCH_SIZE, files.size() - i * BATCH_SIZE);
+                List<FileInfo> batch;
+                try {
+                    batch = batches.get(i).get();
+                } catch (Exception e) {
+                    System.err.println("[FileImport] Failed to scan files: " + e.getMessage());
+                    batch = List.of();
                 }
+                List<FileInfo> result = batch;
+                Platform.runLater(() -> deliverBatch(result, scanned));
             }
         });
     }
 
-    // เมธอดเพิ่มไฟล์เข้าในระบบ พร้อมปรับ UI และเรียกแสดง panel ตั้งค่า
-    private void addFile(File file) {
-        FileInfo fileInfo = new FileInfo(
-                file.getAbsolutePath(),         // เส้นทางไฟล์
-                getExtension(file),             // นามสกุลไฟล์
-                formatSize(file.length() / 1024) // ขนาดไฟล์ (แสดงหน่วย KB)
-        );
-        fileConsumer.accept(fileInfo);   // ส่งข้อมูลไฟล์ไประบบหลัก
-
-        // ปรับขนาด dropContainer และเปลี่ยนข้อความแนะนำ
-        dropContainer.setMinHeight(60);
-        dropContainer.setMaxHeight(80);
-        dropZone.setText("Add more files by dropping here or double clicking");
-        showConfigPanelCallBack.run();   // โชว์ panel ตั้งค่าหลังมีการเพิ่มไฟล์
+    // สร้าง FileInfo ของไฟล์หนึ่งชุด (รันบน virtual thread)
+    private List<FileInfo> scanBatch(List<File> chunk) {
+        List<FileInfo> result = new ArrayList<>(chunk.size());
+        for (File file : chunk) {
+            String format = AudioFormatSniffer.detect(file); // ตรวจจาก magic bytes ไม่ใช่นามสกุล
+            if (format == null) continue;
+            result.add(new FileInfo(
+                    file.getAbsolutePath(),                      // เส้นทางไฟล์
+                    format,                                      // ฟอร์แมตจริงของไฟล์
+                    file.length()                                // ขนาดไฟล์ (byte) ตารางจัดรูปตอนแสดง
+            ));
+        }
+        return result;
     }
 
-    // ตรวจสอบว่าไฟล์นั้นเป็นไฟล์เสียงหรือไม่ (โดยดูนามสกุล)
-    private boolean isAudioFile(File file) {
-        String name = file.getName().toLowerCase();
-        return name.endsWith(".mp3") || name.endsWith(".wav")
-                || name.endsWith(".m4a") || name.endsWith(".flac");
+    // เริ่มค้นโฟลเดอร์ (ยังไม่รู้จำนวนไฟล์ แถบ progress จึงเป็นแบบไม่ระบุค่า)
+    private void beginScan() {
+        activeScans++;
+        importProgress.setVisible(true);
+        importProgress.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        dropZone.setText("Scanning folders...");
     }
 
-    // ดึงนามสกุลไฟล์จากชื่อไฟล์ เพื่อนำไปใช้สร้าง FileInfo
-    private String getExtension(File file) {
-        int dot = file.getName().lastIndexOf('.');
-        return (dot == -1) ? "" : file.getName().substring(dot + 1);
+    // ค้นเสร็จแล้ว รู้จำนวนไฟล์ เริ่มนับความคืบหน้าการนำเข้า
+    private void beginImport(int count) {
+        activeScans--;
+        pendingFiles += count;
+        updateImportProgress();
+    }
+
+    // ส่งไฟล์หนึ่งชุดเข้าตาราง: addAll ครั้งเดียว และปรับ layout/แอนิเมชันครั้งเดียวต่อชุด
+    private void deliverBatch(List<FileInfo> batch, int scanned) {
+        importedFiles += scanned;
+        if (!batch.isEmpty()) {
+            filesConsumer.accept(batch);   // ส่งข้อมูลไฟล์ไประบบหลัก
+
+            // ปรับขนาด dropContainer และโชว์ panel ตั้งค่าหลังมีการเพิ่มไฟล์
+            dropContainer.setMinHeight(60);
+            dropContainer.setMaxHeight(80);
+            showConfigPanelCallBack.run();
+        }
+        updateImportProgress();
     }
 
-    // แปลงขนาดไฟล์เป็นจำนวน KB พร้อม format ให้ดูอ่านง่าย
-    private String formatSize(long sizeKB) {
-        NumberFormat nf = NumberFormat.getInstance(Locale.US);
-        return nf.format(sizeKB) + " KB";
+    // อัปเดตข้อความและแถบความคืบหน้า ซ่อนเมื่อนำเข้าครบ
+    private void updateImportProgress() {
+        if (activeScans > 0) return; // ยังค้นโฟลเดอร์อื่นอยู่ แสดงแบบไม่ระบุค่าต่อไป
+        if (importedFiles >= pendingFiles) {
+            pendingFiles = 0;
+            importedFiles = 0;
+            importProgress.setVisible(false);
+            dropZone.setText(dropContainer.getMaxHeight() <= 80
+                    ? "Add more files by dropping here or double clicking"
+                    : "Drop your audio files here or double click to select");
+            return;
+        }
+        importProgress.setProgress((double) importedFiles / pendingFiles);
+        dropZone.setText("Importing " + importedFiles + " / " + pendingFiles + " files...");
     }
 }
@@ -0,0 +1,65 @@
+package se233.audioconverterapp1.controller;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import se233.audioconverterapp1.model.FileInfo;
+
+// property ของ JavaFX สำหรับแถวหนึ่งในตาราง (แยกจาก FileInfo ให้ model ใช้ได้โดยไม่มี JavaFX)
+// สร้างเมื่อมี cell มาผูกเท่านั้น (ตารางสร้าง cell แค่แถวที่มองเห็น) แล้วเกาะกับแถวเป็น observer
+// จนกว่า TableRow ที่แสดงแถวนั้นจะเลื่อนไปแสดงแถวอื่น (ดู acquire/release) แถวที่มองไม่เห็นจึงไม่มี property ค้าง
+public final class FileInfoProperties implements FileInfo.Observer {
+    private final DoubleProperty progress;
+    private final ReadOnlyStringWrapper status;
+    private final StringProperty targetFormat;
+    private Object owner; // TableRow ที่แสดงแถวนี้อยู่ (ใช้บน FX thread เท่านั้น)
+
+    private FileInfoProperties(FileInfo info) {
+        progress = new SimpleDoubleProperty(info, "progress", info.getProgress());
+        status = new ReadOnlyStringWrapper(info, "status", info.getStatus());
+        targetFormat = new SimpleStringProperty(info, "targetFormat", info.getTargetFormat());
+        // ChoiceBox ในตารางแก้ค่าผ่าน property นี้ ส่งค่ากลับไปเก็บที่แถว
+        targetFormat.addListener((_, _, value) -> info.setTargetFormat(value));
+    }
+
+    // property ของแถวนี้ (สร้างครั้งแรกที่ขอ แล้วใช้ตัวเดิมต่อ)
+    public static FileInfoProperties of(FileInfo info) {
+        if (info.getObserver() instanceof FileInfoProperties properties) return properties;
+        FileInfoProperties properties = new FileInfoProperties(info);
+        info.setObserver(properties);
+        return properties;
+    }
+
+    // TableRow เริ่มแสดงแถวนี้: ผูก property ไว้ (ใช้ตัวเดิมถ้า cell สร้างไว้ก่อนแล้ว)
+    public static void acquire(FileInfo info, Object row) {
+        of(info).owner = row;
+    }
+
+    // TableRow เลิกแสดงแถวนี้: ถอด observer ออก ยกเว้นแถวย้ายไปอยู่กับ TableRow อื่นแล้ว (เช่นหลังเรียงใหม่)
+    public static void release(FileInfo info, Object row) {
+        if (info.getObserver() instanceof FileInfoProperties properties && properties.owner == row) {
+            info.setObserver(null);
+        }
+    }
+
+    // ค่าที่ไม่เปลี่ยนแล้ว cell แค่อ่านไปแสดง จึงสร้างให้ใหม่ทุกครั้งโดยไม่ต้องเก็บไว้กับแถว
+    public static ReadOnlyStringProperty constant(String value) {
+        return new ReadOnlyStringWrapper(value).getReadOnlyProperty();
+    }
+
+    public DoubleProperty progressProperty() { return progress; }
+    public ReadOnlyStringProperty statusProperty() { return status.getReadOnlyProperty(); }
+    public StringProperty targetFormatProperty() { return targetFormat; }
+
+    @Override
+    public void progressChanged(double value) { progress.set(value); }
+
+    @Override
+    public void statusChanged(String value) { status.set(value); }
+
+    @Override
+    public void targetFormatChanged(String value) { targetFormat.set(value); }
+}
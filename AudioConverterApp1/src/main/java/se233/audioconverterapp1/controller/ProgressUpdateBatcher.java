@@ -0,0 +1,138 @@
+package se233.audioconverterapp1.controller;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import se233.audioconverterapp1.exception.AppExceptionHandler;
+import se233.audioconverterapp1.model.ConversionListener;
+import se233.audioconverterapp1.model.FileInfo;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleConsumer;
+
+// ตัวรวบการอัปเดตจาก worker thread แล้วนำไปใช้กับตารางครั้งเดียวต่อหนึ่งเฟรมของ JavaFX
+// ค่าที่ส่งมาหลายครั้งภายในเฟรมเดียวจะเหลือแค่ค่าล่าสุด และเก็บผลรวม progress แบบสะสมไว้
+// ทำให้คำนวณ progress รวมได้ใน O(1) ไม่ต้องวนทั้งรายการทุกครั้ง
+public class ProgressUpdateBatcher implements ConversionListener {
+    private final ObservableList<FileInfo> fileData;   // รายการไฟล์ในตาราง
+    private final DoubleConsumer onFrameApplied;       // เรียกหลังอัปเดตแต่ละเฟรม พร้อม progress รวม (เช่นอัปเดตแถบรวม)
+
+    // ค่าที่รอนำไปใช้ในเฟรมถัดไป (ค่าใหม่ทับค่าเก่าของไฟล์เดียวกัน)
+    private final Map<FileInfo, Double> pendingProgress = new ConcurrentHashMap<>();
+    private final Map<FileInfo, String> pendingStatus = new ConcurrentHashMap<>();
+    private final Map<FileInfo, List<FileInfo.TargetState>> pendingTargets = new ConcurrentHashMap<>();
+    private final AtomicBoolean timerRunning = new AtomicBoolean(false);
+    private final AnimationTimer timer;
+    private final Runnable frameRequest;                // ขอให้ applyPending ถูกเรียกในเฟรมถัดไป
+
+    private double progressSum = 0.0; // ผลรวม progress ของทุกแถว (แก้เฉพาะบน FX thread)
+    private final Set<FileInfo> rows = Collections.newSetFromMap(new IdentityHashMap<>()); // แถวที่อยู่ในตาราง (เช็คได้ใน O(1))
+
+    public ProgressUpdateBatcher(ObservableList<FileInfo> fileData, DoubleConsumer onFrameApplied) {
+        this(fileData, onFrameApplied, null);
+    }
+
+    // frameRequest = null ใช้ AnimationTimer ของ JavaFX ตามปกติ
+    // ส่งตัวอื่นมาได้เมื่อไม่มี FX toolkit (เช่น benchmark ที่เรียก applyPending เองแทนเฟรม)
+    ProgressUpdateBatcher(ObservableList<FileInfo> fileData, DoubleConsumer onFrameApplied, Runnable frameRequest) {
+        this.fileData = fileData;
+        this.onFrameApplied = onFrameApplied;
+        this.timer = frameRequest != null ? null : new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                applyPending();
+            }
+        };
+        this.frameRequest = frameRequest != null ? frameRequest : () -> Platform.runLater(timer::start);
+
+        for (FileInfo file : fileData) {
+            rows.add(file);
+            progressSum += file.getProgress();
+        }
+
+        // ปรับผลรวมตามแถวที่เพิ่ม/ลบ (คิดเฉพาะแถวที่เปลี่ยน)
+        fileData.addListener((ListChangeListener<FileInfo>) change -> {
+            while (change.next()) {
+                for (FileInfo removed : change.getRemoved()) {
+                    if (rows.remove(removed)) progressSum -= removed.getProgress();
+                }
+                for (FileInfo added : change.getAddedSubList()) {
+                    if (rows.add(added)) progressSum += added.getProgress();
+                }
+            }
+            if (fileData.isEmpty()) progressSum = 0.0; // กันค่าคลาดเคลื่อนสะสมจาก floating point
+        });
+    }
+
+    @Override
+    public void onProgress(FileInfo file, double progress) {
+        pendingProgress.put(file, progress);
+        requestFrame();
+    }
+
+    @Override
+    public void onStatus(FileInfo file, String status) {
+        pendingStatus.put(file, status);
+        requestFrame();
+    }
+
+    @Override
+    public void onTargets(FileInfo file, List<FileInfo.TargetState> targets) {
+        pendingTargets.put(file, targets);
+        requestFrame();
+    }
+
+    @Override
+    public void onError(FileInfo file, Exception e) {
+        AppExceptionHandler.handle(e); // แสดง dialog บน FX thread
+    }
+
+    // ค่า progress รวมเฉลี่ยของทุกแถว (0.0 - 1.0)
+    public double getOverallProgress() {
+        if (fileData.isEmpty()) return 0.0;
+        return Math.max(0.0, Math.min(1.0, progressSum / fileData.size()));
+    }
+
+    // เริ่ม timer เฉพาะตอนมีงานรอ เพื่อไม่ให้ JavaFX ต้อง render ทุกเฟรมตอนว่าง
+    private void requestFrame() {
+        if (timerRunning.compareAndSet(false, true)) {
+            frameRequest.run();
+        }
+    }
+
+    // นำค่าที่รอทั้งหมดไปใช้กับ FileInfo (ทำงานบน FX thread)
+    void applyPending() {
+        // สถานะแยกฟอร์แมตก่อนสถานะของแถว (cell ของสถานะดูรายการนี้ตอนอัปเดต)
+        for (FileInfo file : pendingTargets.keySet()) {
+            List<FileInfo.TargetState> targets = pendingTargets.remove(file);
+            if (targets != null) file.setTargetStates(targets);
+        }
+        for (FileInfo file : pendingStatus.keySet()) {
+            String status = pendingStatus.remove(file);
+            if (status != null) file.setStatus(status);
+        }
+        for (FileInfo file : pendingProgress.keySet()) {
+            Double progress = pendingProgress.remove(file);
+            if (progress == null) continue;
+            double old = file.getProgress();
+            file.setProgress(progress);
+            // ใช้ค่าที่แถวเก็บจริง (ปัดเป็น float) ผลรวมจึงตรงกับที่ลบออกตอนแถวถูกลบ
+            if (rows.contains(file)) progressSum += file.getProgress() - old; // แถวที่ถูกลบไปแล้วไม่นับรวม
+        }
+        onFrameApplied.accept(getOverallProgress());
+
+        // ไม่มีอะไรรอแล้ว หยุด timer (แล้วเช็คซ้ำเผื่อมีค่าเข้ามาระหว่างหยุด)
+        if (pendingProgress.isEmpty() && pendingStatus.isEmpty() && pendingTargets.isEmpty()) {
+            if (timer != null) timer.stop();
+            timerRunning.set(false);
+            if (!pendingProgress.isEmpty() || !pendingStatus.isEmpty() || !pendingTargets.isEmpty()) requestFrame();
+        }
+    }
+}
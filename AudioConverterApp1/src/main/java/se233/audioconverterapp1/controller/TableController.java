@@ -1,5 +1,7 @@
 package se233.audioconverterapp1.controller;
 
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.css.PseudoClass;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.control.*;
@@ -8,17 +10,23 @@ import javafx.scene.control.cell.ProgressBarTableCell;
 import javafx.scene.layout.HBox;
 import se233.audioconverterapp1.model.ConversionManager;
 import se233.audioconverterapp1.model.FileInfo;
+import se233.audioconverterapp1.model.FileStatus;
+import se233.audioconverterapp1.util.ProcessControl;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
 
 public class TableController {
     // ประกาศตัวแปรหมายถึงคอลัมน์และตารางแสดงไฟล์
     private final TableView<FileInfo> fileTable;           // ตารางแสดงไฟล์เสียง
     private final TableColumn<FileInfo, String> fileNameColumn;      // คอลัมน์ชื่อไฟล์
     private final TableColumn<FileInfo, String> formatColumn;        // คอลัมน์ฟอร์แมตไฟล์
-    private final TableColumn<FileInfo, String> sizeColumn;          // คอลัมน์ขนาดไฟล์
+    private final TableColumn<FileInfo, Number> sizeColumn;          // คอลัมน์ขนาดไฟล์ (ค่าเป็น byte เรียงตามตัวเลข)
     private final TableColumn<FileInfo, Double> progressColumn;      // คอลัมน์แสดงแถบสถานะความคืบหน้า
     private final TableColumn<FileInfo, String> statusColumn;        // คอลัมน์สถานะการแปลง
     private final TableColumn<FileInfo, String> targetFormatColumn;  // คอลัมน์ฟอร์แมตเป้าหมาย
-    private final TableColumn<FileInfo, Void> actionColumn;          // คอลัมน์ปุ่มการกระทำ (Cancel, Delete)
+    private final TableColumn<FileInfo, String> actionColumn;        // คอลัมน์ปุ่มการกระทำ (Pause, Cancel, Delete) ผูกกับสถานะ
 
     private final ObservableList<FileInfo> fileData = FXCollections.observableArrayList(); // รายการข้อมูลของไฟล์สำหรับตาราง
     private final ConversionManager conversionManager; // ตัวจัดการการแปลงไฟล์
@@ -27,11 +35,11 @@ public class TableController {
     public TableController(TableView<FileInfo> fileTable,
                            TableColumn<FileInfo, String> fileNameColumn,
                            TableColumn<FileInfo, String> formatColumn,
-                           TableColumn<FileInfo, String> sizeColumn,
+                           TableColumn<FileInfo, Number> sizeColumn,
                            TableColumn<FileInfo, Double> progressColumn,
                            TableColumn<FileInfo, String> statusColumn,
                            TableColumn<FileInfo, String> targetFormatColumn,
-                           TableColumn<FileInfo, Void> actionColumn,
+                           TableColumn<FileInfo, String> actionColumn,
                            ConversionManager conversionManager) {
         this.fileTable = fileTable;
         this.fileNameColumn = fileNameColumn;
@@ -50,40 +58,97 @@ public class TableController {
         setupProgressColumn();         // ตั้งค่าคอลัมน์แถบ progress
         setupTargetFormatColumn();     // ตั้งค่าคอลัมน์ฟอร์แมตเป้าหมาย
         setupActionColumn();           // ตั้งค่าคอลัมน์ปุ่ม Cancel และ Delete
+        setupPriorityMenu();           // เมนูคลิกขวาสำหรับตั้งลำดับความสำคัญของแถว
 
         fileTable.setItems(fileData);  // ให้ตารางแสดงรายการไฟล์ที่รับมา
+        fileTable.setSortPolicy(this::sortRows); // เรียงจาก field ของ FileInfo ไม่ผ่าน cell value factory
         fileTable.setEditable(true);   // เปิดให้แก้ไขข้อมูลในตารางได้
         fileTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY); // ปรับขนาดคอลัมน์อัตโนมัติ
     }
 
     // เมธอดตั้งค่าคอลัมน์ข้อมูลไฟล์ทั่วไป
     private void setupGeneralInfoColumn() {
-        fileNameColumn.setCellValueFactory(cell -> cell.getValue().fileNameProperty());
-        formatColumn.setCellValueFactory(cell -> cell.getValue().formatProperty());
-        sizeColumn.setCellValueFactory(cell -> cell.getValue().sizeProperty());
-        statusColumn.setCellValueFactory(cell -> cell.getValue().statusProperty());
+        fileNameColumn.setCellValueFactory(cell -> FileInfoProperties.constant(cell.getValue().getFileName()));
+        formatColumn.setCellValueFactory(cell -> FileInfoProperties.constant(cell.getValue().getFormat()));
+        // เก็บขนาดเป็นตัวเลขให้คอลัมน์เรียงได้ถูก แล้วจัดรูปเป็นข้อความเฉพาะ cell ที่แสดงอยู่
+        sizeColumn.setCellValueFactory(cell -> new ReadOnlyLongWrapper(cell.getValue().getSizeBytes()));
+        sizeColumn.setCellFactory(_ -> new TableCell<>() {
+            @Override
+            protected void updateItem(Number bytes, boolean empty) {
+                super.updateItem(bytes, empty);
+                setText(empty || bytes == null ? null : FileInfo.formatSize(bytes.longValue()));
+            }
+        });
+        statusColumn.setCellValueFactory(cell -> FileInfoProperties.of(cell.getValue()).statusProperty());
+        // แถวที่มีหลายเป้าหมาย: ชี้ที่สถานะเพื่อดูผลของแต่ละฟอร์แมต (เช่น mp3 สำเร็จ แต่ flac ล้มเหลว)
+        statusColumn.setCellFactory(_ -> new TableCell<>() {
+            private final Tooltip tooltip = new Tooltip();
+
+            {
+                tooltip.setOnShowing(_ -> {
+                    FileInfo file = rowItem();
+                    tooltip.setText(file == null ? "" : describeTargets(file.getTargetStates()));
+                });
+            }
+
+            private FileInfo rowItem() {
+                int index = getIndex();
+                return index >= 0 && index < getTableView().getItems().size() ? getTableView().getItems().get(index) : null;
+            }
+
+            @Override
+            protected void updateItem(String status, boolean empty) {
+                super.updateItem(status, empty);
+                setText(empty ? null : status);
+                FileInfo file = empty ? null : rowItem();
+                setTooltip(file != null && !file.getTargetStates().isEmpty() ? tooltip : null);
+            }
+        });
+    }
+
+    // รายการผลของแต่ละฟอร์แมต บรรทัดละหนึ่งเป้าหมาย เช่น "flac  Failed (40%)"
+    static String describeTargets(List<FileInfo.TargetState> targets) {
+        StringBuilder text = new StringBuilder();
+        for (FileInfo.TargetState target : targets) {
+            if (!text.isEmpty()) text.append('\n');
+            text.append(String.format(Locale.ROOT, "%-5s %s", target.format(), target.status()));
+            if (target.progress() < 1.0) text.append(String.format(Locale.ROOT, " (%d%%)", (int) (target.progress() * 100)));
+        }
+        return text.toString();
     }
 
     // เมธอดตั้งค่าคอลัมน์แถบ progress ของแต่ละไฟล์
     private void setupProgressColumn() {
-        progressColumn.setCellValueFactory(cell -> cell.getValue().progressProperty().asObject());
+        progressColumn.setCellValueFactory(cell -> FileInfoProperties.of(cell.getValue()).progressProperty().asObject());
         progressColumn.setCellFactory(ProgressBarTableCell.forTableColumn());
     }
 
     // เมธอดตั้งค่าคอลัมน์ฟอร์แมตเป้าหมายให้เลือกอัตโนมัติจาก ChoiceBox ในตาราง
     private void setupTargetFormatColumn() {
-        targetFormatColumn.setCellValueFactory(cell -> cell.getValue().targetFormatProperty());
-        targetFormatColumn.setCellFactory(ChoiceBoxTableCell.forTableColumn("mp3", "wav", "m4a", "flac"));
+        targetFormatColumn.setCellValueFactory(cell -> FileInfoProperties.of(cell.getValue()).targetFormatProperty());
+        targetFormatColumn.setCellFactory(ChoiceBoxTableCell.forTableColumn("mp3", "wav", "m4a", "flac",
+                "mp3+flac", "mp3+m4a", "mp3+flac+m4a"));
         targetFormatColumn.setEditable(true); // เปิดให้แก้ไขค่าในตาราง
     }
 
-    // เมธอดตั้งค่าคอลัมน์ของปุ่ม Cancel และ Delete ในแต่ละแถวของไฟล์
+    // เมธอดตั้งค่าคอลัมน์ของปุ่ม Pause, Cancel และ Delete ในแต่ละแถวของไฟล์
+    // ค่าของคอลัมน์คือสถานะของแถว cell จึงอัปเดตปุ่ม Pause/Resume เองเมื่อสถานะเปลี่ยน
     private void setupActionColumn() {
+        actionColumn.setCellValueFactory(cell -> FileInfoProperties.of(cell.getValue()).statusProperty());
         actionColumn.setCellFactory(_ -> new TableCell<>() {
+            private final Button pauseBtn = new Button("Pause");   // ปุ่มหยุดชั่วคราว/ทำต่อ (เฉพาะแถวที่กำลังแปลง)
             private final Button cancelBtn = new Button("Cancel"); // ปุ่มยกเลิกการแปลง
             private final Button clearBtn = new Button("Delete");  // ปุ่มลบไฟล์ออกจากตาราง
+            private final HBox buttons = new HBox(5, pauseBtn, cancelBtn, clearBtn); // สร้างครั้งเดียวต่อ cell ใช้ซ้ำตอนเลื่อน
 
             {
+                // หยุด ffmpeg ของแถวนี้ไว้ชั่วคราว หรือให้ทำต่อ (ปุ่มเปลี่ยนตามสถานะที่งานส่งกลับมา)
+                pauseBtn.setOnAction(_ -> {
+                    FileInfo file = getTableView().getItems().get(getIndex());
+                    if (file.getStatusKind() == FileStatus.PAUSED) conversionManager.resumeConversion(file);
+                    else conversionManager.pauseConversion(file);
+                });
+
                 // เมื่อกด Cancel จะยกเลิกการแปลงไฟล์และเปลี่ยนสถานะ
                 cancelBtn.setOnAction(_ -> {
                     FileInfo file = getTableView().getItems().get(getIndex());
@@ -97,20 +162,106 @@ public class TableController {
                     getTableView().getItems().remove(file);
                 });
 
-                // เพิ่มคลาสตกแต่ง style ให้ปุ่ม Cancel และ Delete
+                // เพิ่มคลาสตกแต่ง style ให้ปุ่ม Pause, Cancel และ Delete
+                pauseBtn.getStyleClass().addAll("button", "button-secondary");
                 cancelBtn.getStyleClass().addAll("button", "button-secondary");
                 clearBtn.getStyleClass().addAll("button", "button-danger");
             }
 
-            // อัปเดต cell การแสดงผล (ถ้าไม่ว่างแสดงปุ่ม)
+            // อัปเดต cell การแสดงผล (ถ้าไม่ว่างแสดงปุ่ม) ปุ่ม Pause มีเฉพาะแถวที่กำลังแปลงหรือหยุดอยู่
             @Override
-            protected void updateItem(Void item, boolean empty) {
-                super.updateItem(item, empty);
-                setGraphic(empty ? null : new HBox(5, cancelBtn, clearBtn));
+            protected void updateItem(String status, boolean empty) {
+                super.updateItem(status, empty);
+                setText(null);
+                if (empty) {
+                    setGraphic(null);
+                    return;
+                }
+                FileStatus kind = FileStatus.of(status);
+                boolean pausable = ProcessControl.isSuspendSupported()
+                        && (kind == FileStatus.CONVERTING || kind == FileStatus.MEASURING || kind == FileStatus.PAUSED);
+                pauseBtn.setVisible(pausable);
+                pauseBtn.setManaged(pausable);
+                pauseBtn.setText(kind == FileStatus.PAUSED ? "Resume" : "Pause");
+                setGraphic(buttons);
             }
         });
     }
 
+    // เมนูคลิกขวาของแถวสำหรับตั้งลำดับความสำคัญ (ตั้งระหว่างแปลงได้ งานที่ยังรอคิวจะขยับที่ทันที)
+    // แถวสำคัญมากแสดงตัวหนา แถวสำคัญน้อยแสดงตัวเอียง
+    private void setupPriorityMenu() {
+        PseudoClass high = PseudoClass.getPseudoClass("high-priority");
+        PseudoClass low = PseudoClass.getPseudoClass("low-priority");
+        fileTable.setRowFactory(_ -> new TableRow<>() {
+            private final ToggleGroup choices = new ToggleGroup();
+            private final RadioMenuItem highItem = choice("High priority", FileInfo.PRIORITY_HIGH);
+            private final RadioMenuItem normalItem = choice("Normal priority", FileInfo.PRIORITY_NORMAL);
+            private final RadioMenuItem lowItem = choice("Low priority", FileInfo.PRIORITY_LOW);
+            private final ContextMenu menu = new ContextMenu(highItem, normalItem, lowItem);
+
+            private RadioMenuItem choice(String text, int priority) {
+                RadioMenuItem item = new RadioMenuItem(text);
+                item.setToggleGroup(choices);
+                item.setOnAction(_ -> {
+                    FileInfo file = getItem();
+                    if (file == null) return;
+                    conversionManager.setPriority(file, priority);
+                    showPriority(file);
+                });
+                return item;
+            }
+
+            @Override
+            protected void updateItem(FileInfo file, boolean empty) {
+                FileInfo previous = getItem();
+                super.updateItem(file, empty);
+                // property ของแถวมีอยู่เฉพาะตอนมี TableRow แสดง เลื่อนไปแถวอื่นแล้วถอดของแถวเดิมออก
+                FileInfo current = empty ? null : file;
+                if (previous != current) {
+                    if (previous != null) FileInfoProperties.release(previous, this);
+                    if (current != null) FileInfoProperties.acquire(current, this);
+                }
+                setContextMenu(empty || file == null ? null : menu);
+                showPriority(empty ? null : file);
+            }
+
+            private void showPriority(FileInfo file) {
+                int priority = file == null ? FileInfo.PRIORITY_NORMAL : file.getPriority();
+                pseudoClassStateChanged(high, priority > FileInfo.PRIORITY_NORMAL);
+                pseudoClassStateChanged(low, priority < FileInfo.PRIORITY_NORMAL);
+                choices.selectToggle(priority > FileInfo.PRIORITY_NORMAL ? highItem
+                        : priority < FileInfo.PRIORITY_NORMAL ? lowItem : normalItem);
+            }
+        });
+    }
+
+    // เรียงแถวตามคอลัมน์ที่เลือก โดยอ่านค่าจาก FileInfo ตรง ๆ
+    // (แบบปกติของ TableView อ่านผ่าน cell value factory ซึ่งจะสร้าง FileInfoProperties ให้ทุกแถว)
+    private boolean sortRows(TableView<FileInfo> table) {
+        Comparator<FileInfo> order = null;
+        for (TableColumn<FileInfo, ?> column : table.getSortOrder()) {
+            Comparator<FileInfo> key = sortKey(column);
+            if (key == null) continue;
+            if (column.getSortType() == TableColumn.SortType.DESCENDING) key = key.reversed();
+            order = order == null ? key : order.thenComparing(key);
+        }
+        if (order != null) FXCollections.sort(table.getItems(), order);
+        return true;
+    }
+
+    private Comparator<FileInfo> sortKey(TableColumn<FileInfo, ?> column) {
+        if (column == fileNameColumn) return Comparator.comparing(FileInfo::getFileName);
+        if (column == formatColumn) return Comparator.comparing(FileInfo::getFormat);
+        if (column == sizeColumn) return Comparator.comparingLong(FileInfo::getSizeBytes);
+        if (column == progressColumn) return Comparator.comparingDouble(FileInfo::getProgress);
+        if (column == statusColumn || column == actionColumn) return Comparator.comparing(FileInfo::getStatus);
+        if (column == targetFormatColumn) {
+            return Comparator.comparing(FileInfo::getTargetFormat, Comparator.nullsFirst(Comparator.naturalOrder()));
+        }
+        return null;
+    }
+
     // เมธอด getter สำหรับข้อมูลไฟล์
     public ObservableList<FileInfo> getFileData() {
         return fileData;
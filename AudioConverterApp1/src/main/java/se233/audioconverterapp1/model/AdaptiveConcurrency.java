@@ -0,0 +1,151 @@
+package se233.audioconverterapp1.model;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+// ปรับจำนวนงานพร้อมกันของ ConversionScheduler เองตาม throughput ที่วัดได้ (แบบ AIMD)
+// ทุกช่วงเวลาจะดู: ความยาวเสียงที่แปลงได้ต่อวินาทีรวมทุกงาน, CPU load ของเครื่อง และ I/O wait (Linux)
+//  - ยังมีงานรอคิวที่เริ่มได้ถ้ามีช่องเพิ่ม, CPU ยังว่างและดิสก์ไม่ติดขัด -> เพิ่มทีละ 1 งาน
+//    (งานที่รอเพราะอุปกรณ์ของมันเต็มตาม limit ต่ออุปกรณ์ไม่นับ เพิ่มช่องไปก็ไม่ได้เริ่ม)
+//  - เพิ่มแล้ว throughput ลดลง หรือ I/O wait สูง -> ลดลงแบบคูณ (3/4) เพราะงานแย่งกันเองแล้ว
+//  - CPU เต็มแต่ throughput ไม่ได้ลด -> คงไว้ (เพิ่มงานก็ไม่ได้เร็วขึ้น)
+// ช่วงที่ไม่มีงานรอคิว ไม่มีข้อมูลว่าควรเพิ่มหรือลด จึงไม่ปรับอะไร
+public class AdaptiveConcurrency {
+    public static final long DEFAULT_INTERVAL_MS = 3000;
+
+    private static final double CPU_BUSY = 0.90;      // CPU ใช้ไปเกินนี้ถือว่าเต็ม
+    private static final double IO_WAIT_HIGH = 0.20;  // สัดส่วนเวลาที่ CPU รอดิสก์ เกินนี้ถือว่าดิสก์เป็นคอขวด
+    private static final double TOLERANCE = 0.10;     // throughput ต่างกันน้อยกว่านี้ถือว่าเท่าเดิม (กันค่าแกว่ง)
+    private static final double DECREASE_FACTOR = 0.75;
+
+    private final ConversionScheduler scheduler;
+    private final DoubleSupplier encodedSeconds;   // วินาทีเสียงที่แปลงเสร็จแล้วสะสม (นับรวมงานที่ยังรันอยู่)
+    private final int minConcurrent;
+    private final int maxConcurrent;
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private ScheduledExecutorService timer;
+
+    // สถานะของรอบก่อน (ใช้เฉพาะบน thread ของ timer)
+    private double lastEncoded = -1;
+    private long lastTime;
+    private double lastThroughput = -1;
+    private int lastDirection;                     // +1 เพิ่ม, -1 ลด, 0 คงเดิม ในรอบก่อน
+    private long[] lastCpuTimes;                   // ค่าจาก /proc/stat รอบก่อน
+
+    public AdaptiveConcurrency(ConversionScheduler scheduler, DoubleSupplier encodedSeconds, int minConcurrent,
+                               int maxConcurrent) {
+        this.scheduler = scheduler;
+        this.encodedSeconds = encodedSeconds;
+        this.minConcurrent = Math.max(1, minConcurrent);
+        this.maxConcurrent = Math.max(this.minConcurrent, maxConcurrent);
+    }
+
+    public synchronized void start(long intervalMs) {
+        if (timer != null) return;
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable, "adaptive-concurrency");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(this::adjust, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // หยุดปรับ (จำนวนงานพร้อมกันค้างไว้ที่ค่าล่าสุด)
+    public synchronized void stop() {
+        if (timer == null) return;
+        timer.shutdownNow();
+        timer = null;
+    }
+
+    private void adjust() {
+        try {
+            double encoded = encodedSeconds.getAsDouble();
+            long now = System.nanoTime();
+            double cpu = cpuLoad();
+            double ioWait = ioWait();
+            boolean firstSample = lastEncoded < 0;
+            double throughput = firstSample ? -1 : (encoded - lastEncoded) / ((now - lastTime) / 1e9);
+            lastEncoded = encoded;
+            lastTime = now;
+            if (firstSample) return;
+
+            int limit = scheduler.getMaxConcurrent();
+            // worker ยังว่างอยู่ = งานไม่พอให้วัด จำนวนงานพร้อมกันไม่ใช่สิ่งที่จำกัดความเร็วตอนนี้
+            if (scheduler.getQueuedCount() == 0) {
+                lastThroughput = -1;
+                lastDirection = 0;
+                return;
+            }
+
+            boolean regressed = lastDirection > 0 && lastThroughput > 0
+                    && throughput < lastThroughput * (1 - TOLERANCE);
+            boolean diskBound = ioWait > IO_WAIT_HIGH;
+            boolean dispatchable = scheduler.getDispatchableCount() > 0;
+            int next = limit;
+            if (regressed || (diskBound && limit > minConcurrent)) {
+                next = Math.max(minConcurrent, Math.min(limit - 1, (int) (limit * DECREASE_FACTOR)));
+            } else if (lastDirection >= 0 && dispatchable && !diskBound && (cpu < 0 || cpu < CPU_BUSY)
+                    && limit < maxConcurrent) {
+                next = limit + 1; // หลังลดไปแล้วรอหนึ่งรอบก่อนค่อยเพิ่ม ให้ค่าที่วัดได้นิ่งก่อน
+            }
+
+            lastThroughput = throughput;
+            lastDirection = Integer.compare(next, limit);
+            if (next != limit) {
+                scheduler.setMaxConcurrent(next);
+                System.err.println(String.format(Locale.ROOT,
+                        "[Concurrency] %d -> %d jobs (%.1fx realtime, cpu %s, iowait %s)", limit, next, throughput,
+                        percent(cpu), percent(ioWait)));
+            }
+        } catch (RuntimeException e) {
+            // ห้ามหลุดออกไป ไม่อย่างนั้น timer จะหยุดทำงานเงียบ ๆ
+            System.err.println("[Concurrency] Adjustment skipped: " + e.getMessage());
+        }
+    }
+
+    // CPU load ของทั้งเครื่อง (0.0 - 1.0) รวม ffmpeg ทุก process; -1 ถ้า JVM ไม่มีข้อมูลนี้
+    private double cpuLoad() {
+        if (os instanceof com.sun.management.OperatingSystemMXBean bean) {
+            double load = bean.getCpuLoad();
+            if (load >= 0) return load;
+        }
+        double average = os.getSystemLoadAverage(); // ค่าเฉลี่ย 1 นาที (หยาบกว่า แต่มีบนเครื่อง Unix ส่วนใหญ่)
+        return average < 0 ? -1 : Math.min(1.0, average / os.getAvailableProcessors());
+    }
+
+    // สัดส่วนเวลาที่ CPU รอดิสก์ตั้งแต่รอบก่อน (จาก /proc/stat); -1 ถ้าไม่ใช่ Linux
+    private double ioWait() {
+        long[] times = readCpuTimes();
+        long[] previous = lastCpuTimes;
+        lastCpuTimes = times;
+        if (times == null || previous == null) return -1;
+        long total = 0;
+        for (int i = 0; i < times.length; i++) total += times[i] - previous[i];
+        return total <= 0 ? -1 : (double) (times[4] - previous[4]) / total; // ช่องที่ 5 = iowait
+    }
+
+    private static long[] readCpuTimes() {
+        try {
+            String line = Files.readAllLines(Path.of("/proc/stat")).get(0); // "cpu  user nice system idle iowait ..."
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length < 6 || !fields[0].equals("cpu")) return null;
+            long[] times = new long[Math.min(fields.length - 1, 8)]; // ไม่นับ guest (รวมอยู่ใน user แล้ว)
+            for (int i = 0; i < times.length; i++) times[i] = Long.parseLong(fields[i + 1]);
+            return times;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String percent(double value) {
+        return value < 0 ? "n/a" : Math.round(value * 100) + "%";
+    }
+}
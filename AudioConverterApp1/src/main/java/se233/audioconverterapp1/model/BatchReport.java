@@ -0,0 +1,168 @@
+package se233.audioconverterapp1.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// รายงานของงานแปลงหนึ่งชุด (หนึ่งครั้งที่กดเริ่ม) เขียนเป็น CSV และ JSON ลงโฟลเดอร์ผลลัพธ์เมื่อทุกงานจบ
+// ชื่อไฟล์: conversion-report-<วันเวลา>.csv / .json (ใช้เทียบเวลาของแต่ละขั้นระหว่างเครื่องหรือเวอร์ชัน)
+public class BatchReport {
+    public static final String FILE_PREFIX = "conversion-report-";
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String[] COLUMNS = {"source", "targets", "mode", "status", "exit_code", "queue_wait_ms",
+            "probe_ms", "spawn_ms", "encode_ms", "finalize_ms", "total_ms", "bytes_in", "bytes_out", "audio_seconds",
+            "ffmpeg_speed", "realtime_factor"};
+
+    private final File outputDir;
+    private final boolean writeFiles;   // false = เก็บค่าไว้ดูเท่านั้น ไม่เขียนไฟล์รายงาน
+    private final LocalDateTime createdAt = LocalDateTime.now();
+    private final List<JobMetrics> jobs = new ArrayList<>(); // ใช้ภายใต้ lock ของ this
+    private int remaining;       // งานที่ยังไม่จบ
+    private boolean sealed;      // เพิ่มงานครบแล้ว (ก่อนหน้านี้ยังเขียนรายงานไม่ได้ แม้งานที่มีจะจบหมด)
+    private boolean written;
+
+    BatchReport(File outputDir, boolean writeFiles) {
+        this.outputDir = outputDir;
+        this.writeFiles = writeFiles;
+    }
+
+    synchronized void add(JobMetrics metrics) {
+        jobs.add(metrics);
+        remaining++;
+    }
+
+    synchronized void jobFinished() {
+        remaining--;
+        writeIfComplete();
+    }
+
+    // ไม่มีงานเพิ่มในชุดนี้แล้ว
+    synchronized void seal() {
+        sealed = true;
+        writeIfComplete();
+    }
+
+    synchronized boolean isComplete() {
+        return sealed && remaining <= 0;
+    }
+
+    // สำเนาค่าของทุกงานในชุด ณ ตอนนี้
+    synchronized List<JobMetrics> snapshot() {
+        List<JobMetrics> copies = new ArrayList<>(jobs.size());
+        for (JobMetrics job : jobs) copies.add(job.copy());
+        return copies;
+    }
+
+    private void writeIfComplete() {
+        if (!writeFiles || written || !isComplete() || jobs.isEmpty()) return;
+        written = true;
+        String base = FILE_PREFIX + createdAt.format(STAMP);
+        File csv = new File(outputDir, base + ".csv");
+        // ชุดที่เริ่มในวินาทีเดียวกัน (เช่นงานที่กู้คืนหลายกลุ่ม) ไม่ทับรายงานของกันและกัน
+        for (int n = 2; csv.exists(); n++) csv = new File(outputDir, base + "-" + n + ".csv");
+        File json = new File(csv.getPath().replaceFirst("\\.csv$", ".json"));
+        try {
+            writeCsv(csv);
+            writeJson(json);
+        } catch (IOException e) {
+            System.err.println("[BatchReport] Could not write " + csv.getParent() + ": " + e.getMessage());
+        }
+    }
+
+    private void writeCsv(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            out.println(String.join(",", COLUMNS));
+            for (JobMetrics job : jobs) {
+                Object[] row = values(job);
+                StringBuilder line = new StringBuilder();
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0) line.append(',');
+                    if (row[i] == null) continue; // ไม่มีค่า = ช่องว่าง
+                    line.append(row[i] instanceof String s ? csvField(s) : format(row[i]));
+                }
+                out.println(line);
+            }
+        }
+    }
+
+    private void writeJson(File file) throws IOException {
+        long bytesIn = 0, bytesOut = 0;
+        int done = 0;
+        for (JobMetrics job : jobs) {
+            bytesIn += job.getBytesIn();
+            if (job.getBytesOut() > 0) bytesOut += job.getBytesOut();
+            if (job.getStatus().startsWith("Done")) done++;
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            out.println("{");
+            out.println("  \"created\": " + jsonString(createdAt.toString()) + ",");
+            out.println("  \"outputDir\": " + jsonString(outputDir.getAbsolutePath()) + ",");
+            out.println("  \"jobs\": " + jobs.size() + ", \"done\": " + done + ", \"bytesIn\": " + bytesIn
+                    + ", \"bytesOut\": " + bytesOut + ",");
+            out.println("  \"results\": [");
+            for (int j = 0; j < jobs.size(); j++) {
+                Object[] row = values(jobs.get(j));
+                StringBuilder line = new StringBuilder("    {");
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0) line.append(", ");
+                    line.append('"').append(COLUMNS[i]).append("\": ")
+                            .append(row[i] instanceof String s ? jsonString(s) : format(row[i]));
+                }
+                out.println(line.append(j < jobs.size() - 1 ? "}," : "}"));
+            }
+            out.println("  ]");
+            out.println("}");
+        }
+    }
+
+    // ค่าของหนึ่งแถว เรียงตาม COLUMNS
+    private static Object[] values(JobMetrics job) {
+        return new Object[]{job.getSourcePath(), job.getTargets(), job.getMode(), job.getStatus(),
+                job.hasExitCode() ? job.getExitCode() : null, millis(job.getQueueWaitNanos()),
+                millis(job.getProbeNanos()), millis(job.getSpawnNanos()), millis(job.getEncodeNanos()),
+                millis(job.getFinalizeNanos()), millis(job.getTotalNanos()), job.getBytesIn(),
+                job.getBytesOut() >= 0 ? job.getBytesOut() : null, positive(job.getDurationSeconds()),
+                positive(job.getFfmpegSpeed()), positive(job.getRealtimeFactor())};
+    }
+
+    private static Double millis(long nanos) { return nanos / 1e6; }
+
+    private static Double positive(double value) { return value > 0 ? value : null; }
+
+    private static String format(Object value) {
+        if (value == null) return "null";
+        if (value instanceof Double d) return String.format(Locale.ROOT, "%.3f", d);
+        return value.toString();
+    }
+
+    private static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,57 @@
+package se233.audioconverterapp1.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// event ของ JFR ต่อหนึ่งงานแปลง (บันทึกตอนงานจบ) ดูได้ใน JDK Mission Control หรือ `jfr print`
+// เปิดบันทึกด้วย -XX:StartFlightRecording=filename=rec.jfr ถ้าไม่ได้เปิด JFR จะไม่มีค่าใช้จ่าย
+@Name("se233.audioconverterapp1.ConversionJob")
+@Label("Conversion Job")
+@Category({"Audio Converter"})
+@Description("One conversion job with the time spent in each phase")
+@StackTrace(false)
+class ConversionJobEvent extends Event {
+    @Label("Source") String source;
+    @Label("Targets") String targets;
+    @Label("Mode") String mode;
+    @Label("Status") String status;
+    @Label("Exit Code") int exitCode;
+
+    @Label("Queue Wait") @Timespan(Timespan.NANOSECONDS) long queueWait;
+    @Label("Probe") @Timespan(Timespan.NANOSECONDS) long probe;
+    @Label("Process Spawn") @Timespan(Timespan.NANOSECONDS) long spawn;
+    @Label("Encode") @Timespan(Timespan.NANOSECONDS) long encode;
+    @Label("Finalize") @Timespan(Timespan.NANOSECONDS) long finalizing;
+
+    @Label("Bytes In") @DataAmount long bytesIn;
+    @Label("Bytes Out") @DataAmount long bytesOut;
+    @Label("Audio Duration") @Description("Seconds of audio in the source") double audioSeconds;
+    @Label("FFmpeg Speed") @Description("Last speed ffmpeg reported (x realtime)") double ffmpegSpeed;
+
+    // ส่ง event จากค่าของงานที่จบแล้ว (ไม่ทำอะไรถ้า JFR ไม่ได้บันทึก event นี้อยู่)
+    static void commit(JobMetrics metrics) {
+        ConversionJobEvent event = new ConversionJobEvent();
+        if (!event.shouldCommit()) return;
+        event.source = metrics.getSourcePath();
+        event.targets = metrics.getTargets();
+        event.mode = metrics.getMode();
+        event.status = metrics.getStatus();
+        event.exitCode = metrics.getExitCode();
+        event.queueWait = metrics.getQueueWaitNanos();
+        event.probe = metrics.getProbeNanos();
+        event.spawn = metrics.getSpawnNanos();
+        event.encode = metrics.getEncodeNanos();
+        event.finalizing = metrics.getFinalizeNanos();
+        event.bytesIn = metrics.getBytesIn();
+        event.bytesOut = metrics.getBytesOut();
+        event.audioSeconds = metrics.getDurationSeconds();
+        event.ffmpegSpeed = metrics.getFfmpegSpeed();
+        event.commit();
+    }
+}
@@ -0,0 +1,29 @@
+package se233.audioconverterapp1.model;
+
+import java.util.List;
+
+// ช่องทางส่งความคืบหน้าและสถานะของงานแปลงออกไปยังผู้ใช้ (UI หรือส่วนอื่น)
+// งานแปลงเรียกเมธอดเหล่านี้จาก worker thread ผู้รับต้องจัดการเรื่อง thread เอง
+public interface ConversionListener {
+
+    void onProgress(FileInfo file, double progress);
+
+    void onStatus(FileInfo file, String status);
+
+    // สถานะแยกตามฟอร์แมตของแถวที่มีหลายเป้าหมาย (ส่งทั้งรายการทุกครั้ง ค่าใหม่แทนค่าเก่าทั้งหมด)
+    default void onTargets(FileInfo file, List<FileInfo.TargetState> targets) { file.setTargetStates(targets); }
+
+    // แจ้งข้อผิดพลาดที่ผู้ใช้ควรรู้ (file เป็น null ถ้าเป็นข้อผิดพลาดของทั้งชุด)
+    default void onError(FileInfo file, Exception e) {
+        System.err.println("[Conversion] " + (file != null ? file.getFileName() + ": " : "") + e.getMessage());
+    }
+
+    // ตัวรับแบบง่ายที่เขียนค่าลง FileInfo ทันที (ใช้เมื่อไม่มี UI มาคอยรวบการอัปเดต)
+    ConversionListener DIRECT = new ConversionListener() {
+        @Override
+        public void onProgress(FileInfo file, double progress) { file.setProgress(progress); }
+
+        @Override
+        public void onStatus(FileInfo file, String status) { file.setStatus(status); }
+    };
+}
@@ -1,82 +1,582 @@
 package se233.audioconverterapp1.model;
 
-import javafx.application.Platform;
-import javafx.collections.ObservableList;
 import se233.audioconverterapp1.exception.*;
 import se233.audioconverterapp1.util.FFmpegManager;
+import se233.audioconverterapp1.util.ProcessControl;
+import se233.audioconverterapp1.util.StorageDevices;
 
 import java.io.File;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.DoubleAdder;
 
 public class ConversionManager {
 
-    private final Map<FileInfo, ConversionTask> activeTasks = new HashMap<>();
+    // Tasks that are queued or running; each one removes itself when it finishes
+    private final Map<FileInfo, ConversionTask> activeTasks = new ConcurrentHashMap<>();
+    // Every task until its worker (or mover) is completely done with it. Unlike activeTasks this is not
+    // cleared on cancel, so awaitCompletion() cannot return while a killed job is still cleaning up
+    private final Set<ConversionTask> inFlight = ConcurrentHashMap.newKeySet();
+    // Scheduler handles of queued tasks, so a row's priority can be changed while it waits
+    private final Map<FileInfo, Future<?>> queuedJobs = new ConcurrentHashMap<>();
+    private final ConversionScheduler scheduler;
+    // Receives row progress/status updates from the workers (the UI batches them per frame)
+    private volatile ConversionListener listener = ConversionListener.DIRECT;
+    // Sources at least this long are split into time segments that encode in parallel when the target is
+    // lossless (wav/flac); lossy seams would carry encoder padding. <= 0 disables
+    private volatile double segmentMinDuration = DEFAULT_SEGMENT_MIN_DURATION;
+    // Normalize every output to EBU R128 (an analysis pass first, unless the source was measured before)
+    private volatile boolean normalizeLoudness;
 
-    public void startConversions(ObservableList<FileInfo> files, String defaultFormat, Runnable onProgressUpdate,
+    public static final double DEFAULT_SEGMENT_MIN_DURATION = 10 * 60;
+    // System property the UI reads for a scratch folder (headless uses --staging)
+    public static final String STAGING_DIR_PROPERTY = "audioconverter.stagingDir";
+
+    // Optional on-disk record of job transitions, so a crashed session can be resumed
+    private volatile JobJournal journal;
+
+    // Every queued task until its final state is recorded (journal entry, batch report, JFR event)
+    private record TrackedJob(long journalId, BatchReport batch) { }
+    // Settings shared by the resumed jobs that go into one enqueue call
+    private record BatchSettings(String bitrate, String sampleRate, String channel, String outputDir,
+                                 boolean normalizeLoudness) { }
+    private final Map<ConversionTask, TrackedJob> trackedJobs = new ConcurrentHashMap<>();
+    // Batches of the current session, for live snapshots; each writes its report once all its jobs end
+    private final List<BatchReport> batches = new CopyOnWriteArrayList<>();
+    private volatile boolean writeReports = true;
+
+    // Adjusts the concurrency limit from measured throughput when enabled (null = fixed limit)
+    private AdaptiveConcurrency adaptive;
+    // Seconds of audio converted by tasks that already left activeTasks (feeds the adaptive controller)
+    private final DoubleAdder finishedAudioSeconds = new DoubleAdder();
+
+    // Local scratch folder jobs encode into (null = a hidden work folder inside the output folder);
+    // finished outputs are published to the output folder by a bounded mover stage off the worker threads
+    private volatile File stagingDir;
+    private OutputPublisher publisher;
+
+    // Pause-all state: running jobs are suspended and the queue holds until resumeAll()
+    private boolean paused;
+
+    public ConversionManager() {
+        this(ConversionScheduler.DEFAULT_CONCURRENCY);
+    }
+
+    public ConversionManager(int maxConcurrentJobs) {
+        this.scheduler = new ConversionScheduler(maxConcurrentJobs);
+    }
+
+    public void setMaxConcurrentJobs(int maxConcurrentJobs) {
+        scheduler.setMaxConcurrent(maxConcurrentJobs);
+    }
+
+    public int getMaxConcurrentJobs() {
+        return scheduler.getMaxConcurrent();
+    }
+
+    // Order in which waiting jobs start (row priority always comes first); re-sorts the current queue
+    public void setSchedulingPolicy(SchedulingPolicy policy) {
+        scheduler.setPolicy(policy);
+    }
+
+    public SchedulingPolicy getSchedulingPolicy() {
+        return scheduler.getPolicy();
+    }
+
+    // Changes a row's priority; if its job is still waiting it moves to its new place in the queue right away
+    public void setPriority(FileInfo info, int priority) {
+        info.setPriority(priority);
+        Future<?> queued = queuedJobs.get(info);
+        if (queued != null) scheduler.setPriority(queued, priority);
+    }
+
+    // Caps the jobs reading or writing any single disk or share (<= 0 = per device type: spinning
+    // disks and network shares get a small limit, SSDs and tmpfs only the overall one)
+    public void setMaxJobsPerDevice(int limit) {
+        scheduler.setDeviceLimit(limit);
+    }
+
+    // Lets the job count float between 1 and twice the core count, following the measured realtime
+    // factor, CPU load and I/O wait; the current limit is the starting point. Disabling keeps the last value.
+    public synchronized void setAdaptiveConcurrency(boolean enabled) {
+        if (enabled && adaptive == null) {
+            adaptive = new AdaptiveConcurrency(scheduler, this::encodedAudioSeconds, 1,
+                    2 * ConversionScheduler.DEFAULT_CONCURRENCY);
+            adaptive.start(AdaptiveConcurrency.DEFAULT_INTERVAL_MS);
+        } else if (!enabled && adaptive != null) {
+            adaptive.stop();
+            adaptive = null;
+        }
+    }
+
+    public synchronized boolean isAdaptiveConcurrency() {
+        return adaptive != null;
+    }
+
+    // Total seconds of audio converted so far this session, counting partial progress of running tasks
+    public double encodedAudioSeconds() {
+        double total = finishedAudioSeconds.sum();
+        for (ConversionTask task : activeTasks.values()) total += audioSeconds(task);
+        return total;
+    }
+
+    private static double audioSeconds(ConversionTask task) {
+        return task.getProgress() * Math.max(0, task.getMetrics().getDurationSeconds());
+    }
+
+    public void setSegmentMinDuration(double seconds) {
+        this.segmentMinDuration = seconds;
+    }
+
+    public double getSegmentMinDuration() {
+        return segmentMinDuration;
+    }
+
+    // Applies to batches queued afterwards; outputs made with the other setting count as stale and are redone
+    public void setNormalizeLoudness(boolean normalize) {
+        this.normalizeLoudness = normalize;
+    }
+
+    public boolean isNormalizeLoudness() {
+        return normalizeLoudness;
+    }
+
+    // Encodes into dir (e.g. tmpfs or a local SSD) and moves outputs to the output folder afterwards, so
+    // workers never wait on slow destination I/O such as a NAS; null writes next to the outputs again
+    public synchronized void setStagingDir(File dir) {
+        stagingDir = dir;
+        if (dir != null && publisher == null) publisher = new OutputPublisher();
+    }
+
+    public File getStagingDir() {
+        return stagingDir;
+    }
+
+    public void setJournal(JobJournal journal) {
+        this.journal = journal;
+    }
+
+    // Whether each batch writes conversion-report-*.csv/.json into its output folder when it completes
+    public void setWriteReports(boolean writeReports) {
+        this.writeReports = writeReports;
+    }
+
+    // Live view of the current session: queue depth, running count and per-job phase timings so far
+    public MetricsSnapshot getMetricsSnapshot() {
+        List<JobMetrics> jobs = new ArrayList<>();
+        for (BatchReport batch : batches) jobs.addAll(batch.snapshot());
+        return new MetricsSnapshot(getQueuedCount(), getRunningCount(), jobs);
+    }
+
+    public void startConversions(List<FileInfo> files, String defaultFormat, ConversionListener listener,
                                  String bitrate, String sampleRate, String channel, File outputDirectory) {
         cancelConversions();
+        batches.clear();
+        this.listener = listener;
+        enqueue(files, defaultFormat, listener, bitrate, sampleRate, channel, outputDirectory, normalizeLoudness);
+    }
+
+    // Rebuilds the queue from jobs an earlier session left unfinished (crash, power loss, killed process).
+    // Outputs of jobs that had started are discarded first; returns the rows that were queued again.
+    // Each job keeps the settings it was queued with (including loudness normalization), not the current ones.
+    public List<FileInfo> resumeUnfinished(ConversionListener listener) {
+        JobJournal journal = this.journal;
+        if (journal == null) return List.of();
+        List<JobJournal.Job> jobs = journal.unfinishedJobs();
+        if (jobs.isEmpty()) return List.of();
+        this.listener = listener;
+        // Without FFmpeg only in-process WAV jobs can run; the rest stay in the journal for the next start
+        boolean ffmpegAvailable = FFmpegManager.isFFmpegAvailable();
 
+        Map<BatchSettings, List<FileInfo>> groups = new LinkedHashMap<>(); // same settings -> one enqueue call
+        Set<File> scratchChecked = new HashSet<>();
+        List<FileInfo> resumed = new ArrayList<>();
+        List<JobJournal.Job> superseded = new ArrayList<>();
+        for (JobJournal.Job job : jobs) {
+            if (!ffmpegAvailable && needsFFmpeg(job.getSourceFormat(), FileInfo.parseFormats(job.getTargetFormats()),
+                    job.isNormalizeLoudness())) continue;
+            superseded.add(job);
+            File source = new File(job.getSourcePath());
+            if (!source.isFile()) continue; // source is gone; nothing to resume
+            File outputDir = new File(job.getOutputDir());
+            if (job.wasStarted()) discardPartialOutputs(job, source, outputDir, scratchChecked);
+
+            FileInfo info = new FileInfo(source.getAbsolutePath(), job.getSourceFormat(), source.length());
+            info.setTargetFormat(job.getTargetFormats());
+            groups.computeIfAbsent(new BatchSettings(job.getBitrate(), job.getSampleRate(), job.getChannel(),
+                    job.getOutputDir(), job.isNormalizeLoudness()), _ -> new ArrayList<>()).add(info);
+            resumed.add(info);
+        }
+        groups.forEach((settings, files) -> enqueue(files, files.get(0).getTargetFormat(), listener,
+                settings.bitrate(), settings.sampleRate(), settings.channel(), new File(settings.outputDir()),
+                settings.normalizeLoudness()));
+
+        // The old entries are superseded by the jobs just queued (only now, so a crash above loses nothing)
+        journal.holdSync();
+        try {
+            for (JobJournal.Job job : superseded) journal.cancelled(job.getId());
+        } finally {
+            journal.resumeSync();
+        }
+        return resumed;
+    }
+
+    // Whether any of these rows needs FFmpeg with the current settings; WAV to WAV alone runs in-process
+    public boolean needsFFmpeg(List<FileInfo> files, String defaultFormat) {
         for (FileInfo info : files) {
-            try {
-                // ✅ 1. Check FFmpeg setup
-                if (!FFmpegManager.isFFmpegAvailable()) {
-                    throw new MissingFFmpegException("Please configure FFmpeg before starting a conversion.");
-                }
+            List<String> targetFormats = info.getTargetFormats();
+            if (targetFormats.isEmpty()) targetFormats = FileInfo.parseFormats(defaultFormat);
+            if (needsFFmpeg(info.getFormat(), targetFormats, normalizeLoudness)) return true;
+        }
+        return false;
+    }
 
-                // ✅ 2. Validate format
-                String targetFormat = (info.getTargetFormat() != null && !info.getTargetFormat().isBlank())
-                        ? info.getTargetFormat()
-                        : defaultFormat;
+    // Decided from names only: a WAV source that is not plain PCM still needs FFmpeg and fails at its own turn
+    static boolean needsFFmpeg(String sourceFormat, List<String> targetFormats, boolean normalize) {
+        return normalize || !"wav".equalsIgnoreCase(sourceFormat) || !targetFormats.equals(List.of("wav"));
+    }
 
-                String inputExt = info.getFormat().toLowerCase();
-                if (inputExt.equalsIgnoreCase(targetFormat)) {
-                    throw new InvalidAudioFormatException("File is already in ." + targetFormat + " format. \nIt will be re-encoded.");
-                }
+    // Cleans up after an interrupted session without re-queueing its jobs (headless re-runs the same
+    // command instead, and the manifest skips what already finished); returns how many jobs were dropped
+    public int discardUnfinished() {
+        JobJournal journal = this.journal;
+        if (journal == null) return 0;
+        List<JobJournal.Job> jobs = journal.unfinishedJobs();
+        Set<File> scratchChecked = new HashSet<>();
+        journal.holdSync();
+        try {
+            for (JobJournal.Job job : jobs) {
+                File source = new File(job.getSourcePath());
+                if (job.wasStarted()) discardPartialOutputs(job, source, new File(job.getOutputDir()), scratchChecked);
+                journal.cancelled(job.getId());
+            }
+        } finally {
+            journal.resumeSync();
+        }
+        return jobs.size();
+    }
+
+    // Deletes outputs an interrupted job may have left half-written. Outputs the manifest still
+    // vouches for (finished before the crash) are kept and will be skipped as up to date.
+    private void discardPartialOutputs(JobJournal.Job job, File source, File outputDir, Set<File> scratchChecked) {
+        if (scratchChecked.add(outputDir)) ConversionTask.deleteWorkFolders(outputDir);
+        File staging = stagingDir;
+        if (staging != null && scratchChecked.add(staging)) ConversionTask.deleteWorkFolders(staging);
+        OutputManifest manifest = OutputManifest.load(outputDir);
+        String baseName = source.getName().replaceFirst("[.][^.]+$", "");
+        for (String format : FileInfo.parseFormats(job.getTargetFormats())) {
+            File output = new File(outputDir, baseName + "." + format);
+            String settings = OutputManifest.settingsKey(format, job.getBitrate(), job.getSampleRate(), job.getChannel(),
+                    job.isNormalizeLoudness());
+            if (output.isFile() && !manifest.isUpToDate(source, output, settings) && !output.delete()) {
+                System.err.println("[ConversionManager] Could not delete partial output " + output);
+            }
+        }
+    }
+
+    private void enqueue(List<FileInfo> files, String defaultFormat, ConversionListener listener,
+                         String bitrate, String sampleRate, String channel, File outputDirectory,
+                         boolean normalize) {
+        // Records what earlier runs produced in this folder, so unchanged sources can be skipped
+        OutputManifest manifest = OutputManifest.load(outputDirectory);
+        File staging = stagingDir;
+        // Encoders write to the scratch folder when staging, so that is the device they load
+        Object writeDevice = StorageDevices.of(staging != null ? staging : outputDirectory);
+        BatchReport batch = new BatchReport(outputDirectory, writeReports);
+        batches.add(batch);
+
+        // Shortest-first needs the whole batch queued before picking; otherwise the first rows grab the workers
+        boolean hold = scheduler.getPolicy() == SchedulingPolicy.SHORTEST_FIRST;
+        if (hold) scheduler.holdDispatch();
+        // One journal fsync for the whole batch instead of one per queued file
+        JobJournal journal = this.journal;
+        if (journal != null) journal.holdSync();
+        try {
+            enqueueAll(files, defaultFormat, listener, bitrate, sampleRate, channel, normalize, outputDirectory,
+                    manifest, batch, staging, writeDevice);
+        } finally {
+            if (journal != null) journal.resumeSync();
+            if (hold) scheduler.resumeDispatch();
+        }
+        batch.seal();
+    }
+
+    private void enqueueAll(List<FileInfo> files, String defaultFormat, ConversionListener listener,
+                            String bitrate, String sampleRate, String channel, boolean normalize,
+                            File outputDirectory, OutputManifest manifest, BatchReport batch, File staging,
+                            Object writeDevice) {
+        for (FileInfo info : files) {
+            try {
+                // ✅ 2. Resolve target formats (a row may ask for several, e.g. "mp3+flac+m4a")
+                List<String> targetFormats = info.getTargetFormats();
+                if (targetFormats.isEmpty()) targetFormats = FileInfo.parseFormats(defaultFormat);
 
-                // ✅ 3. Check for duplicate output
+                // Same-format sources are no longer rejected: ConversionTask copies or remuxes them
+                // when the probed stream already matches the requested settings
+
+                // ✅ 3. Check the output folder per target: skip up-to-date outputs, refuse to overwrite foreign files
                 String baseName = info.getFileName().replaceFirst("[.][^.]+$", "");
-                File outputFile = new File(outputDirectory, baseName + "." + targetFormat);
-                if (outputFile.exists()) {
-                    throw new DuplicateOutputException("Output file already exists: " + outputFile.getName());
+                File sourceFile = new File(info.getFilePath());
+                Map<String, String> skipped = new LinkedHashMap<>();
+                List<String> pending = new ArrayList<>();
+                for (String targetFormat : targetFormats) {
+                    File outputFile = new File(outputDirectory, baseName + "." + targetFormat);
+                    String settings = OutputManifest.settingsKey(targetFormat, bitrate, sampleRate, channel,
+                            normalize);
+                    if (outputFile.exists()) {
+                        if (manifest.isUpToDate(sourceFile, outputFile, settings)) {
+                            // Source and settings unchanged since the last run: nothing to do, no ffmpeg launch
+                            skipped.put(targetFormat, "up to date");
+                            continue;
+                        }
+                        if (!manifest.isTracked(outputFile)) {
+                            DuplicateOutputException duplicate =
+                                    new DuplicateOutputException("Output file already exists: " + outputFile.getName());
+                            if (targetFormats.size() == 1) throw duplicate;
+                            // With several targets only this output is skipped; the others still convert
+                            listener.onError(info, duplicate);
+                            skipped.put(targetFormat, "skipped (exists)");
+                            continue;
+                        }
+                        // Otherwise it is our own stale output (source or settings changed) and gets re-converted
+                    }
+                    pending.add(targetFormat);
+                }
+                if (pending.isEmpty()) {
+                    if (targetFormats.size() > 1) listener.onTargets(info, ConversionTask.skippedStates(skipped));
+                    else if (!info.getTargetStates().isEmpty()) listener.onTargets(info, List.of());
+                    listener.onProgress(info, 1.0);
+                    listener.onStatus(info, skipped.containsValue("up to date") ? "Up to date" : "Skipped (Duplicate)");
+                    continue;
                 }
 
-                // ✅ 4. Start conversion
-                ConversionTask task = new ConversionTask(info, targetFormat, bitrate, sampleRate, channel, outputDirectory);
-                task.progressProperty().addListener((_, _, _) -> Platform.runLater(onProgressUpdate));
+                // ✅ 4. Queue conversion (runs when a worker slot frees up); all pending targets share one decode
+                ConversionTask task = new ConversionTask(info, pending, bitrate, sampleRate, channel, outputDirectory,
+                        listener);
+                skipped.forEach(task::skipOutput);
+                task.announceTargets(); // per-format rows show up in the status tooltip
+                List<Object> devices = Arrays.asList(StorageDevices.of(sourceFile), writeDevice);
+                if (segmentMinDuration > 0) task.enableSegmenting(scheduler, segmentMinDuration, devices);
+                if (staging != null) task.enableStaging(staging);
+                if (normalize) task.enableLoudnessNormalization();
                 activeTasks.put(info, task);
+                inFlight.add(task);
+                JobJournal journal = this.journal;
+                long journalId = journal == null ? -1 : journal.queued(info, String.join("+", pending), bitrate,
+                        sampleRate, channel, outputDirectory.getAbsolutePath(), normalize);
+                batch.add(task.getMetrics());
+                trackedJobs.put(task, new TrackedJob(journalId, batch));
+                listener.onProgress(info, 0.0);
+                listener.onStatus(info, "Queued");
 
-                Thread t = new Thread(task);
-                t.setDaemon(true);
-                t.start();
+                // Runs once the outputs are in place: on the worker, or on the mover when staging
+                Runnable complete = () -> {
+                    try {
+                        if (task.isSucceeded()) {
+                            long recordStart = System.nanoTime();
+                            for (String targetFormat : pending) {
+                                manifest.record(sourceFile, new File(outputDirectory, baseName + "." + targetFormat),
+                                        OutputManifest.settingsKey(targetFormat, bitrate, sampleRate, channel,
+                                                normalize));
+                            }
+                            task.getMetrics().addFinalizeNanos(System.nanoTime() - recordStart);
+                        }
+                    } finally {
+                        jobFinished(task);
+                        finished(info, task);
+                    }
+                };
+                // Estimated from cached probes or file headers only, so queueing never waits on ffprobe
+                double cost = JobCost.estimate(sourceFile, info.getFormat(), pending, normalize);
+                // Dispatch is held until the handle is registered; otherwise a free worker could start the job
+                // and drop its (not yet added) entry first, leaving a stale one behind for cancelConversion
+                scheduler.holdDispatch();
+                try {
+                    queuedJobs.put(info, scheduler.submit(() -> {
+                        queuedJobs.remove(info);
+                        if (isPaused()) task.startPaused(); // picked up just as everything was paused
+                        try {
+                            journalStarted(task);
+                            task.run();
+                        } finally {
+                            if (task.isAwaitingPublish()) publishLater(task, complete);
+                            else complete.run();
+                        }
+                    }, devices, info.getPriority(), cost));
+                } finally {
+                    scheduler.resumeDispatch();
+                }
 
             } catch (Exception e) {
-                // ✅ Centralized exception handler
-                AppExceptionHandler.handle(e);
+                // ✅ Report through the listener (the UI shows it via AppExceptionHandler)
+                listener.onError(info, e);
 
                 // Mark the file status appropriately
                 if (e instanceof DuplicateOutputException)
-                    info.setStatus("Skipped (Duplicate)");
-                else if (e instanceof InvalidAudioFormatException)
-                    info.setStatus("Skipped (Same Format)");
+                    listener.onStatus(info, "Skipped (Duplicate)");
                 else
-                    info.setStatus("Error");
+                    listener.onStatus(info, "Error");
             }
         }
     }
 
+    // Hands a staged task to the mover; blocks while the mover's backlog is full, which keeps the
+    // scratch folder from filling up when the destination is slower than the encoders
+    private void publishLater(ConversionTask task, Runnable complete) {
+        Runnable publish = () -> {
+            try {
+                task.publish();
+            } finally {
+                complete.run();
+            }
+        };
+        OutputPublisher publisher;
+        synchronized (this) {
+            publisher = this.publisher;
+        }
+        try {
+            publisher.submit(publish);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            publish.run();
+        }
+    }
+
+    // Suspends every running job (ffmpeg is stopped, not killed, so no progress is lost) and stops
+    // queued jobs from starting, freeing the cores until resumeAll(); returns false where unsupported
+    public synchronized boolean pauseAll() {
+        if (paused || !ProcessControl.isSuspendSupported()) return paused;
+        paused = true;
+        scheduler.holdDispatch();
+        for (ConversionTask task : activeTasks.values()) task.pause();
+        return true;
+    }
+
+    public synchronized void resumeAll() {
+        if (!paused) return;
+        paused = false;
+        for (ConversionTask task : activeTasks.values()) task.resume();
+        scheduler.resumeDispatch();
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    // Pauses or resumes a single running job; returns false if the row has no job that can be paused
+    public boolean pauseConversion(FileInfo file) {
+        ConversionTask task = activeTasks.get(file);
+        return task != null && task.pause();
+    }
+
+    public void resumeConversion(FileInfo file) {
+        ConversionTask task = activeTasks.get(file);
+        if (task != null) task.resume();
+    }
+
     public void cancelConversions() {
-        for (ConversionTask task : activeTasks.values()) {
-            task.cancel();
+        scheduler.holdDispatch(); // nothing starts while the batch is torn down
+        try {
+            for (Map.Entry<FileInfo, ConversionTask> entry : activeTasks.entrySet()) {
+                ConversionTask task = entry.getValue();
+                task.cancel();
+                // Running (or just dispatched) tasks mark themselves "Cancelled" and finish on their worker;
+                // the ones still waiting never reach a worker, so their end is recorded here
+                Future<?> queued = queuedJobs.remove(entry.getKey());
+                if (queued != null && scheduler.remove(queued)) {
+                    listener.onStatus(entry.getKey(), "Cancelled");
+                    task.finishTargets("Cancelled");
+                    jobFinished(task);
+                    finished(entry.getKey(), task);
+                }
+            }
+            scheduler.clearQueue(); // leftover segment jobs of the killed tasks
+            activeTasks.clear();
+            queuedJobs.clear();
+        } finally {
+            scheduler.resumeDispatch();
+        }
+        synchronized (this) {
+            // Stopped jobs were killed above as they are; only the queue hold is lifted for the next batch
+            if (paused) {
+                paused = false;
+                scheduler.resumeDispatch();
+            }
         }
-        activeTasks.clear();
     }
 
+    // Cancels one row: a running job's ffmpeg process tree is killed at once, a queued job leaves the queue
     public void cancelConversion(FileInfo file) {
-        ConversionTask task = activeTasks.get(file);
-        if (task != null) {
-            task.cancel();
-            activeTasks.remove(file);
+        ConversionTask task = activeTasks.remove(file);
+        if (task == null) return;
+        task.cancel();
+        Future<?> queued = queuedJobs.remove(file);
+        if (queued != null && scheduler.remove(queued)) {
+            // Never reaches a worker, so record its end here
+            listener.onStatus(file, "Cancelled");
+            task.finishTargets("Cancelled");
+            jobFinished(task);
+            finished(file, task);
+        }
+    }
+
+    // Blocks until every queued and running task has finished or been cancelled (used by headless mode);
+    // a cancelled task counts only once its ffmpeg is gone and its work folder is cleaned up
+    public void awaitCompletion() throws InterruptedException {
+        synchronized (inFlight) {
+            while (!inFlight.isEmpty()) {
+                inFlight.wait();
+            }
+        }
+    }
+
+    private void journalStarted(ConversionTask task) {
+        TrackedJob job = trackedJobs.get(task);
+        JobJournal journal = this.journal;
+        if (job != null && job.journalId() >= 0 && journal != null && !task.isCancelled()) {
+            journal.started(job.journalId());
         }
     }
+
+    // Records the final state once per task (whoever gets here first: the worker or a cancel)
+    private void jobFinished(ConversionTask task) {
+        TrackedJob job = trackedJobs.remove(task);
+        if (job == null) return;
+        JobMetrics metrics = task.getMetrics();
+        if (!task.isRunning() && !metrics.isStarted()) metrics.setStatus("Cancelled"); // dropped from the queue
+        metrics.markFinished();
+        ConversionJobEvent.commit(metrics);
+        job.batch().jobFinished();
+
+        JobJournal journal = this.journal;
+        if (job.journalId() < 0 || journal == null) return;
+        if (task.isSucceeded()) journal.done(job.journalId());
+        else if (task.isCancelled()) journal.cancelled(job.journalId());
+        else journal.failed(job.journalId());
+    }
+
+    private void finished(FileInfo info, ConversionTask task) {
+        finishedAudioSeconds.add(audioSeconds(task));
+        activeTasks.remove(info, task);
+        inFlight.remove(task);
+        synchronized (inFlight) {
+            inFlight.notifyAll();
+        }
+    }
+
+    public int getQueuedCount() {
+        return scheduler.getQueuedCount();
+    }
+
+    public int getRunningCount() {
+        return scheduler.getRunningCount();
+    }
 }
@@ -0,0 +1,75 @@
+package se233.audioconverterapp1.model;
+
+import se233.audioconverterapp1.util.MediaInfo;
+
+// วิธีที่ใช้สร้างไฟล์ผลลัพธ์ เลือกจากข้อมูลสตรีมของต้นฉบับเทียบกับค่าที่ผู้ใช้ขอ
+public enum ConversionMode {
+    ENCODE,  // ถอดรหัสแล้วเข้ารหัสใหม่ด้วย ffmpeg (กรณีทั่วไป)
+    REMUX,   // สตรีมเสียงตรงกับที่ขออยู่แล้ว แค่ย้ายใส่ container ใหม่ (ffmpeg -c:a copy)
+    COPY,    // ทั้ง container และสตรีมตรงกันแล้ว คัดลอกไฟล์ตรง ๆ ไม่ต้องรัน ffmpeg
+    PCM;     // WAV -> WAV ที่ต้องเปลี่ยน sample rate/ช่องเสียง/bit depth แปลงในโปรแกรมเอง (PcmConverter)
+
+    // ยอมให้บิตเรตของไฟล์ lossy ต่างจากที่ขอได้เล็กน้อย (ไฟล์ VBR หรือค่าที่ ffprobe ปัดเศษ)
+    private static final double BITRATE_TOLERANCE = 0.10;
+
+    // เลือกวิธีที่เร็วที่สุดที่ยังได้ผลตรงตามค่าที่ขอ (ถ้าข้อมูลไม่พอให้ ENCODE เสมอ)
+    public static ConversionMode choose(String sourceFormat, MediaInfo info, String targetFormat,
+                                        String bitrate, String sampleRate, String channel) {
+        if (info == null || info.getCodec() == null) return ENCODE;
+
+        String expectedCodec = codecFor(targetFormat);
+        if (expectedCodec == null || !expectedCodec.equals(info.getCodec())) return ENCODE;
+
+        int requestedRate = parseIntOr(sampleRate, -1);
+        int requestedChannels = channel.equalsIgnoreCase("mono") || channel.equals("1") ? 1 : 2;
+        if (info.getSampleRate() != requestedRate || info.getChannels() != requestedChannels) return ENCODE;
+
+        // codec แบบ lossy ต้องมีบิตเรตใกล้กับที่ขอด้วย ไม่อย่างนั้นการคัดลอกจะไม่ได้คุณภาพ/ขนาดที่ผู้ใช้ต้องการ
+        if (isLossy(expectedCodec)) {
+            long requestedBitrate = parseBitrate(bitrate);
+            if (requestedBitrate <= 0 || info.getBitrate() <= 0) return ENCODE;
+            if (Math.abs(info.getBitrate() - requestedBitrate) > requestedBitrate * BITRATE_TOLERANCE) return ENCODE;
+        }
+
+        return targetFormat.equalsIgnoreCase(sourceFormat) ? COPY : REMUX;
+    }
+
+    // codec ที่ ffmpeg ใช้เป็นค่าเริ่มต้นของแต่ละฟอร์แมตเป้าหมาย
+    static String codecFor(String format) {
+        switch (format.toLowerCase()) {
+            case "mp3": return "mp3";
+            case "m4a": return "aac";
+            case "flac": return "flac";
+            case "wav": return "pcm_s16le";
+            default: return null;
+        }
+    }
+
+    private static boolean isLossy(String codec) {
+        return codec.equals("mp3") || codec.equals("aac");
+    }
+
+    // แปลงค่าบิตเรตเช่น "192k" หรือ "192000" เป็น bit/s
+    static long parseBitrate(String bitrate) {
+        if (bitrate == null || bitrate.isBlank()) return -1;
+        String value = bitrate.trim().toLowerCase();
+        long multiplier = 1;
+        if (value.endsWith("k")) {
+            multiplier = 1000;
+            value = value.substring(0, value.length() - 1);
+        }
+        try {
+            return Long.parseLong(value) * multiplier;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int parseIntOr(String value, int fallback) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (Exception e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package se233.audioconverterapp1.model;
+
+import se233.audioconverterapp1.util.StorageDevices;
+
+import java.nio.file.FileStore;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+// คลาสนี้เป็นตัวจัดคิวงานแปลงไฟล์ จำกัดจำนวนงานที่รันพร้อมกันทั้งหมด และจำนวนงานต่ออุปกรณ์เก็บข้อมูล
+// งานแต่ละงานบอกอุปกรณ์ที่ใช้ (ดิสก์ต้นทาง/ปลายทาง) งานที่ใช้อุปกรณ์ชุดเดียวกันอยู่กลุ่มเดียวกัน
+// ในกลุ่มเรียงตามลำดับความสำคัญ แล้วตาม SchedulingPolicy (ลำดับที่ส่งเข้ามา หรือต้นทุนที่ประมาณไว้น้อยก่อน)
+// ส่วนการเริ่มงานหยิบวนทีละกลุ่ม ข้ามกลุ่มที่อุปกรณ์เต็มแล้ว จึงใช้หลายดิสก์พร้อมกันโดยไม่อัดงานใส่ดิสก์เดียว
+public class ConversionScheduler {
+    // จำนวนงานพร้อมกันเริ่มต้น เท่ากับจำนวนคอร์ของเครื่อง (ffmpeg แปลงเสียงใช้ ~1 คอร์ต่อไฟล์)
+    public static final int DEFAULT_CONCURRENCY = Math.max(1, Runtime.getRuntime().availableProcessors());
+    // ลำดับความสำคัญของงานย่อย (ช่วงของไฟล์ยาว) ที่งานแม่เริ่มไปแล้ว ให้ไปก่อนงานใหม่ทุกงาน
+    public static final int URGENT = Integer.MAX_VALUE;
+
+    private final ThreadPoolExecutor executor;        // pool ของ worker thread
+    private final AtomicInteger threadCounter = new AtomicInteger(); // ใช้ตั้งชื่อ thread
+
+    // ใช้ภายใต้ lock ของ this ทั้งหมด
+    private final LinkedHashMap<List<Object>, TreeSet<Job>> pending = new LinkedHashMap<>(); // อุปกรณ์ -> งานที่รอ
+    private SchedulingPolicy policy = SchedulingPolicy.FIFO;
+    private Comparator<Job> order = orderFor(policy);
+    private long sequence;     // ลำดับที่ส่งเข้ามา (ใช้ตัดสินเมื่อค่าอื่นเท่ากัน)
+    private final Map<Object, Integer> inFlight = new HashMap<>(); // อุปกรณ์ -> จำนวนงานที่กำลังใช้
+    private int maxConcurrent;
+    private int running;       // งานที่ส่งให้ worker แล้ว
+    private int queued;        // งานที่ยังรอใน pending
+    private int holds;         // > 0 = กำลังส่งงานชุดใหญ่เข้าคิว ยังไม่เริ่มงาน (ดู holdDispatch)
+    private int deviceLimitOverride; // > 0 = ใช้ค่านี้กับทุกอุปกรณ์แทนค่าที่ตรวจได้
+    private final ToIntFunction<Object> deviceLimit;
+
+    // คอนสตรัคเตอร์ใช้ค่าเริ่มต้นตามจำนวนคอร์
+    public ConversionScheduler() {
+        this(DEFAULT_CONCURRENCY);
+    }
+
+    // คอนสตรัคเตอร์กำหนดจำนวนงานพร้อมกันสูงสุดเอง (จำกัดต่ออุปกรณ์ตามชนิดของอุปกรณ์)
+    public ConversionScheduler(int maxConcurrent) {
+        this(maxConcurrent, device -> device instanceof FileStore store
+                ? StorageDevices.defaultLimit(store) : StorageDevices.UNLIMITED);
+    }
+
+    public ConversionScheduler(int maxConcurrent, ToIntFunction<Object> deviceLimit) {
+        int limit = Math.max(1, maxConcurrent);
+        ThreadFactory factory = runnable -> {
+            Thread t = new Thread(runnable, "conversion-worker-" + threadCounter.incrementAndGet());
+            t.setDaemon(true); // ไม่ให้ค้างตอนปิดโปรแกรม
+            return t;
+        };
+        // งานถูกส่งให้ executor เมื่อเริ่มได้แล้วเท่านั้น คิวของ executor จึงแทบว่างตลอด
+        executor = new ThreadPoolExecutor(limit, limit, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+        executor.allowCoreThreadTimeOut(true); // ปล่อย thread ทิ้งเมื่อว่างนาน
+        this.maxConcurrent = limit;
+        this.deviceLimit = deviceLimit;
+    }
+
+    // ส่งงานเข้าคิวโดยไม่ระบุอุปกรณ์ (จำกัดแค่จำนวนงานรวม)
+    public Future<?> submit(Runnable job) {
+        return submit(job, List.of());
+    }
+
+    public Future<?> submit(Runnable job, Collection<?> devices) {
+        return submit(job, devices, 0, 0);
+    }
+
+    // ส่งงานเข้าคิว งานจะเริ่มเมื่อมี worker ว่างและทุกอุปกรณ์ที่ใช้ยังไม่เต็ม (null ในรายการถูกข้าม)
+    // priority มากเริ่มก่อน; cost คือเวลาโดยประมาณ ใช้เมื่อนโยบายเป็น SHORTEST_FIRST
+    public synchronized Future<?> submit(Runnable job, Collection<?> devices, int priority, double cost) {
+        List<Object> used = devices.stream().filter(Objects::nonNull).distinct().map(Object.class::cast).toList();
+        Job entry = new Job(job, used, priority, cost, sequence++);
+        pending.computeIfAbsent(entry.devices, _ -> new TreeSet<>(order)).add(entry);
+        queued++;
+        dispatch();
+        return entry;
+    }
+
+    // เปลี่ยนลำดับความสำคัญของงานที่ส่งเข้ามาแล้ว งานที่ยังรออยู่ขยับที่ในคิวทันที (งานที่เริ่มแล้วไม่มีผล)
+    public synchronized void setPriority(Future<?> job, int priority) {
+        if (!(job instanceof Job entry) || entry.priority == priority) return;
+        TreeSet<Job> group = pending.get(entry.devices);
+        boolean waiting = group != null && group.remove(entry); // ต้องเอาออกก่อนเปลี่ยนค่าที่ใช้เรียง
+        entry.priority = priority;
+        if (waiting) group.add(entry);
+    }
+
+    // เอางานที่ยังไม่เริ่มออกจากคิว คืน false ถ้างานเริ่มไปแล้วหรือไม่อยู่ในคิว
+    public synchronized boolean remove(Future<?> job) {
+        if (!(job instanceof Job entry)) return false;
+        TreeSet<Job> group = pending.get(entry.devices);
+        if (group == null || !group.remove(entry)) return false;
+        if (group.isEmpty()) pending.remove(entry.devices);
+        queued--;
+        entry.cancel(false);
+        return true;
+    }
+
+    // เปลี่ยนนโยบายการเรียง งานที่รออยู่ถูกเรียงใหม่ทันที
+    public synchronized void setPolicy(SchedulingPolicy policy) {
+        if (policy == this.policy) return;
+        this.policy = policy;
+        this.order = orderFor(policy);
+        for (Map.Entry<List<Object>, TreeSet<Job>> group : pending.entrySet()) {
+            TreeSet<Job> resorted = new TreeSet<>(order);
+            resorted.addAll(group.getValue());
+            group.setValue(resorted);
+        }
+    }
+
+    public synchronized SchedulingPolicy getPolicy() { return policy; }
+
+    // ยังไม่เริ่มงานจนกว่าจะเรียก resumeDispatch() (เรียกซ้อนกันได้) ใช้ตอนส่งงานทั้งชุดเข้าคิว
+    // ไม่อย่างนั้นงานแรก ๆ ตามลำดับตารางจะได้ worker ไปก่อนที่งานสั้นกว่าจะเข้าคิวมาเทียบ
+    public synchronized void holdDispatch() {
+        holds++;
+    }
+
+    public synchronized void resumeDispatch() {
+        if (holds > 0) holds--;
+        dispatch();
+    }
+
+    private static Comparator<Job> orderFor(SchedulingPolicy policy) {
+        Comparator<Job> byPriority = Comparator.comparingInt((Job job) -> job.priority).reversed();
+        if (policy == SchedulingPolicy.SHORTEST_FIRST) byPriority = byPriority.thenComparingDouble(job -> job.cost);
+        return byPriority.thenComparingLong(job -> job.sequence);
+    }
+
+    // ปรับจำนวนงานพร้อมกันสูงสุดระหว่างทำงานได้
+    public synchronized void setMaxConcurrent(int maxConcurrent) {
+        int limit = Math.max(1, maxConcurrent);
+        // ต้องเรียงลำดับการตั้งค่าให้ core <= max ตลอดเวลา
+        if (limit > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(limit);
+            executor.setCorePoolSize(limit);
+        } else {
+            executor.setCorePoolSize(limit);
+            executor.setMaximumPoolSize(limit);
+        }
+        this.maxConcurrent = limit;
+        dispatch();
+    }
+
+    public synchronized int getMaxConcurrent() { return maxConcurrent; }
+
+    // จำกัดทุกอุปกรณ์ไว้ที่ limit งาน (<= 0 = กลับไปใช้ค่าที่ตรวจจากชนิดอุปกรณ์)
+    public synchronized void setDeviceLimit(int limit) {
+        this.deviceLimitOverride = Math.max(0, limit);
+        dispatch();
+    }
+
+    // จำนวนงานที่รอคิวอยู่
+    public synchronized int getQueuedCount() { return queued; }
+
+    // จำนวนงานที่รอคิวและจะเริ่มได้ทันทีถ้ามี worker เพิ่ม (อุปกรณ์ทุกตัวที่ใช้ยังไม่เต็ม)
+    // งานที่รอเพราะดิสก์เต็มไม่นับ เพิ่มจำนวนงานพร้อมกันก็ไม่ทำให้งานพวกนั้นเริ่มได้
+    public synchronized int getDispatchableCount() {
+        int count = 0;
+        for (Map.Entry<List<Object>, TreeSet<Job>> group : pending.entrySet()) {
+            if (fits(group.getKey())) count += group.getValue().size();
+        }
+        return count;
+    }
+
+    // จำนวนงานที่กำลังรันอยู่
+    public int getRunningCount() { return executor.getActiveCount(); }
+
+    // จำนวนงานที่กำลังใช้อุปกรณ์นี้อยู่
+    public synchronized int getInFlight(Object device) { return inFlight.getOrDefault(device, 0); }
+
+    // ล้างงานที่ยังไม่เริ่มออกจากคิว (งานที่รันอยู่ไม่ถูกกระทบ)
+    public synchronized void clearQueue() {
+        pending.clear();
+        queued = 0;
+    }
+
+    // ปิด scheduler (ใช้ตอนปิดโปรแกรม)
+    public void shutdown() {
+        synchronized (this) {
+            clearQueue();
+        }
+        executor.shutdownNow();
+    }
+
+    // เริ่มงานที่รอได้มากที่สุดเท่าที่ช่องว่างรวมและของแต่ละอุปกรณ์ยอมให้
+    // เลือกกลุ่มที่อุปกรณ์ยังว่างและหัวคิวมีลำดับความสำคัญสูงสุด (เท่ากันเอากลุ่มที่อยู่หน้าสุด)
+    // หยิบหัวคิวของกลุ่มนั้น แล้วย้ายกลุ่มไปท้าย (กลุ่มอื่นได้คิวถัดไป)
+    private void dispatch() {
+        while (holds == 0 && running < maxConcurrent && queued > 0) {
+            Map.Entry<List<Object>, TreeSet<Job>> chosen = null;
+            for (Map.Entry<List<Object>, TreeSet<Job>> group : pending.entrySet()) {
+                if (!fits(group.getKey())) continue;
+                if (chosen == null || group.getValue().first().priority > chosen.getValue().first().priority) {
+                    chosen = group;
+                }
+            }
+            if (chosen == null) return; // ทุกกลุ่มที่รอติดอุปกรณ์ที่เต็มอยู่
+            List<Object> key = chosen.getKey();
+            TreeSet<Job> jobs = chosen.getValue();
+            Job next = jobs.pollFirst();
+            pending.remove(key);
+            if (!jobs.isEmpty()) pending.put(key, jobs); // ไปต่อท้าย
+            queued--;
+            running++;
+            for (Object device : next.devices) inFlight.merge(device, 1, Integer::sum);
+            Job job = next;
+            executor.execute(() -> {
+                try {
+                    job.run();
+                } finally {
+                    release(job);
+                }
+            });
+        }
+    }
+
+    private boolean fits(List<Object> devices) {
+        for (Object device : devices) {
+            int limit = deviceLimitOverride > 0 ? deviceLimitOverride : deviceLimit.applyAsInt(device);
+            if (inFlight.getOrDefault(device, 0) >= limit) return false;
+        }
+        return true;
+    }
+
+    private synchronized void release(Job job) {
+        running--;
+        for (Object device : job.devices) {
+            inFlight.computeIfPresent(device, (_, count) -> count > 1 ? count - 1 : null);
+        }
+        dispatch();
+    }
+
+    // งานหนึ่งงานพร้อมอุปกรณ์ที่ใช้และค่าที่ใช้เรียงคิว (priority เปลี่ยนได้ภายใต้ lock ของ scheduler)
+    private static final class Job extends FutureTask<Void> {
+        private final List<Object> devices;
+        private int priority;
+        private final double cost;
+        private final long sequence;
+
+        Job(Runnable task, List<Object> devices, int priority, double cost, long sequence) {
+            super(task, null);
+            this.devices = devices;
+            this.priority = priority;
+            this.cost = cost;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -1,105 +1,967 @@
 package se233.audioconverterapp1.model;
 
-import javafx.concurrent.Task;
+import se233.audioconverterapp1.exception.ConversionFailureException;
 import se233.audioconverterapp1.util.FFmpegManager;
+import se233.audioconverterapp1.util.FFmpegProgressParser;
 import se233.audioconverterapp1.util.FFprobeHelper;
+import se233.audioconverterapp1.util.LoudnessAnalyzer;
+import se233.audioconverterapp1.util.MediaInfo;
+import se233.audioconverterapp1.util.PcmConverter;
+import se233.audioconverterapp1.util.ProcessControl;
+import se233.audioconverterapp1.util.WavHeader;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class ConversionTask extends Task<Void> {
+// งานแปลงไฟล์หนึ่งไฟล์ (ไม่ผูกกับ JavaFX จึงใช้ได้ทั้งในโปรแกรม UI และโหมด headless)
+public class ConversionTask implements Runnable {
     // ข้อมูลของไฟล์ที่จะทำการแปลงและค่าต่าง ๆ ที่ใช้ตั้งค่าการแปลง
     private final FileInfo fileInfo;         // ข้อมูลไฟล์ต้นฉบับ
-    private final String outputFormat;       // ฟอร์แมตเป้าหมาย เช่น mp3, wav
+    private final String outputFormat;       // ฟอร์แมตเป้าหมาย เช่น mp3, wav (ตัวแรกถ้ามีหลายตัว)
+    private final List<String> outputFormats; // ฟอร์แมตเป้าหมายทั้งหมด (ถอดรหัสครั้งเดียว เขียนออกหลายไฟล์)
+    private final Map<String, String> skippedOutputs = new LinkedHashMap<>(); // ผลลัพธ์ที่ไม่ต้องทำ -> เหตุผล
+    // สถานะแยกตามฟอร์แมต (เฉพาะแถวที่มีหลายเป้าหมายหรือมีเป้าหมายที่ข้ามไป) ใช้ภายใต้ lock ของตัวมันเอง
+    private final Map<String, FileInfo.TargetState> targetStates = new LinkedHashMap<>();
+    private final Map<String, String> targetDone = new ConcurrentHashMap<>(); // ฟอร์แมต -> สถานะเมื่อถึงปลายทาง
     private final String bitrate;            // บิตเรตสำหรับไฟล์เป้าหมาย
     private final String sampleRate;         // sample rate สำหรับไฟล์เป้าหมาย
     private final String channel;            // จำนวนช่องเสียง (mono/stereo)
     private final File outputDir;            // โฟลเดอร์ปลายทางสำหรับไฟล์แปลง
+    private final ConversionListener listener; // ช่องทางส่ง progress/สถานะออกไปให้ UI
+
+    // ค่าที่ ffmpeg รายงานผ่าน -progress ล่าสุด (อ่านจาก thread อื่นได้ เช่น UI หรือตัวเก็บสถิติ)
+    private volatile double speed = -1;      // ความเร็วเทียบเวลาจริง (เช่น 30.0 = เร็วกว่าเวลาจริง 30 เท่า)
+    private volatile long outTimeUs = -1;    // ตำแหน่งเวลาที่แปลงเสร็จแล้ว (ไมโครวินาที)
+    private volatile long totalSize = -1;    // ขนาดไฟล์ผลลัพธ์ที่เขียนแล้ว (byte)
+
+    private volatile double progress = 0.0;  // ความคืบหน้าของงาน (0.0 - 1.0)
+    private volatile boolean cancelled = false;
+    private volatile boolean running = false;
+    private volatile boolean succeeded = false; // แปลงสำเร็จและผลลัพธ์ถึงโฟลเดอร์ปลายทางแล้ว
+    private volatile ConversionMode mode = ConversionMode.ENCODE; // วิธีที่เลือกใช้กับไฟล์นี้
+    private final JobMetrics metrics;        // เวลาของแต่ละขั้นและจำนวน byte ของงานนี้
+    private volatile Thread runner;          // thread ที่รันงานนี้ (ช่วงที่ worker อื่นรันไม่นับเวลาเริ่ม process)
+
+    // process ของ ffmpeg ที่กำลังรัน (หลายตัวตอนแปลงแบบแบ่งช่วง) สำหรับหยุดชั่วคราว/ฆ่าได้ทันที
+    private final Set<Process> processes = ConcurrentHashMap.newKeySet();
+    private final Object pauseLock = new Object();
+    private volatile boolean paused = false;
+    private volatile String currentStatus;   // สถานะล่าสุดที่ส่งออกไป (คืนค่านี้ตอนทำงานต่อ)
+    private String statusBeforePause;         // ใช้ภายใต้ pauseLock
+
+    // ผลลัพธ์เขียนลงโฟลเดอร์ทำงานของงานนี้ก่อน แล้วค่อยย้ายไปปลายทางเมื่อเสร็จครบ
+    // (งานที่ล้มเหลว/ถูกยกเลิกจึงไม่ทิ้งไฟล์ครึ่ง ๆ กลาง ๆ ไว้ในโฟลเดอร์ผลลัพธ์)
+    static final String WORK_DIR_PREFIX = ".converting-";
+    private volatile File stagingDir;        // scratch disk สำหรับโฟลเดอร์ทำงาน (null = โฟลเดอร์ซ่อนในโฟลเดอร์ผลลัพธ์)
+    private File workDir;                    // โฟลเดอร์ทำงานของงานนี้ (สร้างตอนเริ่มรัน)
+    private volatile String doneStatus;      // สถานะที่จะแสดงเมื่อย้ายผลลัพธ์เสร็จ (null = ยังไม่ได้ผลลัพธ์)
+    private volatile boolean awaitingPublish; // แปลงเสร็จแล้ว รอตัวย้ายไฟล์ (เฉพาะตอนใช้ scratch disk)
+
+    // การแบ่งไฟล์ยาวเป็นช่วงแล้วแปลงพร้อมกัน (null = ปิด)
+    private static final double MIN_SEGMENT_SECONDS = 120; // ช่วงสั้นกว่านี้ไม่คุ้มค่าเริ่ม process
+    private static final String LEGACY_SEGMENT_PREFIX = ".segments-"; // โฟลเดอร์ช่วงของเวอร์ชันก่อน (ลบตอนเก็บกวาด)
+    // แบ่งช่วงได้เฉพาะฟอร์แมตที่ต่อกันได้ตรง sample: mp3/aac มี encoder delay และ padding ในทุกช่วง
+    // ต่อแบบ -c copy แล้วจะมีช่องว่าง/เสียงคลิกตรงรอยต่อ และความยาวรวมคลาดไปทีละช่วง
+    // flac ก็ไม่ได้: -c copy เก็บ STREAMINFO (จำนวน sample, MD5) ของช่วงแรกไว้ และเลข frame เริ่มที่ 0 ทุกช่วง
+    private static final Set<String> SEGMENTABLE_FORMATS = Set.of("wav");
+    private volatile ConversionScheduler segmentScheduler;
+    private volatile double segmentMinDuration;
+    private volatile List<?> segmentDevices = List.of(); // อุปกรณ์ที่ช่วงใช้ (นับรวมในขีดจำกัดต่ออุปกรณ์ของ scheduler)
+    private double[] segmentDone;                 // วินาทีที่แปลงเสร็จของแต่ละช่วง (ใช้ภายใต้ lock ของ this)
+    private double segmentDuration;
+
+    // ปรับความดังตาม EBU R128 (รอบวัดก่อนเข้ารหัส ข้ามได้ถ้ามีผลวัดในแคช)
+    private static final double ANALYSIS_SHARE = 0.3;  // สัดส่วนของแถบ progress ที่ให้รอบวัด (ถอดรหัสอย่างเดียว เร็วกว่าเข้ารหัส)
+    private volatile boolean normalizeLoudness;
+    private String loudnessFilter;                // filter loudnorm ของรอบเข้ารหัส (ใช้บน thread ของงานเท่านั้น)
+    private double progressStart;                 // จุดเริ่มของ progress รอบเข้ารหัส (หลังรอบวัด)
 
     // คอนสตรัคเตอร์รับค่าตั้งต้นทั้งหมดที่ใช้ในการแปลงไฟล์
     public ConversionTask(FileInfo fileInfo, String outputFormat, String bitrate, String sampleRate, String channel, File outputDir) {
+        this(fileInfo, outputFormat, bitrate, sampleRate, channel, outputDir, ConversionListener.DIRECT);
+    }
+
+    public ConversionTask(FileInfo fileInfo, String outputFormat, String bitrate, String sampleRate, String channel, File outputDir,
+                          ConversionListener listener) {
+        this(fileInfo, List.of(outputFormat), bitrate, sampleRate, channel, outputDir, listener);
+    }
+
+    // หลายฟอร์แมตเป้าหมายจากต้นฉบับเดียว (เช่น mp3 + flac + m4a) ใช้ ffmpeg process เดียว
+    public ConversionTask(FileInfo fileInfo, List<String> outputFormats, String bitrate, String sampleRate, String channel,
+                          File outputDir, ConversionListener listener) {
+        if (outputFormats.isEmpty()) throw new IllegalArgumentException("No output format given");
         this.fileInfo = fileInfo;
-        this.outputFormat = outputFormat;
+        this.outputFormats = List.copyOf(outputFormats);
+        this.metrics = new JobMetrics(fileInfo.getFilePath(), String.join("+", this.outputFormats),
+                new File(fileInfo.getFilePath()).length());
+        // เก็บสถานะล่าสุดไว้ใน metrics ด้วย แล้วส่งต่อให้ผู้รับจริง
+        this.listener = new ConversionListener() {
+            @Override
+            public void onProgress(FileInfo file, double progress) { listener.onProgress(file, progress); }
+
+            @Override
+            public void onStatus(FileInfo file, String status) {
+                currentStatus = status;
+                metrics.setStatus(status);
+                listener.onStatus(file, status);
+            }
+
+            @Override
+            public void onTargets(FileInfo file, List<FileInfo.TargetState> targets) {
+                listener.onTargets(file, targets);
+            }
+
+            @Override
+            public void onError(FileInfo file, Exception e) { listener.onError(file, e); }
+        };
+        this.outputFormat = this.outputFormats.get(0);
         this.bitrate = bitrate;
         this.sampleRate = sampleRate;
         this.channel = channel;
         this.outputDir = outputDir;
     }
 
-    // เมธอดหลักที่รันเมื่อเริ่ม task ใน thread เบื้องหลัง
+    // เปิดการแบ่งช่วง: ไฟล์ที่ยาวตั้งแต่ minDurationSeconds ขึ้นไปจะถูกแบ่งแล้วส่งช่วงเข้าคิวของ scheduler นี้
+    public void enableSegmenting(ConversionScheduler scheduler, double minDurationSeconds) {
+        enableSegmenting(scheduler, minDurationSeconds, List.of());
+    }
+
+    // เหมือนข้างบน แต่ช่วงที่ส่งเข้าคิวนับเป็นงานของอุปกรณ์เหล่านี้ด้วย (ดิสก์จานหมุนไม่ถูกอ่านพร้อมกันหลายจุดเกินขีด)
+    public void enableSegmenting(ConversionScheduler scheduler, double minDurationSeconds, List<?> devices) {
+        this.segmentScheduler = scheduler;
+        this.segmentMinDuration = minDurationSeconds;
+        this.segmentDevices = devices;
+    }
+
+    // แปลงลงโฟลเดอร์นี้ (เช่น tmpfs หรือ SSD ในเครื่อง) แทนการเขียนตรงไปโฟลเดอร์ผลลัพธ์
+    // งานที่แปลงเสร็จจะรอ publish() จากตัวย้ายไฟล์ (ดู OutputPublisher) แทนการย้ายเองใน run()
+    public void enableStaging(File scratchDir) {
+        this.stagingDir = scratchDir;
+    }
+
+    // ปรับความดังของผลลัพธ์ทุกไฟล์ให้ได้ -23 LUFS / -1 dBTP (ต้องเข้ารหัสใหม่เสมอ คัดลอกสตรีมเดิมไม่ได้)
+    public void enableLoudnessNormalization() {
+        this.normalizeLoudness = true;
+    }
+
+    // บอกว่าผลลัพธ์ฟอร์แมตนี้ข้ามไปแล้ว (เช่น "up to date") เพื่อแสดงรวมในสถานะของแถว
+    public void skipOutput(String format, String reason) {
+        skippedOutputs.put(format, reason);
+    }
+
+    // ส่งสถานะแยกตามฟอร์แมตตอนเข้าคิว (แถวที่มีเป้าหมายเดียวได้รายการว่าง ล้างค่าของการแปลงครั้งก่อน)
+    public void announceTargets() {
+        if (!tracksTargets()) {
+            if (!fileInfo.getTargetStates().isEmpty()) listener.onTargets(fileInfo, List.of());
+            return;
+        }
+        synchronized (targetStates) {
+            targetStates.clear();
+            for (String format : outputFormats) {
+                targetStates.put(format, new FileInfo.TargetState(format, "Queued", 0.0));
+            }
+            for (FileInfo.TargetState skipped : skippedStates(skippedOutputs)) {
+                targetStates.put(skipped.format(), skipped);
+            }
+        }
+        publishTargets();
+    }
+
+    // สถานะของเป้าหมายที่ข้ามไป ("up to date" -> "Up to date") ใช้ตอนที่ทุกเป้าหมายข้ามหมดจนไม่มีงานด้วย
+    static List<FileInfo.TargetState> skippedStates(Map<String, String> skipped) {
+        List<FileInfo.TargetState> states = new ArrayList<>(skipped.size());
+        skipped.forEach((format, reason) -> states.add(new FileInfo.TargetState(format,
+                Character.toUpperCase(reason.charAt(0)) + reason.substring(1), 1.0)));
+        return states;
+    }
+
+    // ตั้งสถานะสุดท้ายให้ทุกเป้าหมายที่ยังไม่จบ (เช่นงานที่ถูกยกเลิกตอนยังรอคิว)
+    void finishTargets(String status) {
+        updateTargets(status, -1);
+    }
+
+    private boolean tracksTargets() {
+        return outputFormats.size() > 1 || !skippedOutputs.isEmpty();
+    }
+
+    // เปลี่ยนสถานะ/progress ของทุกเป้าหมายที่ยังไม่จบ (status null = คงเดิม, progress < 0 = คงเดิม)
+    private void updateTargets(String status, double progress) {
+        if (!tracksTargets()) return;
+        synchronized (targetStates) {
+            for (String format : outputFormats) {
+                FileInfo.TargetState old = targetStates.get(format);
+                if (old != null && old.isFinished()) continue;
+                targetStates.put(format, new FileInfo.TargetState(format,
+                        status != null ? status : old != null ? old.status() : "Queued",
+                        progress >= 0 ? progress : old != null ? old.progress() : 0.0));
+            }
+        }
+        publishTargets();
+    }
+
+    private void updateTarget(String format, String status, double progress) {
+        if (!tracksTargets()) return;
+        synchronized (targetStates) {
+            targetStates.put(format, new FileInfo.TargetState(format, status, progress));
+        }
+        publishTargets();
+    }
+
+    private void publishTargets() {
+        List<FileInfo.TargetState> snapshot;
+        synchronized (targetStates) {
+            snapshot = List.copyOf(targetStates.values());
+        }
+        listener.onTargets(fileInfo, snapshot);
+    }
+
+    // เริ่มงาน (ถูกเรียกจาก worker thread ของ scheduler) งานที่ถูกยกเลิกก่อนเริ่มจะไม่ทำอะไร
     @Override
-    protected Void call() {
+    public void run() {
+        if (cancelled) return;
+        running = true;
+        runner = Thread.currentThread();
+        metrics.markStarted();
+        long start = System.nanoTime();
         try {
-            fileInfo.setStatus("Converting..."); // เปลี่ยนสถานะไฟล์เป็นกำลังแปลง
+            call();
+        } finally {
+            // เวลาที่เหลือหลังหักขั้นอื่นคือเวลาแปลงจริง (รวมการรอช่วงที่ worker อื่นรันอยู่)
+            metrics.setEncodeNanos(Math.max(0, System.nanoTime() - start - metrics.getProbeNanos()
+                    - metrics.getSpawnNanos() - metrics.getFinalizeNanos()));
+            metrics.setMode(mode);
+            metrics.setFfmpegSpeed(speed);
+            if (doneStatus == null || isCancelled()) {
+                discardWorkDir(); // ล้มเหลวหรือถูกยกเลิก: ทิ้งไฟล์ที่เขียนไม่ครบ
+                if (doneStatus != null) listener.onStatus(fileInfo, "Cancelled"); // ยกเลิกหลังแปลงเสร็จพอดี
+                finishTargets(isCancelled() ? "Cancelled" : currentStatus); // ทุกเป้าหมายจบแบบเดียวกับแถว
+            } else {
+                metrics.setBytesOut(outputBytes());
+                if (stagingDir == null) {
+                    publish(); // โฟลเดอร์ทำงานอยู่ในโฟลเดอร์ผลลัพธ์ rename ได้ทันที
+                } else {
+                    awaitingPublish = true;
+                    listener.onStatus(fileInfo, "Publishing...");
+                    updateTargets("Publishing...", 1.0);
+                }
+            }
+            running = awaitingPublish; // ยังนับว่ารันอยู่จนกว่าผลลัพธ์จะถึงปลายทาง
+        }
+    }
 
-            String ffmpegPath = FFmpegManager.getFFmpegPath(); // เรียก path ของ FFmpeg
-            if (ffmpegPath == null) {
-                fileInfo.setStatus("FFmpeg not found");
-                return null; // ถ้าไม่เจอ FFmpeg ให้หยุดทำงาน
+    // ย้ายผลลัพธ์จากโฟลเดอร์ทำงานไปโฟลเดอร์ผลลัพธ์ แล้วตั้งสถานะสุดท้าย
+    // (งานที่ใช้ scratch disk ถูกเรียกจาก thread ของ OutputPublisher) ถ้าย้ายได้ไม่ครบ ไฟล์ที่ย้ายไปแล้วถูกลบออก
+    public void publish() {
+        long start = System.nanoTime();
+        File inputFile = new File(fileInfo.getFilePath());
+        List<File> published = new ArrayList<>(outputFormats.size());
+        String moving = null;
+        try {
+            if (isCancelled()) {
+                listener.onStatus(fileInfo, "Cancelled");
+                finishTargets("Cancelled");
+                return;
+            }
+            for (String format : outputFormats) {
+                moving = format;
+                File target = finalOutput(inputFile, format);
+                OutputPublisher.move(stagedOutput(inputFile, format).toPath(), target.toPath());
+                published.add(target);
+            }
+            succeeded = true;
+            for (String format : outputFormats) updateTarget(format, targetDone.getOrDefault(format, "Done"), 1.0);
+            listener.onStatus(fileInfo, doneStatus);
+        } catch (IOException e) {
+            for (File file : published) file.delete();
+            System.err.println("[ConversionTask] Could not publish " + fileInfo.getFileName() + ": " + e.getMessage());
+            // ผลลัพธ์ของแถวย้ายแบบทั้งหมดหรือไม่มีเลย ตัวที่ย้ายไปแล้วจึงถูกลบคืนด้วย
+            if (moving != null) updateTarget(moving, "Error", 1.0);
+            finishTargets("Not published");
+            listener.onStatus(fileInfo, "Error");
+        } finally {
+            discardWorkDir();
+            metrics.addFinalizeNanos(System.nanoTime() - start);
+            awaitingPublish = false;
+            running = false;
+        }
+    }
+
+    private void discardWorkDir() {
+        if (workDir != null) deleteTree(workDir.toPath());
+    }
+
+    // ขนาดรวมของไฟล์ผลลัพธ์ที่งานนี้เขียน (ยังอยู่ในโฟลเดอร์ทำงาน)
+    private long outputBytes() {
+        File inputFile = new File(fileInfo.getFilePath());
+        long total = 0;
+        for (String format : outputFormats) total += stagedOutput(inputFile, format).length();
+        return total;
+    }
+
+    // ยกเลิกงาน: ffmpeg ที่รันอยู่ (รวม process ลูก และตัวที่ถูกหยุดไว้) ถูกฆ่าทันที ไม่ต้องรอ progress รอบถัดไป
+    public void cancel() {
+        cancelled = true;
+        for (Process process : processes) ProcessControl.destroyTree(process);
+        synchronized (pauseLock) {
+            pauseLock.notifyAll(); // ปลุกงานในโปรแกรมที่รอ resume อยู่ ให้เห็นว่าถูกยกเลิก
+        }
+    }
+
+    // หยุดงานที่กำลังแปลงไว้ชั่วคราว (ffmpeg ถูกหยุดด้วย SIGSTOP ไม่ใช้ CPU แต่ความคืบหน้าไม่หาย)
+    // คืน false ถ้าหยุดไม่ได้ (ยังไม่เริ่ม, เสร็จแล้ว, รอย้ายไฟล์ หรือระบบไม่รองรับ)
+    public boolean pause() {
+        if (!ProcessControl.isSuspendSupported()) return false;
+        synchronized (pauseLock) {
+            if (paused || cancelled || !running || awaitingPublish) return paused;
+            paused = true;
+            statusBeforePause = currentStatus;
+        }
+        for (Process process : processes) ProcessControl.suspend(process);
+        listener.onStatus(fileInfo, "Paused");
+        return true;
+    }
+
+    // ให้งานที่หยุดไว้ทำงานต่อจากจุดเดิม
+    public void resume() {
+        String restore;
+        synchronized (pauseLock) {
+            if (!paused) return;
+            paused = false;
+            restore = statusBeforePause;
+            pauseLock.notifyAll();
+        }
+        for (Process process : processes) ProcessControl.resume(process);
+        // ถ้าระหว่างหยุดงานจบไปแล้ว (เช่นถูกยกเลิก) ไม่เอาสถานะเก่ากลับมาทับ
+        if (restore != null && "Paused".equals(currentStatus) && !cancelled) listener.onStatus(fileInfo, restore);
+    }
+
+    // ทำเครื่องหมายให้หยุดตั้งแต่เริ่ม (งานที่ได้ worker ระหว่างที่ผู้ใช้สั่งหยุดทั้งหมด)
+    void startPaused() {
+        if (!ProcessControl.isSuspendSupported()) return;
+        synchronized (pauseLock) {
+            paused = true;
+            statusBeforePause = null;
+        }
+    }
+
+    public boolean isPaused() { return paused; }
+
+    // งานที่แปลงในโปรแกรมเอง (คัดลอก, PCM) รอตรงนี้ระหว่างหยุดชั่วคราว
+    private void awaitResume() {
+        synchronized (pauseLock) {
+            while (paused && !cancelled) {
+                try {
+                    pauseLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public boolean isCancelled() { return cancelled; }
+    public boolean isRunning() { return running; }
+    public boolean isSucceeded() { return succeeded; }
+    public boolean isAwaitingPublish() { return awaitingPublish; }
+    public double getProgress() { return progress; }
+    public ConversionMode getMode() { return mode; }
+    public List<String> getOutputFormats() { return outputFormats; }
+    public JobMetrics getMetrics() { return metrics; }
+
+    // เมธอดหลักที่ทำการแปลงไฟล์ใน thread เบื้องหลัง
+    private void call() {
+        try {
+            // เปลี่ยนสถานะไฟล์เป็นกำลังแปลง
+            listener.onStatus(fileInfo, outputFormats.size() > 1 || !skippedOutputs.isEmpty()
+                    ? "Converting... (" + String.join(", ", outputFormats) + ")"
+                    : "Converting...");
+            updateTargets("Converting...", 0.0);
+            if (paused) { // สั่งหยุดไว้ก่อนงานได้เริ่มจริง
+                synchronized (pauseLock) {
+                    statusBeforePause = currentStatus;
+                }
+                listener.onStatus(fileInfo, "Paused");
             }
+            File parent = stagingDir != null ? stagingDir : outputDir;
+            workDir = Files.createTempDirectory(parent.toPath(), WORK_DIR_PREFIX).toFile();
+
+            // WAV -> WAV แปลงในโปรแกรมเลย ไม่ต้องเสียเวลาเริ่ม ffprobe และ ffmpeg (ไฟล์สั้นจำนวนมากเร็วขึ้นมาก)
+            if (outputFormats.size() == 1 && !normalizeLoudness && convertPcm()) return;
+
+            // ตรวจ FFmpeg เฉพาะงานที่ต้องใช้จริง (งาน WAV -> WAV ด้านบนไม่ต้องมี)
+            if (!FFmpegManager.isFFmpegAvailable()) { // ผลตรวจถูกแคชไว้ ไม่รัน ffmpeg ซ้ำทุกงาน
+                finishTargets("FFmpeg not found");
+                listener.onStatus(fileInfo, "FFmpeg not found");
+                return; // ถ้าไม่เจอ FFmpeg ให้หยุดทำงาน
+            }
+            String ffmpegPath = FFmpegManager.getFFmpegPath(); // เรียก path ของ FFmpeg
 
             File inputFile = new File(fileInfo.getFilePath());           // ไฟล์ต้นฉบับ
-            File outputFile = new File(outputDir, getOutputName(inputFile, outputFormat)); // สร้างไฟล์ปลายทาง
+            checkNotSource(inputFile, outputFormat);
+            File outputFile = stagedOutput(inputFile, outputFormat);     // ไฟล์ที่ ffmpeg เขียน (ในโฟลเดอร์ทำงาน)
 
-            double totalDuration = FFprobeHelper.getDurationSeconds(inputFile); // ตรวจสอบระยะเวลาของไฟล์เสียง
+            long probeStart = System.nanoTime();
+            MediaInfo info = FFprobeHelper.probe(inputFile); // ข้อมูลสตรีมของต้นฉบับ (ใช้แคชถ้ามี)
+            metrics.setProbeNanos(System.nanoTime() - probeStart);
+            double totalDuration = info != null ? info.getDurationSeconds() : -1; // ระยะเวลาของไฟล์เสียง
+            metrics.setDurationSeconds(totalDuration);
             if (totalDuration <= 0) {
                 System.err.println("[FFmpeg] Could not detect duration, using fake progress.");
                 totalDuration = 1.0; // ถ้าตรวจสอบนานไม่ได้ ใช้ค่า default
             }
 
-            // สร้างคำสั่ง ffmpeg สำหรับแปลงไฟล์พร้อมระบุค่าต่าง ๆ
-            ProcessBuilder pb = new ProcessBuilder(
-                    ffmpegPath,
-                    "-y",
-                    "-i", inputFile.getAbsolutePath(),
+            // รอบวัดความดัง (ถ้ายังไม่มีในแคช) ต้องเสร็จก่อนเริ่มเข้ารหัส
+            if (normalizeLoudness && !measureLoudness(ffmpegPath, inputFile, totalDuration)) return;
+
+            // หลายเป้าหมาย: ถอดรหัสครั้งเดียวแล้วส่งให้ encoder ของทุกไฟล์ผลลัพธ์ใน process เดียว
+            if (outputFormats.size() > 1) {
+                encodeMultiple(ffmpegPath, inputFile, info, totalDuration);
+                return;
+            }
+
+            // ถ้าสตรีมต้นฉบับตรงกับที่ขออยู่แล้ว ไม่ต้องเข้ารหัสใหม่
+            mode = chooseMode(info, outputFormat);
+            if (mode == ConversionMode.COPY) {
+                copyFile(inputFile, outputFile);
+                return;
+            }
+
+            // ไฟล์ยาวแบ่งเป็นช่วงเวลาแล้วเข้ารหัสพร้อมกันหลาย worker
+            int segments = segmentCount(info, totalDuration);
+            if (segments > 1) {
+                encodeSegmented(ffmpegPath, inputFile, outputFile, totalDuration, info.getSampleRate(), segments);
+                return;
+            }
+
+            // สร้างคำสั่ง ffmpeg (เข้ารหัสใหม่ หรือแค่ย้าย container) แล้วรัน process
+            int exitCode = runFFmpeg(buildCommand(ffmpegPath, inputFile, outputFile, 0, -1, 0),
+                    progressTracker(totalDuration));
+            finish(exitCode, withSkipped(mode == ConversionMode.REMUX ? "Done (remuxed)" : "Done",
+                    outputFormat + " " + (mode == ConversionMode.REMUX ? "remuxed" : "done")));
+
+        } catch (Exception e) { // ยกเว้นที่เกิดจากการแปลงไฟล์
+            listener.onStatus(fileInfo, "Error");
+            e.printStackTrace();
+        }
+    }
+
+    // แปลงด้วย PcmConverter ถ้าทั้งต้นฉบับและผลลัพธ์เป็น PCM; คืน false ถ้าต้องใช้ ffmpeg แทน
+    // (ต้นฉบับไม่ใช่ WAV แบบ PCM, ค่าที่ขออ่านไม่ได้ หรือไฟล์ใหญ่เกินกว่าจะ map ได้)
+    private boolean convertPcm() throws IOException {
+        if (!outputFormat.equals("wav")) return false;
+        int targetRate;
+        try {
+            targetRate = Integer.parseInt(sampleRate.trim());
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        int targetChannels = isMono(channel) ? 1 : 2;
+        File inputFile = new File(fileInfo.getFilePath());
+        long probeStart = System.nanoTime();
+        WavHeader header = WavHeader.read(inputFile); // อ่านแค่หัวไฟล์ แทน ffprobe
+        if (!PcmConverter.canConvert(header, targetRate, targetChannels)) return false;
+        metrics.setProbeNanos(System.nanoTime() - probeStart);
+        metrics.setDurationSeconds(header.getDurationSeconds());
+
+        checkNotSource(inputFile, outputFormat);
+        File outputFile = stagedOutput(inputFile, outputFormat);
+        if (PcmConverter.matches(header, targetRate, targetChannels)) {
+            mode = ConversionMode.COPY;
+            copyFile(inputFile, outputFile);
+            return true;
+        }
+
+        mode = ConversionMode.PCM;
+        boolean completed = PcmConverter.convert(header, inputFile, outputFile, targetRate, targetChannels,
+                fraction -> {
+                    awaitResume();
+                    if (fraction > progress) {
+                        progress = fraction;
+                        listener.onProgress(fileInfo, fraction);
+                    }
+                    return !isCancelled();
+                });
+        if (!completed) {
+            listener.onStatus(fileInfo, "Cancelled");
+            return true;
+        }
+        completed(withSkipped("Done (in-process)", outputFormat + " done"));
+        return true;
+    }
+
+    // สร้างคำสั่ง ffmpeg สำหรับแปลงไฟล์พร้อมระบุค่าต่าง ๆ
+    // -progress pipe:1 ให้ ffmpeg ส่ง progress แบบ key=value ทาง stdout ส่วน log ปกติปิดไว้ (-nostats, -v error)
+    // startSeconds/lengthSeconds ใช้ตอนแปลงเป็นช่วง (ค่าติดลบ = ตั้งแต่ต้น/จนจบไฟล์)
+    // ช่วงของไฟล์ยาวกำหนดเป็นจำนวน sample ของต้นฉบับ (sampleCount < 0 = จนจบไฟล์, sourceRate ใช้แปลงเป็นเวลา)
+    private List<String> buildCommand(String ffmpegPath, File inputFile, File outputFile,
+                                      long startSample, long sampleCount, int sourceRate) {
+        List<String> command = new ArrayList<>(List.of(
+                ffmpegPath,
+                "-y",
+                "-nostdin",
+                "-v", "error",
+                "-nostats",
+                "-progress", "pipe:1"
+        ));
+        // -ss ก่อน -i จะ seek ที่ input (ตอนถอดรหัสใหม่ ffmpeg ตัดตรง sample ให้เอง)
+        if (startSample > 0) command.addAll(List.of("-ss", seekTime(startSample, sourceRate)));
+        command.addAll(List.of("-i", inputFile.getAbsolutePath()));
+        // ความยาวนับเป็น sample ด้วย atrim แทน -t (เวลาทศนิยมปัดแล้วอาจเกิน/ขาดไปหนึ่ง sample ตรงรอยต่อ)
+        String trim = sampleCount >= 0 ? "atrim=end_sample=" + sampleCount : null;
+        // ช่วงของไฟล์ยาวเอาเฉพาะสตรีมเสียง (ภาพปกจะทำให้ต่อช่วงไม่ได้)
+        addOutput(command, mode, outputFile, startSample > 0 || sampleCount >= 0, trim);
+        return command;
+    }
+
+    // ตัวเลือกของไฟล์ผลลัพธ์หนึ่งไฟล์ (ใน ffmpeg ตัวเลือกที่อยู่ก่อนชื่อไฟล์ผลลัพธ์ใช้กับไฟล์นั้นเท่านั้น)
+    private void addOutput(List<String> command, ConversionMode outputMode, File outputFile, boolean audioOnly,
+                           String trim) {
+        if (outputMode != ConversionMode.ENCODE) {
+            // สตรีมเสียงใช้ได้เลย คัดลอกโดยไม่ถอดรหัส (เร็วเท่าความเร็วดิสก์)
+            command.addAll(List.of("-map", "0:a:0", "-c:a", "copy"));
+        } else {
+            if (audioOnly) command.addAll(List.of("-map", "0:a:0"));
+            command.addAll(List.of(
                     "-b:a", bitrate,
                     "-ar", sampleRate,
-                    "-ac", channel.equalsIgnoreCase("mono") ? "1" : "2",
-                    outputFile.getAbsolutePath()
-            );
-            pb.redirectErrorStream(true); // รวม error กับ output
-
-            Process process = pb.start(); // เริ่ม process
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                double lastProgress = 0.0;
-
-                // อ่านผลลัพธ์จาก process เพื่ออัปเดต progress ใน UI
-                while ((line = reader.readLine()) != null) {
-                    if (isCancelled()) { // ถ้าถูกยกเลิก ให้ออกจากลูปและเปลี่ยนสถานะ
-                        process.destroyForcibly();
-                        fileInfo.setStatus("Cancelled");
-                        return null;
-                    }
+                    "-ac", isMono(channel) ? "1" : "2"
+            ));
+            if (trim != null) command.addAll(List.of("-af", trim)); // ช่วงไม่ใช้ loudnorm (ดู segmentCount)
+            else if (loudnessFilter != null) command.addAll(List.of("-af", loudnessFilter));
+        }
+        command.add(outputFile.getAbsolutePath());
+    }
 
-                    // ค้นหาบรรทัดที่มีข้อมูลเวลา (เช่น time=00:01:23.45) เพื่อคำนวณเปอร์เซ็นต์
-                    if (line.contains("time=")) {
-                        double currentTime = parseCurrentTime(line);
-                        double progress = Math.min(currentTime / totalDuration, 1.0);
-                        lastProgress = progress;
-                        updateProgress(progress, 1.0); // อัปเดต progress ใน Task
-                        fileInfo.setProgress(progress); // อัปเดต progress ในข้อมูลไฟล์
-                    }
+    // แปลงเป็นหลายฟอร์แมตด้วย ffmpeg ครั้งเดียว: ต้นฉบับถูกอ่านและถอดรหัสครั้งเดียว
+    // แล้วแต่ละไฟล์ผลลัพธ์เลือกเองว่าจะเข้ารหัสใหม่ หรือคัดลอกสตรีมเดิม (ถ้าตรงกับที่ขออยู่แล้ว)
+    private void encodeMultiple(String ffmpegPath, File inputFile, MediaInfo info, double duration)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(ffmpegPath, "-y", "-nostdin", "-v", "error", "-nostats",
+                "-progress", "pipe:1", "-i", inputFile.getAbsolutePath()));
+        List<String> results = new ArrayList<>(outputFormats.size());
+        for (String format : outputFormats) {
+            checkNotSource(inputFile, format);
+            File outputFile = stagedOutput(inputFile, format);
+            ConversionMode outputMode = chooseMode(info, format);
+            addOutput(command, outputMode, outputFile, false, null);
+            results.add(format + " " + (outputMode == ConversionMode.ENCODE ? "done" : "remuxed"));
+            targetDone.put(format, outputMode == ConversionMode.ENCODE ? "Done" : "Done (remuxed)");
+        }
+
+        // ไฟล์ผลลัพธ์ทุกไฟล์เดินไปพร้อมกัน (ได้ข้อมูลจาก decoder ตัวเดียวกัน) progress ของทุกเป้าหมายจึงเท่ากับของแถว
+        FFmpegProgressParser.Listener tracker = progressTracker(duration);
+        int exitCode = runFFmpeg(command, p -> {
+            double before = progress;
+            boolean more = tracker.onProgress(p);
+            if (progress > before) updateTargets(null, progress);
+            return more;
+        });
+        finish(exitCode, withSkipped("Done", String.join(", ", results)));
+    }
+
+    // เข้ารหัสใหม่หรือใช้สตรีมเดิม ตอนปรับความดังต้องถอดรหัสเสมอ (filter ใช้กับสตรีมที่คัดลอกไม่ได้)
+    private ConversionMode chooseMode(MediaInfo info, String format) {
+        if (normalizeLoudness) return ConversionMode.ENCODE;
+        return ConversionMode.choose(fileInfo.getFormat(), info, format, bitrate, sampleRate, channel);
+    }
+
+    // รอบแรกของการปรับความดัง: ใช้ผลวัดจากแคช หรือรัน ffmpeg ถอดรหัสทั้งไฟล์ผ่าน loudnorm แล้วเก็บผลลงแคช
+    // คืน false ถ้าไปต่อไม่ได้ (ถูกยกเลิกหรือวัดไม่สำเร็จ สถานะของแถวถูกตั้งแล้ว)
+    private boolean measureLoudness(String ffmpegPath, File inputFile, double duration)
+            throws IOException, InterruptedException {
+        LoudnessAnalyzer.Measurement measurement = LoudnessAnalyzer.cached(inputFile);
+        if (measurement == null) {
+            String converting = currentStatus;
+            listener.onStatus(fileInfo, "Measuring loudness...");
+            File log = new File(workDir, "loudnorm.log"); // loudnorm พิมพ์ผลทาง stderr
+            int exitCode = runFFmpeg(LoudnessAnalyzer.analysisCommand(ffmpegPath, inputFile),
+                    progressTracker(duration, 0.0, ANALYSIS_SHARE), log);
+            if (exitCode < 0 || isCancelled()) {
+                finish(-1, null);
+                return false;
+            }
+            measurement = exitCode == 0
+                    ? LoudnessAnalyzer.parse(Files.readString(log.toPath(), StandardCharsets.UTF_8))
+                    : null;
+            if (measurement == null) {
+                System.err.println("[FFmpeg] Loudness analysis failed for " + fileInfo.getFileName()
+                        + " (exit code " + exitCode + ")");
+                finish(exitCode == 0 ? 1 : exitCode, null);
+                return false;
+            }
+            LoudnessAnalyzer.store(inputFile, measurement);
+            progressStart = ANALYSIS_SHARE;
+            synchronized (pauseLock) {
+                if (paused) { // หยุดอยู่: ให้ resume() คืนสถานะแปลงแทนสถานะรอบวัด
+                    statusBeforePause = converting;
+                    converting = null;
                 }
+            }
+            if (converting != null) listener.onStatus(fileInfo, converting);
+        }
+        loudnessFilter = LoudnessAnalyzer.filter(measurement);
+        if (loudnessFilter == null) {
+            System.err.println("[FFmpeg] " + fileInfo.getFileName() + " is silent, encoding without normalization.");
+        }
+        return true;
+    }
+
+    // ตัวรับ progress ของ ffmpeg ที่แปลงเป็นสัดส่วนของความยาวไฟล์ แล้วส่งต่อให้แถวในตาราง
+    // (ต่อจากรอบวัดความดัง ถ้ามี)
+    private FFmpegProgressParser.Listener progressTracker(double duration) {
+        return progressTracker(duration, progressStart, 1.0 - progressStart);
+    }
+
+    // เหมือนข้างบน แต่ให้ process นี้ใช้แค่ช่วง [start, start + share] ของแถบ progress
+    private FFmpegProgressParser.Listener progressTracker(double duration, double start, double share) {
+        final double[] lastProgress = {0.0};
+        return p -> {
+            speed = p.getSpeed();
+            outTimeUs = p.getOutTimeUs();
+            totalSize = p.getTotalSize();
+            double current = start + share * Math.min(p.getOutTimeSeconds() / duration, 1.0);
+            if (current > lastProgress[0]) {
+                lastProgress[0] = current;
+                progress = current; // อัปเดต progress ของงาน
+                listener.onProgress(fileInfo, current); // อัปเดต progress ในข้อมูลไฟล์
+            }
+            return true;
+        };
+    }
+
+    // ต่อสถานะของผลลัพธ์ที่ข้ามไป เช่น "Done (mp3 done, flac up to date)"
+    // ถ้ามีผลลัพธ์เดียวและไม่มีอะไรข้าม ใช้สถานะเดิมแบบสั้น
+    // (ผลลัพธ์เดียวที่มีเป้าหมายอื่นข้ามไป: สถานะแบบสั้นใช้เป็นสถานะของเป้าหมายนั้นด้วย)
+    private String withSkipped(String status, String results) {
+        if (outputFormats.size() == 1) targetDone.putIfAbsent(outputFormat, status);
+        if (outputFormats.size() == 1 && skippedOutputs.isEmpty()) return status;
+        StringBuilder text = new StringBuilder(results);
+        skippedOutputs.forEach((format, reason) -> text.append(", ").append(format).append(' ').append(reason));
+        String base = status.contains(" (") ? status.substring(0, status.indexOf(" (")) : status;
+        return base + " (" + text + ")";
+    }
+
+    // รัน ffmpeg หนึ่ง process แล้วส่ง progress แต่ละชุดให้ onUpdate
+    // คืน exit code ของ ffmpeg หรือ -1 ถ้างานถูกยกเลิกระหว่างรัน (process ถูกหยุดแล้ว)
+    private int runFFmpeg(List<String> command, FFmpegProgressParser.Listener onUpdate)
+            throws IOException, InterruptedException {
+        return runFFmpeg(command, onUpdate, null);
+    }
+
+    // เหมือนข้างบน แต่เก็บ stderr ของ ffmpeg ลงไฟล์ errorLog (null = ส่งไป stderr ของโปรแกรม)
+    private int runFFmpeg(List<String> command, FFmpegProgressParser.Listener onUpdate, File errorLog)
+            throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        // ข้อความ error ของ ffmpeg ส่งไป stderr ของโปรแกรม
+        pb.redirectError(errorLog != null ? ProcessBuilder.Redirect.to(errorLog) : ProcessBuilder.Redirect.INHERIT);
+        long spawnStart = System.nanoTime();
+        Process process = pb.start();
+        if (Thread.currentThread() == runner) metrics.addSpawnNanos(System.nanoTime() - spawnStart);
+        processes.add(process);
+        // ถูกยกเลิก/หยุดไว้ระหว่างเริ่ม process: cancel()/pause() อาจวนรายการไปก่อนที่ตัวนี้จะเข้ามา
+        if (isCancelled()) ProcessControl.destroyTree(process);
+        else if (paused) ProcessControl.suspend(process);
+
+        FFmpegProgressParser parser = new FFmpegProgressParser();
+        int exitCode;
+        try {
+            try (InputStream progressStream = process.getInputStream()) {
+                // คืน false เพื่อหยุดอ่านเมื่อถูกยกเลิก (ปกติ cancel() ฆ่า process จนสตรีมจบเองอยู่แล้ว)
+                parser.parse(progressStream, p -> !isCancelled() && onUpdate.onProgress(p));
+            }
+            if (isCancelled()) {
+                ProcessControl.destroyTree(process);
+                return -1;
+            }
+            exitCode = process.waitFor(); // รอ process ทำงานเสร็จ
+        } finally {
+            processes.remove(process);
+        }
+        if (isCancelled()) return -1; // ถูกฆ่าหลังสตรีมจบแต่ก่อนได้ exit code
+        if (parser.getMalformedCount() > 0) {
+            System.err.println("[FFmpeg] Ignored " + parser.getMalformedCount() + " malformed progress value(s) for "
+                    + fileInfo.getFileName());
+        }
+        return exitCode;
+    }
+
+    // ตั้งสถานะสุดท้ายตาม exit code ของ ffmpeg
+    private void finish(int exitCode, String doneStatus) {
+        metrics.setExitCode(exitCode);
+        if (exitCode < 0 || isCancelled()) {
+            listener.onStatus(fileInfo, "Cancelled");
+        } else if (exitCode == 0) {
+            completed(doneStatus);
+        } else { // ถ้าไม่สำเร็จ เปลี่ยนสถานะว่าสำเร็จไม่ได้
+            listener.onStatus(fileInfo, "Failed");
+        }
+    }
 
-                process.waitFor(); // รอ process ทำงานเสร็จ
+    // แปลงครบแล้ว: เก็บสถานะไว้แสดงตอนผลลัพธ์ถึงปลายทาง (ดู publish())
+    private void completed(String status) {
+        doneStatus = status;
+        progress = 1.0;
+        listener.onProgress(fileInfo, 1.0);
+    }
+
+    // จำนวนช่วงที่จะแบ่งไฟล์นี้ (1 = แปลงทั้งไฟล์ใน process เดียว)
+    private int segmentCount(MediaInfo info, double duration) {
+        ConversionScheduler pool = segmentScheduler;
+        if (pool == null || mode != ConversionMode.ENCODE) return 1;
+        if (!SEGMENTABLE_FORMATS.contains(outputFormat)) return 1;
+        // เปลี่ยน sample rate แล้วแต่ละช่วงเริ่ม resampler ใหม่ จำนวน sample ตรงรอยต่ออาจเกิน/ขาด
+        if (info == null || info.getSampleRate() <= 0 || !sampleRate.trim().equals(String.valueOf(info.getSampleRate())))
+            return 1;
+        // loudnorm ใช้ limiter ที่มองไปข้างหน้า (และโหมด dynamic ที่จำสถานะ) แต่ละช่วงจะได้ผลต่างกันตรงรอยต่อ
+        if (normalizeLoudness) return 1;
+        if (segmentMinDuration <= 0 || duration < segmentMinDuration) return 1;
+        int byLength = (int) (duration / MIN_SEGMENT_SECONDS);
+        return Math.max(1, Math.min(pool.getMaxConcurrent(), byLength));
+    }
 
-                // ถ้าสำเร็จ เปลี่ยนสถานะและอัปเดต progress
-                if (process.exitValue() == 0) {
-                    fileInfo.setStatus("Done");
-                    updateProgress(1.0, 1.0);
-                    fileInfo.setProgress(1.0);
-                } else { // ถ้าไม่สำเร็จ เปลี่ยนสถานะว่าสำเร็จไม่ได้
-                    fileInfo.setStatus("Failed");
-                    updateProgress(lastProgress, 1.0);
+    // แปลงไฟล์ยาวแบบแบ่งช่วง: ช่วงแรกรันบน thread นี้ ช่วงที่เหลือส่งเข้าคิวของ scheduler
+    // ช่วงที่ยังไม่มี worker มารับ thread นี้จะดึงมาทำเอง (จึงไม่ค้างแม้ worker ทุกตัวกำลังรอช่วงของตัวเองอยู่)
+    // เสร็จแล้วต่อช่วงเข้าด้วยกันด้วย concat demuxer แบบ -c copy (ไม่เข้ารหัสซ้ำ)
+    private void encodeSegmented(String ffmpegPath, File inputFile, File outputFile, double duration, int rate,
+                                 int count) throws IOException, InterruptedException {
+        Path segmentDir = Files.createTempDirectory(workDir.toPath(), "segments-");
+        try {
+            long[] bounds = segmentBounds(Math.round(duration * rate), count);
+            List<Segment> segments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                File part = segmentDir.resolve(String.format("part-%03d.%s", i, outputFormat)).toFile();
+                // ช่วงสุดท้ายไม่กำหนดความยาว ให้ไปจนจบไฟล์จริง (duration จาก ffprobe อาจคลาดเล็กน้อย)
+                long length = i == count - 1 ? -1 : bounds[i + 1] - bounds[i];
+                segments.add(new Segment(ffmpegPath, inputFile, part, bounds[i], length, rate, i));
+            }
+            segmentDone = new double[count];
+            segmentDuration = duration;
+            List<Future<?>> queued = new ArrayList<>(count);
+            queued.add(null); // ช่วงแรกไม่เข้าคิว
+            for (int i = 1; i < count; i++) {
+                queued.add(segmentScheduler.submit(segments.get(i), segmentDevices, ConversionScheduler.URGENT, 0));
+            }
+            // ทำเองถ้ายังไม่มี worker รับไป แล้วเอาออกจากคิว (ไม่ให้ค้างเป็นงานว่างที่นับรวมในจำนวนงานรอ)
+            for (int i = 0; i < count; i++) {
+                Segment segment = segments.get(i);
+                if (!segment.claim()) continue;
+                if (queued.get(i) != null) segmentScheduler.remove(queued.get(i));
+                segment.execute();
+            }
+            for (Segment segment : segments) segment.done.await();
+
+            if (isCancelled()) {
+                listener.onStatus(fileInfo, "Cancelled");
+                return;
+            }
+            for (Segment segment : segments) {
+                if (segment.exitCode != 0) {
+                    metrics.setExitCode(segment.exitCode);
+                    listener.onError(fileInfo, segment.failure());
+                    listener.onStatus(fileInfo, "Failed");
+                    return;
                 }
             }
 
-        } catch (Exception e) { // ยกเว้นที่เกิดจากการแปลงไฟล์
-            fileInfo.setStatus("Error");
-            e.printStackTrace();
+            // ต่อทุกช่วงเป็นไฟล์ผลลัพธ์ (คัดลอก packet ตรง ๆ ใช้เวลาเท่าการเขียนดิสก์) นับเป็นขั้นปิดงาน
+            long concatStart = System.nanoTime();
+            long spawnBefore = metrics.getSpawnNanos();
+            Path list = segmentDir.resolve("segments.txt");
+            List<String> lines = new ArrayList<>(count);
+            for (Segment segment : segments) {
+                lines.add("file '" + segment.output.getAbsolutePath().replace("'", "'\\''") + "'");
+            }
+            Files.write(list, lines, StandardCharsets.UTF_8);
+            int exitCode = runFFmpeg(List.of(ffmpegPath, "-y", "-nostdin", "-v", "error", "-nostats",
+                    "-progress", "pipe:1", "-f", "concat", "-safe", "0", "-i", list.toAbsolutePath().toString(),
+                    "-c", "copy", outputFile.getAbsolutePath()), p -> true);
+            metrics.addFinalizeNanos(System.nanoTime() - concatStart - (metrics.getSpawnNanos() - spawnBefore));
+            finish(exitCode, withSkipped("Done (" + count + " segments)", outputFormat + " done"));
+        } finally {
+            deleteTree(segmentDir);
+        }
+    }
+
+    // จุดแบ่งช่วงเป็นเลข sample (ตัวแรก 0 ตัวสุดท้ายเท่ากับ totalSamples) ช่วงที่ติดกันจึงไม่ซ้อนหรือเว้นกัน
+    static long[] segmentBounds(long totalSamples, int count) {
+        long[] bounds = new long[count + 1];
+        for (int i = 0; i <= count; i++) bounds[i] = totalSamples * i / count;
+        return bounds;
+    }
+
+    // เวลาของ sample ที่ส่งให้ -ss: ละเอียดถึงไมโครวินาที ซึ่งน้อยกว่าครึ่ง sample แม้ที่ 192 kHz
+    // ffmpeg จึงปัดกลับเป็น sample เดิมได้พอดี
+    static String seekTime(long sample, int rate) {
+        return seconds((double) sample / rate);
+    }
+
+    // รวม progress ของทุกช่วงเป็นค่าเดียวของแถวนี้ (ถูกเรียกจากหลาย worker พร้อมกัน)
+    private synchronized void segmentProgress(int index, double encodedSeconds) {
+        if (encodedSeconds <= segmentDone[index]) return;
+        segmentDone[index] = encodedSeconds;
+        double sum = 0;
+        for (double done : segmentDone) sum += done;
+        double current = Math.min(sum / segmentDuration, 1.0);
+        if (current > progress) {
+            progress = current;
+            outTimeUs = (long) (sum * 1_000_000);
+            listener.onProgress(fileInfo, current);
+        }
+    }
+
+    // ช่วงเวลาหนึ่งของไฟล์ยาว รันได้ครั้งเดียว โดย worker ของ scheduler หรือ thread เจ้าของงานก็ได้
+    private final class Segment implements Runnable {
+        private final String ffmpegPath;
+        private final File input;
+        private final File output;
+        private final long startSample;
+        private final long sampleCount;
+        private final int rate;
+        private final int index;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile int exitCode = -1;
+        private volatile Exception error;      // เริ่ม ffmpeg ไม่ได้ (exitCode ยังเป็น -1)
+
+        Segment(String ffmpegPath, File input, File output, long startSample, long sampleCount, int rate, int index) {
+            this.ffmpegPath = ffmpegPath;
+            this.input = input;
+            this.output = output;
+            this.startSample = startSample;
+            this.sampleCount = sampleCount;
+            this.rate = rate;
+            this.index = index;
+        }
+
+        // จองช่วงนี้ คืน false ถ้ามีคนรับไปทำแล้ว
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+            if (claim()) execute(); // worker ของ scheduler
+        }
+
+        void execute() {
+            try {
+                if (isCancelled()) return;
+                exitCode = runFFmpeg(buildCommand(ffmpegPath, input, output, startSample, sampleCount, rate), p -> {
+                    segmentProgress(index, p.getOutTimeSeconds());
+                    return true;
+                }, errorLog());
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        // stderr ของ ffmpeg สำหรับช่วงนี้ (อยู่ในโฟลเดอร์ช่วง ถูกลบพร้อมกัน)
+        private File errorLog() {
+            return new File(output.getParentFile(), output.getName() + ".log");
+        }
+
+        // สาเหตุที่ช่วงนี้ล้มเหลว: เลขช่วง exit code และบรรทัดท้ายของ stderr
+        ConversionFailureException failure() {
+            String reason = error != null ? "could not run ffmpeg: " + error.getMessage() : "exit code " + exitCode;
+            String message = "Segment " + (index + 1) + " of " + input.getName() + " failed (" + reason + ")";
+            String stderr = lastLines(errorLog(), 3);
+            return new ConversionFailureException(stderr.isEmpty() ? message : message + ":\n" + stderr);
+        }
+    }
+
+    // บรรทัดท้ายของไฟล์ log (ว่างถ้าไม่มีไฟล์หรืออ่านไม่ได้)
+    private static String lastLines(File log, int count) {
+        try {
+            List<String> lines = Files.readAllLines(log.toPath(), StandardCharsets.UTF_8).stream()
+                    .filter(line -> !line.isBlank())
+                    .toList();
+            return String.join("\n", lines.subList(Math.max(0, lines.size() - count), lines.size()));
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static String seconds(double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    // ลบโฟลเดอร์ทำงานที่ค้างจากงานที่ถูกขัดจังหวะ (เช่นโปรแกรมดับระหว่างแปลง) ในโฟลเดอร์ผลลัพธ์หรือ scratch disk
+    static void deleteWorkFolders(File dir) {
+        File[] leftovers = dir.listFiles((parent, name) ->
+                name.startsWith(WORK_DIR_PREFIX) || name.startsWith(LEGACY_SEGMENT_PREFIX));
+        if (leftovers == null) return;
+        for (File leftover : leftovers) {
+            if (leftover.isDirectory()) deleteTree(leftover.toPath());
+        }
+    }
+
+    private static void deleteTree(Path dir) {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) deleteTree(file.toPath());
+                else file.delete();
+            }
+        }
+        dir.toFile().delete();
+    }
+
+    // คัดลอกไฟล์ต้นฉบับเป็นผลลัพธ์ตรง ๆ ผ่าน FileChannel (ทีละก้อนเพื่ออัปเดต progress และยกเลิกได้)
+    private void copyFile(File inputFile, File outputFile) throws IOException {
+        final long chunk = 8L * 1024 * 1024;
+        try (FileChannel in = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                awaitResume();
+                if (isCancelled()) break;
+                position += in.transferTo(position, Math.min(chunk, size - position), out);
+                totalSize = position;
+                progress = size == 0 ? 1.0 : (double) position / size;
+                listener.onProgress(fileInfo, progress);
+            }
+        }
+        if (isCancelled()) {
+            listener.onStatus(fileInfo, "Cancelled"); // ไฟล์ที่คัดลอกไม่ครบถูกลบไปกับโฟลเดอร์ทำงาน
+            return;
+        }
+        completed(withSkipped("Done (copied)", outputFormat + " copied"));
+    }
+
+    // ไฟล์ผลลัพธ์ในโฟลเดอร์ทำงาน (ชื่อเดียวกับปลายทาง ffmpeg จึงเลือก muxer จากนามสกุลได้ตามเดิม)
+    private File stagedOutput(File inputFile, String format) {
+        return new File(workDir, getOutputName(inputFile, format));
+    }
+
+    private File finalOutput(File inputFile, String format) {
+        return new File(outputDir, getOutputName(inputFile, format));
+    }
+
+    // กันไม่ให้ผลลัพธ์ไปทับไฟล์ต้นฉบับตอนย้ายไปปลายทาง
+    private void checkNotSource(File inputFile, String format) throws IOException {
+        File target = finalOutput(inputFile, format);
+        if (inputFile.getCanonicalFile().equals(target.getCanonicalFile())) {
+            throw new IOException("Output would overwrite the source file: " + target);
         }
-        return null;
     }
 
     // สร้างชื่อไฟล์ผลลัพธ์โดยเอานามสกุลเก่าออกแล้วใส่นามสกุลใหม่
@@ -108,20 +970,13 @@ public class ConversionTask extends Task<Void> {
         return base + "." + format;
     }
 
-    // แปลงเวลาจากบรรทัดที่อ่านได้ของ ffmpeg ให้เป็นวินาที
-    private double parseCurrentTime(String line) {
-        // ตัวอย่าง: time=00:01:23.45
-        try {
-            int index = line.indexOf("time=");
-            if (index != -1) {
-                String timeStr = line.substring(index + 5, Math.min(index + 16, line.length()));
-                String[] parts = timeStr.split(":");
-                double hours = Double.parseDouble(parts[0]);
-                double minutes = Double.parseDouble(parts[1]);
-                double seconds = Double.parseDouble(parts[2]);
-                return hours * 3600 + minutes * 60 + seconds;
-            }
-        } catch (Exception ignored) {}
-        return 0.0;
+    // ค่าช่องเสียงรับได้ทั้ง "mono"/"stereo" และ "1"/"2"
+    private static boolean isMono(String channel) {
+        return channel.equalsIgnoreCase("mono") || channel.equals("1");
     }
+
+    // ค่าที่ ffmpeg รายงานล่าสุด สำหรับดู throughput ของงานนี้
+    public double getSpeed() { return speed; }
+    public long getOutTimeUs() { return outTimeUs; }
+    public long getTotalSize() { return totalSize; }
 }
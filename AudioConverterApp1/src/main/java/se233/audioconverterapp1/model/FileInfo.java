@@ -1,61 +1,124 @@
 package se233.audioconverterapp1.model;
 
-import javafx.beans.property.*;
 import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 // คลาสสำหรับเก็บข้อมูลไฟล์เสียงแต่ละไฟล์ในโปรแกรม
+// เก็บค่าเป็น field ธรรมดา (ขนาดเป็น long, สถานะเป็น enum, progress เป็น float) เพื่อให้แถวละไม่กี่สิบ byte
+// ไม่ผูกกับ JavaFX (โหมด headless ไม่ต้องมี JavaFX) ตารางผูก property ผ่าน Observer เฉพาะแถวที่มี cell มาขอ
+// (ดู controller.FileInfoProperties) และข้อความแสดงผลจัดรูปตอนเรียก
 public class FileInfo {
-    // ประกาศ property สำหรับผูกกับ UI ได้โดยตรง
-    private final StringProperty fileName;       // ชื่อไฟล์ (เฉพาะชื่อ ไม่รวม path)
-    private final StringProperty filePath;       // ที่อยู่ไฟล์แบบเต็ม
-    private final StringProperty format;         // นามสกุลไฟล์ เช่น mp3, wav
-    private final StringProperty size;           // ขนาดไฟล์เป็นข้อความ
-    private final DoubleProperty progress;       // ความคืบหน้าในการแปลงไฟล์ (0.0 - 1.0)
-    private final StringProperty status;         // สถานะของไฟล์ (Pending, Converting, Done, Error)
-    private final StringProperty targetFormat;   // ฟอร์แมตเป้าหมายสำหรับแปลงไฟล์
-
-    // คอนสตรัคเตอร์ รับ path, format, ขนาดไฟล์ตอนสร้าง object
-    public FileInfo(String filePath, String format, String size) {
+    // ผู้รับแจ้งเมื่อค่าที่แก้ได้ของแถวเปลี่ยน (ถูกเรียกบน thread ที่เรียก setter)
+    public interface Observer {
+        void progressChanged(double progress);
+        void statusChanged(String status);
+        void targetFormatChanged(String targetFormat);
+        default void targetStatesChanged(List<TargetState> states) { }
+    }
+
+    // สถานะและความคืบหน้าของผลลัพธ์หนึ่งฟอร์แมต (แถวที่มีหลายเป้าหมาย เช่น mp3 สำเร็จแต่ flac ล้มเหลว)
+    public record TargetState(String format, String status, double progress) {
+        public FileStatus kind() { return FileStatus.of(status); }
+
+        // ถึงสถานะสุดท้ายแล้ว (สำเร็จ, ข้าม, ล้มเหลว หรือถูกยกเลิก)
+        public boolean isFinished() {
+            FileStatus kind = kind();
+            return kind != FileStatus.PENDING && kind != FileStatus.QUEUED && kind != FileStatus.CONVERTING
+                    && kind != FileStatus.MEASURING && kind != FileStatus.PAUSED && kind != FileStatus.PUBLISHING;
+        }
+    }
+
+    // ลำดับความสำคัญของแถว (งานที่สูงกว่าเริ่มก่อน ไม่ว่าจะเรียงคิวแบบไหน)
+    public static final int PRIORITY_HIGH = 1;
+    public static final int PRIORITY_NORMAL = 0;
+    public static final int PRIORITY_LOW = -1;
+
+    private final String filePath;    // ที่อยู่ไฟล์แบบเต็ม
+    private final int nameStart;      // ตำแหน่งที่ชื่อไฟล์เริ่มใน filePath (ไม่ต้องเก็บชื่อแยกอีกก้อน)
+    private final String format;      // ฟอร์แมตจริงของไฟล์ เช่น mp3, wav
+    private final long sizeBytes;     // ขนาดไฟล์ (byte)
+    private float progress;           // ความคืบหน้าในการแปลงไฟล์ (0.0 - 1.0)
+    private FileStatus status = FileStatus.PENDING;
+    private String statusText;        // ข้อความสถานะเต็ม (null = ตรงกับ label ของ status)
+    private String targetFormat = "mp3"; // ฟอร์แมตเป้าหมายสำหรับแปลงไฟล์
+    private int priority = PRIORITY_NORMAL;
+    private List<TargetState> targetStates = List.of(); // ว่าง = แถวมีเป้าหมายเดียว (ใช้สถานะของแถว)
+
+    private Observer observer;        // ตัวผูกกับ UI (null จนกว่าจะมี cell ขอใช้ และตลอดไปในโหมด headless)
+
+    // คอนสตรัคเตอร์ รับ path, format, ขนาดไฟล์ (byte) ตอนสร้าง object
+    public FileInfo(String filePath, String format, long sizeBytes) {
         File file = new File(filePath);
-        this.filePath = new SimpleStringProperty(file.getAbsolutePath());    // กำหนด path ของไฟล์
-        this.fileName = new SimpleStringProperty(file.getName());            // กำหนดชื่อไฟล์
-        this.format = new SimpleStringProperty(format);                      // นามสกุลไฟล์
-        this.size = new SimpleStringProperty(size);                          // ขนาดไฟล์
-        this.progress = new SimpleDoubleProperty(0.0);                       // เริ่มต้น progress ที่ 0
-        this.status = new SimpleStringProperty("Pending");                   // สถานะเริ่มต้น Pending
-        this.targetFormat = new SimpleStringProperty("mp3");                 // ฟอร์แมตเป้าหมายเริ่มต้นเป็น mp3
-    }
-
-    // --- Getter/Setter และ Property สำหรับเชื่อมต่อ UI ---
-
-    public String getFilePath() { return filePath.get(); }
-    @SuppressWarnings("exports")
-    public StringProperty filePathProperty() { return filePath; }
-
-    public String getFileName() { return fileName.get(); }
-    @SuppressWarnings("exports")
-    public StringProperty fileNameProperty() { return fileName; }
-
-    public String getFormat() { return format.get(); }
-    @SuppressWarnings("exports")
-    public StringProperty formatProperty() { return format; }
-
-    public String getSize() { return size.get(); }
-    @SuppressWarnings("exports")
-    public StringProperty sizeProperty() { return size; }
-
-    public double getProgress() { return progress.get(); }
-    @SuppressWarnings("exports")
-    public DoubleProperty progressProperty() { return progress; }
-    public void setProgress(double value) { progress.set(value); }
-
-    public String getStatus() { return status.get(); }
-    @SuppressWarnings("exports")
-    public StringProperty statusProperty() { return status; }
-    public void setStatus(String value) { status.set(value); }
-
-    public String getTargetFormat() { return targetFormat.get(); }
-    public void setTargetFormat(String format) { targetFormat.set(format); }
-    @SuppressWarnings("exports")
-    public StringProperty targetFormatProperty() { return targetFormat; }
+        this.filePath = file.getAbsolutePath();
+        this.nameStart = this.filePath.length() - file.getName().length();
+        this.format = format;
+        this.sizeBytes = sizeBytes;
+    }
+
+    // --- Getter/Setter (setter แจ้ง observer ถ้ามี) ---
+
+    public String getFilePath() { return filePath; }
+
+    public String getFileName() { return filePath.substring(nameStart); }
+
+    public String getFormat() { return format; }
+
+    public long getSizeBytes() { return sizeBytes; }
+    // ขนาดไฟล์เป็นข้อความ (หน่วย KB) จัดรูปตอนเรียกเท่านั้น
+    public String getSize() { return formatSize(sizeBytes); }
+
+    public double getProgress() { return progress; }
+    public void setProgress(double value) {
+        progress = (float) value;
+        if (observer != null) observer.progressChanged(value);
+    }
+
+    public String getStatus() { return statusText != null ? statusText : status.getLabel(); }
+    public FileStatus getStatusKind() { return status; }
+    public void setStatus(String value) {
+        status = FileStatus.of(value);
+        statusText = status.getLabel().equals(value) ? null : value; // ข้อความมาตรฐานไม่ต้องเก็บซ้ำ
+        if (observer != null) observer.statusChanged(value);
+    }
+
+    public String getTargetFormat() { return targetFormat; }
+    // ฟอร์แมตเป้าหมายทั้งหมดของไฟล์นี้ (เช่น "mp3+flac" -> [mp3, flac])
+    public List<String> getTargetFormats() { return parseFormats(getTargetFormat()); }
+    public void setTargetFormat(String format) {
+        targetFormat = format;
+        if (observer != null) observer.targetFormatChanged(format);
+    }
+
+    // สถานะแยกตามฟอร์แมตของการแปลงครั้งล่าสุด เรียงตามลำดับเป้าหมาย
+    public List<TargetState> getTargetStates() { return targetStates; }
+    public void setTargetStates(List<TargetState> states) {
+        targetStates = List.copyOf(states);
+        if (observer != null) observer.targetStatesChanged(targetStates);
+    }
+
+    public Observer getObserver() { return observer; }
+    public void setObserver(Observer observer) { this.observer = observer; }
+
+    public int getPriority() { return priority; }
+    // เปลี่ยนแค่ค่าในแถว งานที่อยู่ในคิวแล้วต้องเปลี่ยนผ่าน ConversionManager.setPriority
+    public void setPriority(int priority) { this.priority = priority; }
+
+    // ขนาดเป็น KB แบบมีจุลภาค เช่น 31,337 KB
+    public static String formatSize(long bytes) {
+        return String.format(Locale.US, "%,d KB", bytes / 1024);
+    }
+
+    // แยกรายการฟอร์แมตที่คั่นด้วย + หรือ , (ตัดช่องว่าง ตัวซ้ำ และตัวว่างออก)
+    public static List<String> parseFormats(String formats) {
+        if (formats == null) return List.of();
+        Set<String> result = new LinkedHashSet<>();
+        for (String format : formats.split("[+,]")) {
+            String trimmed = format.trim().toLowerCase(Locale.ROOT);
+            if (!trimmed.isEmpty()) result.add(trimmed);
+        }
+        return List.copyOf(result);
+    }
 }
@@ -0,0 +1,44 @@
+package se233.audioconverterapp1.model;
+
+// ชนิดของสถานะแถว (ข้อความเต็มอาจมีรายละเอียดต่อท้าย เช่น "Done (mp3 done, flac up to date)")
+// FileInfo เก็บแค่ค่านี้ ส่วนข้อความเก็บเพิ่มเฉพาะตอนที่ไม่ตรงกับ label
+public enum FileStatus {
+    PENDING("Pending"),
+    QUEUED("Queued"),
+    CONVERTING("Converting..."),
+    MEASURING("Measuring loudness..."), // รอบวัดความดังก่อนเข้ารหัส (ปรับความดังแบบ EBU R128)
+    PAUSED("Paused"),                 // ffmpeg ถูกหยุดไว้ชั่วคราว ทำต่อได้จากจุดเดิม
+    PUBLISHING("Publishing..."),      // แปลงเสร็จแล้ว รอย้ายจาก scratch disk ไปโฟลเดอร์ผลลัพธ์
+    DONE("Done"),
+    UP_TO_DATE("Up to date"),
+    SKIPPED("Skipped (Duplicate)"),
+    CANCELLED("Cancelled"),
+    FAILED("Failed"),
+    ERROR("Error");
+
+    private static final FileStatus[] VALUES = values();
+
+    private final String label;
+
+    FileStatus(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() { return label; }
+
+    // สำเร็จแล้ว (แปลงเสร็จ หรือผลลัพธ์เดิมยังใหม่อยู่)
+    public boolean isSuccess() { return this == DONE || this == UP_TO_DATE; }
+
+    // จัดข้อความสถานะเข้าชนิด: ตรง label -> ชนิดนั้น, มีรายละเอียดต่อท้าย -> ชนิดของคำนำหน้า
+    // ข้อความที่ไม่รู้จัก (เช่น "FFmpeg not found") ถือเป็น ERROR
+    public static FileStatus of(String text) {
+        if (text == null) return PENDING;
+        for (FileStatus status : VALUES) {
+            if (status.label.equals(text)) return status;
+        }
+        if (text.startsWith("Done")) return DONE;
+        if (text.startsWith("Converting")) return CONVERTING;
+        if (text.startsWith("Skipped")) return SKIPPED;
+        return ERROR;
+    }
+}
@@ -0,0 +1,69 @@
+package se233.audioconverterapp1.model;
+
+import se233.audioconverterapp1.util.FFprobeHelper;
+import se233.audioconverterapp1.util.LoudnessAnalyzer;
+import se233.audioconverterapp1.util.MediaInfo;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+
+// ประมาณเวลาที่งานหนึ่งจะใช้ (หน่วยเทียบกันเอง ไม่ใช่วินาทีจริง) สำหรับเรียงงานแบบ shortest-job-first
+// = ความยาวเสียง × (ต้นทุนถอดรหัส codec ต้นฉบับ + ต้นทุนเข้ารหัสของทุกฟอร์แมตเป้าหมาย)
+// ตอนปรับความดัง บวกต้นทุน loudnorm ต่อผลลัพธ์ และรอบวัด (ถอดรหัสอีกรอบ) ถ้ายังไม่มีผลวัดในแคช
+// ความยาวอ่านจากแคชของ ffprobe หรือหัวไฟล์เท่านั้น (ไม่เริ่ม process ตอนเข้าคิว) ถ้าไม่ได้จึงประมาณจากขนาดไฟล์
+final class JobCost {
+    private static final double UNKNOWN_BYTES_PER_SECOND = 24_000; // ~192 kbit/s ค่ากลาง ๆ ของไฟล์ lossy
+    private static final double LOUDNORM_COST = 0.4; // loudnorm resample เป็น 192 kHz เพื่อวัด true peak
+
+    private JobCost() { }
+
+    static double estimate(File source, String sourceFormat, List<String> targets, boolean normalizeLoudness) {
+        MediaInfo info = FFprobeHelper.peek(source);
+        String codec = info != null && info.getCodec() != null ? info.getCodec() : sourceFormat;
+        double seconds = info != null && info.getDurationSeconds() > 0
+                ? info.getDurationSeconds()
+                : source.length() / bytesPerSecond(sourceFormat);
+        double perSecond = decodeCost(codec);
+        for (String target : targets) perSecond += encodeCost(target);
+        if (normalizeLoudness) {
+            perSecond += targets.size() * LOUDNORM_COST;
+            if (LoudnessAnalyzer.cached(source) == null) perSecond += decodeCost(codec) + LOUDNORM_COST;
+        }
+        return seconds * perSecond;
+    }
+
+    // ต้นทุนถอดรหัสต่อวินาทีเสียง เทียบกับการเข้ารหัส mp3 (= 1.0)
+    private static double decodeCost(String codec) {
+        if (codec == null) return 0.5;
+        String c = codec.toLowerCase(Locale.ROOT);
+        if (c.startsWith("pcm") || c.equals("wav")) return 0.05;
+        return switch (c) {
+            case "mp3" -> 0.25;
+            case "flac" -> 0.3;
+            case "aac", "m4a", "alac" -> 0.35;
+            default -> 0.5;
+        };
+    }
+
+    // ต้นทุนเข้ารหัสต่อวินาทีเสียง (wav แทบไม่มีต้นทุน, aac ช้ากว่า lame เล็กน้อย)
+    private static double encodeCost(String format) {
+        return switch (format) {
+            case "wav" -> 0.05;
+            case "flac" -> 0.5;
+            case "m4a" -> 1.3;
+            default -> 1.0;
+        };
+    }
+
+    // byte ต่อวินาทีโดยประมาณเมื่ออ่านความยาวไม่ได้
+    private static double bytesPerSecond(String format) {
+        if (format == null) return UNKNOWN_BYTES_PER_SECOND;
+        return switch (format) {
+            case "wav" -> 176_400;   // 44.1 kHz stereo 16 บิต
+            case "flac" -> 100_000;  // ~55% ของ PCM
+            case "mp3" -> 24_000;
+            default -> UNKNOWN_BYTES_PER_SECOND;
+        };
+    }
+}
@@ -0,0 +1,264 @@
+package se233.audioconverterapp1.model;
+
+import se233.audioconverterapp1.util.FileMetadataCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// บันทึกสถานะงานแปลงลงดิสก์แบบ append-only (คิว -> กำลังรัน -> เสร็จ/ล้มเหลว/ยกเลิก)
+// ถ้าโปรแกรมหรือเครื่องดับกลางทาง เปิดครั้งถัดไปจะรู้ว่างานไหนยังค้างอยู่และสร้างคิวใหม่ได้
+// รูปแบบบรรทัด: Q <id> <ต้นฉบับ> <ฟอร์แมตต้นฉบับ> <เป้าหมาย> <bitrate> <sampleRate> <channel> <โฟลเดอร์ผลลัพธ์>
+//                <ปรับความดัง> (ช่องสุดท้าย "loudnorm" หรือว่าง; journal เก่าไม่มีช่องนี้ = ไม่ปรับ)
+//              R|D|F|C <id>  (R = เริ่มรัน, D = เสร็จ, F = ล้มเหลว, C = ยกเลิก/ถูกแทนที่)
+// ทุกบรรทัดถูก fsync ลงดิสก์ก่อน append คืนค่า (flush อย่างเดียวแค่ถึง page cache ของ OS ไฟดับแล้วหายได้)
+// ยกเว้นช่วง holdSync() ที่เขียนทั้งชุดแล้ว fsync ครั้งเดียวตอน resumeSync() (เช่นตอนส่งงานหลายร้อยไฟล์เข้าคิว)
+public class JobJournal {
+    public static final String DEFAULT_FILE_NAME = "jobs.journal";
+
+    private static final String QUEUED = "Q";
+    private static final String RUNNING = "R";
+    private static final String DONE = "D";
+    private static final String FAILED = "F";
+    private static final String CANCELLED = "C";
+    private static final String LOUDNORM = "loudnorm";
+
+    // งานหนึ่งงานตามที่บันทึกไว้ตอนเข้าคิว
+    public static class Job {
+        final long id;
+        final String sourcePath;
+        final String sourceFormat;
+        final String targetFormats;
+        final String bitrate;
+        final String sampleRate;
+        final String channel;
+        final String outputDir;
+        final boolean normalizeLoudness; // เข้าคิวพร้อมการปรับความดัง (กู้คืนต้องปรับเหมือนเดิม)
+        volatile boolean started; // เคยเริ่มรันแล้ว (อาจมีไฟล์ผลลัพธ์ที่เขียนไม่ครบค้างอยู่)
+
+        Job(long id, String sourcePath, String sourceFormat, String targetFormats, String bitrate, String sampleRate,
+            String channel, String outputDir, boolean normalizeLoudness) {
+            this.id = id;
+            this.sourcePath = sourcePath;
+            this.sourceFormat = sourceFormat;
+            this.targetFormats = targetFormats;
+            this.bitrate = bitrate;
+            this.sampleRate = sampleRate;
+            this.channel = channel;
+            this.outputDir = outputDir;
+            this.normalizeLoudness = normalizeLoudness;
+        }
+
+        public long getId() { return id; }
+        public String getSourcePath() { return sourcePath; }
+        public String getSourceFormat() { return sourceFormat; }
+        public String getTargetFormats() { return targetFormats; }
+        public String getBitrate() { return bitrate; }
+        public String getSampleRate() { return sampleRate; }
+        public String getChannel() { return channel; }
+        public String getOutputDir() { return outputDir; }
+        public boolean isNormalizeLoudness() { return normalizeLoudness; }
+        public boolean wasStarted() { return started; }
+
+        private String toLine() {
+            return String.join("\t", QUEUED, Long.toString(id), sourcePath, sourceFormat, targetFormats, bitrate,
+                    sampleRate, channel, outputDir, normalizeLoudness ? LOUDNORM : "");
+        }
+    }
+
+    private final Path journalFile;
+    private final Map<Long, Job> unfinished = new ConcurrentHashMap<>(); // งานที่ยังไม่จบ เรียงตาม id ตอนอ่าน
+    private final AtomicLong nextId = new AtomicLong(1);
+    // ใช้ภายใต้ lock ของ this
+    private FileChannel channel; // เปิดค้างไว้ เขียนต่อท้าย
+    private int syncHolds;       // > 0 = ยังไม่ fsync จนกว่าจะ resumeSync() (เรียกซ้อนกันได้)
+    private boolean unsynced;    // มีบรรทัดที่เขียนแล้วแต่ยังไม่ fsync
+
+    private JobJournal(Path journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    // เปิด journal ที่ตำแหน่งปกติในโฟลเดอร์แคชของโปรแกรม
+    public static JobJournal openDefault() {
+        return open(FileMetadataCache.cacheDirectory().resolve(DEFAULT_FILE_NAME));
+    }
+
+    // อ่าน journal (ถ้ามี) เก็บเฉพาะงานที่ยังไม่จบ แล้วเขียนไฟล์ใหม่ให้เหลือแค่งานเหล่านั้น
+    public static JobJournal open(Path journalFile) {
+        JobJournal journal = new JobJournal(journalFile.toAbsolutePath());
+        long maxId = 0;
+        if (Files.isRegularFile(journalFile)) {
+            try {
+                for (String line : Files.readAllLines(journalFile, StandardCharsets.UTF_8)) {
+                    maxId = Math.max(maxId, journal.replay(line));
+                }
+            } catch (IOException e) {
+                System.err.println("[JobJournal] Could not read " + journalFile + ": " + e.getMessage());
+            }
+        }
+        journal.nextId.set(maxId + 1);
+        journal.compact();
+        return journal;
+    }
+
+    // งานที่ค้างจากครั้งก่อน (ยังไม่ถึงสถานะสุดท้าย) เรียงตามลำดับที่เข้าคิว
+    public List<Job> unfinishedJobs() {
+        List<Job> jobs = new ArrayList<>(unfinished.values());
+        jobs.sort((a, b) -> Long.compare(a.id, b.id));
+        return jobs;
+    }
+
+    // บันทึกงานใหม่เข้าคิว คืน id ของงาน (ใช้กับ started/done/failed/cancelled)
+    public long queued(FileInfo info, String targetFormats, String bitrate, String sampleRate, String channel,
+                       String outputDir, boolean normalizeLoudness) {
+        long id = nextId.getAndIncrement();
+        Job job = new Job(id, info.getFilePath(), info.getFormat(), targetFormats, bitrate, sampleRate, channel,
+                outputDir, normalizeLoudness);
+        unfinished.put(id, job);
+        // path ที่มี tab/ขึ้นบรรทัดใหม่เก็บลงไฟล์ไม่ได้ งานนั้นจะกู้คืนไม่ได้แต่ยังแปลงได้ตามปกติ
+        if (storable(job.sourcePath) && storable(job.outputDir)) append(job.toLine());
+        return id;
+    }
+
+    public void started(long id) {
+        Job job = unfinished.get(id);
+        if (job != null) job.started = true;
+        append(RUNNING + "\t" + id);
+    }
+
+    public void done(long id) { finish(id, DONE); }
+    public void failed(long id) { finish(id, FAILED); }
+    public void cancelled(long id) { finish(id, CANCELLED); }
+
+    private void finish(long id, String state) {
+        if (unfinished.remove(id) == null) return; // จบไปแล้ว (เช่นยกเลิกซ้ำ)
+        append(state + "\t" + id);
+    }
+
+    // เขียนหลายบรรทัดติดกันโดย fsync ครั้งเดียวตอน resumeSync() (ต้องเรียกคู่กันเสมอ)
+    // ระหว่างนั้นบรรทัดที่เขียนไปแล้วอยู่แค่ใน page cache ถ้าไฟดับอาจหายทั้งชุด
+    public synchronized void holdSync() {
+        syncHolds++;
+    }
+
+    public synchronized void resumeSync() {
+        if (syncHolds > 0) syncHolds--;
+        if (syncHolds == 0) sync();
+    }
+
+    // ปิดไฟล์ (ตอนปิดโปรแกรม)
+    public synchronized void close() {
+        if (channel == null) return;
+        sync();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    private static boolean storable(String field) {
+        return field.indexOf('\t') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0;
+    }
+
+    // อ่านหนึ่งบรรทัดตอนเปิด คืน id ที่เจอ (ใช้หา id ถัดไป)
+    private long replay(String line) {
+        String[] f = line.split("\t", -1);
+        if (f.length < 2) return 0;
+        long id;
+        try {
+            id = Long.parseLong(f[1]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        switch (f[0]) {
+            case QUEUED -> {
+                if (f.length >= 9) {
+                    boolean normalize = f.length >= 10 && f[9].equals(LOUDNORM);
+                    unfinished.put(id, new Job(id, f[2], f[3], f[4], f[5], f[6], f[7], f[8], normalize));
+                }
+            }
+            case RUNNING -> {
+                Job job = unfinished.get(id);
+                if (job != null) job.started = true;
+            }
+            default -> unfinished.remove(id); // D, F, C
+        }
+        return id;
+    }
+
+    private synchronized void append(String line) {
+        try {
+            if (channel == null) {
+                Files.createDirectories(journalFile.getParent());
+                boolean created = !Files.exists(journalFile);
+                channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+                if (created) syncDirectory(journalFile.getParent()); // ชื่อไฟล์ใหม่ต้องลงดิสก์ด้วย
+            }
+            ByteBuffer bytes = ByteBuffer.wrap((line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) channel.write(bytes);
+            unsynced = true;
+        } catch (IOException e) {
+            System.err.println("[JobJournal] Could not write " + journalFile + ": " + e.getMessage());
+            return;
+        }
+        if (syncHolds == 0) sync();
+    }
+
+    // fsync ข้อมูลของ journal (force(false) = ไม่ต้องรอ metadata เช่นเวลาแก้ไข ขนาดไฟล์ยังถูกบันทึก)
+    private void sync() {
+        if (channel == null || !unsynced) return;
+        try {
+            channel.force(false);
+            unsynced = false;
+        } catch (IOException e) {
+            System.err.println("[JobJournal] Could not sync " + journalFile + ": " + e.getMessage());
+        }
+    }
+
+    // fsync โฟลเดอร์ ให้การสร้าง/เปลี่ยนชื่อไฟล์ในโฟลเดอร์ลงดิสก์ (Windows เปิดโฟลเดอร์แบบนี้ไม่ได้ ข้ามไป)
+    private static void syncDirectory(Path directory) {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    // เขียนไฟล์ใหม่ให้เหลือเฉพาะงานที่ยังไม่จบ (ไม่ให้ journal โตไปเรื่อย ๆ)
+    // fsync ไฟล์ชั่วคราวก่อนเปลี่ยนชื่อทับ และ fsync โฟลเดอร์หลังเปลี่ยนชื่อ
+    // ไม่อย่างนั้นไฟดับหลัง rename อาจเหลือ journal ว่างหรือไม่ครบ ทั้งที่ไฟล์เดิมครบอยู่แล้ว
+    private void compact() {
+        if (!Files.isRegularFile(journalFile)) return;
+        List<String> lines = new ArrayList<>();
+        for (Job job : unfinishedJobs()) {
+            lines.add(job.toLine());
+            if (job.started) lines.add(RUNNING + "\t" + job.id);
+        }
+        try {
+            Path tmp = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+            StringBuilder text = new StringBuilder();
+            for (String line : lines) text.append(line).append(System.lineSeparator());
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining()) out.write(bytes);
+                out.force(true);
+            }
+            Files.move(tmp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(journalFile.getParent());
+        } catch (IOException e) {
+            System.err.println("[JobJournal] Could not compact " + journalFile + ": " + e.getMessage());
+        }
+    }
+}
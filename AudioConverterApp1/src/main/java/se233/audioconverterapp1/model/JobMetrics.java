@@ -0,0 +1,103 @@
+package se233.audioconverterapp1.model;
+
+// เวลาและข้อมูลของงานแปลงหนึ่งงาน แยกตามขั้นตอน: รอคิว, ffprobe, เริ่ม process, แปลง, ปิดงาน
+// ConversionTask/ConversionManager เป็นคนเติมค่า ฝั่งอื่นอ่านได้ตลอด (ค่าเป็น volatile)
+// เวลาทุกขั้นวัดบน thread ของงานเอง (ช่วงของไฟล์ยาวที่รันบน worker อื่นนับรวมอยู่ในช่วงแปลง)
+public class JobMetrics {
+    private final String sourcePath;
+    private final String targets;          // ฟอร์แมตเป้าหมาย เช่น "mp3" หรือ "mp3+flac"
+    private final long bytesIn;            // ขนาดต้นฉบับ
+    private final long queuedAt;           // System.nanoTime() ตอนเข้าคิว
+
+    private volatile long startedAt;       // 0 = ยังไม่เริ่ม
+    private volatile long finishedAt;      // 0 = ยังไม่จบ
+    private volatile long probeNanos;
+    private volatile long spawnNanos;
+    private volatile long encodeNanos;
+    private volatile long finalizeNanos;
+    private volatile long bytesOut = -1;
+    private volatile double durationSeconds = -1; // ความยาวเสียงจาก ffprobe
+    private volatile double ffmpegSpeed = -1;     // ค่า speed ล่าสุดที่ ffmpeg รายงาน
+    private volatile int exitCode = Integer.MIN_VALUE; // MIN_VALUE = ไม่ได้รัน ffmpeg, -1 = ถูกยกเลิก
+    private volatile String mode = "";
+    private volatile String status = "Queued";
+
+    JobMetrics(String sourcePath, String targets, long bytesIn) {
+        this(sourcePath, targets, bytesIn, System.nanoTime());
+    }
+
+    private JobMetrics(String sourcePath, String targets, long bytesIn, long queuedAt) {
+        this.sourcePath = sourcePath;
+        this.targets = targets;
+        this.bytesIn = bytesIn;
+        this.queuedAt = queuedAt;
+    }
+
+    // สำเนาที่ค่าไม่เปลี่ยนแล้ว (ใช้ใน snapshot)
+    JobMetrics copy() {
+        JobMetrics c = new JobMetrics(sourcePath, targets, bytesIn, queuedAt);
+        c.startedAt = startedAt;
+        c.finishedAt = finishedAt;
+        c.probeNanos = probeNanos;
+        c.spawnNanos = spawnNanos;
+        c.encodeNanos = encodeNanos;
+        c.finalizeNanos = finalizeNanos;
+        c.bytesOut = bytesOut;
+        c.durationSeconds = durationSeconds;
+        c.ffmpegSpeed = ffmpegSpeed;
+        c.exitCode = exitCode;
+        c.mode = mode;
+        c.status = status;
+        return c;
+    }
+
+    // ---- ตัวเติมค่า (เรียกจากงานเอง) ----
+    void markStarted() { startedAt = System.nanoTime(); }
+    void markFinished() { if (finishedAt == 0) finishedAt = System.nanoTime(); }
+    void setProbeNanos(long nanos) { probeNanos = nanos; }
+    synchronized void addSpawnNanos(long nanos) { spawnNanos += nanos; }
+    void setEncodeNanos(long nanos) { encodeNanos = nanos; }
+    synchronized void addFinalizeNanos(long nanos) { finalizeNanos += nanos; }
+    void setBytesOut(long bytes) { bytesOut = bytes; }
+    void setDurationSeconds(double seconds) { durationSeconds = seconds; }
+    void setFfmpegSpeed(double speed) { if (speed > 0) ffmpegSpeed = speed; }
+    void setExitCode(int code) { exitCode = code; }
+    void setMode(ConversionMode mode) { this.mode = mode.name(); }
+    void setStatus(String status) { this.status = status; }
+
+    // ---- ค่าที่อ่านได้ ----
+    public String getSourcePath() { return sourcePath; }
+    public String getTargets() { return targets; }
+    public String getMode() { return mode; }
+    public String getStatus() { return status; }
+    public boolean isStarted() { return startedAt != 0; }
+    public boolean isFinished() { return finishedAt != 0; }
+    public long getBytesIn() { return bytesIn; }
+    public long getBytesOut() { return bytesOut; }
+    public double getDurationSeconds() { return durationSeconds; }
+    public double getFfmpegSpeed() { return ffmpegSpeed; }
+    public int getExitCode() { return exitCode; }
+    public boolean hasExitCode() { return exitCode != Integer.MIN_VALUE; }
+
+    // เวลารอคิว (งานที่ยังไม่เริ่มนับถึงตอนนี้ หรือถึงตอนถูกยกเลิก)
+    public long getQueueWaitNanos() {
+        long end = startedAt != 0 ? startedAt : finishedAt != 0 ? finishedAt : System.nanoTime();
+        return end - queuedAt;
+    }
+
+    public long getProbeNanos() { return probeNanos; }
+    public long getSpawnNanos() { return spawnNanos; }
+    public long getEncodeNanos() { return encodeNanos; }
+    public long getFinalizeNanos() { return finalizeNanos; }
+
+    // เวลาตั้งแต่เข้าคิวจนจบ (หรือจนถึงตอนนี้ถ้ายังไม่จบ)
+    public long getTotalNanos() {
+        return (finishedAt != 0 ? finishedAt : System.nanoTime()) - queuedAt;
+    }
+
+    // ความเร็วจริงของช่วงแปลงเทียบเวลาจริง (ความยาวเสียง / เวลาแปลง) ใช้เทียบ codec ได้แม้แบ่งช่วง
+    public double getRealtimeFactor() {
+        if (durationSeconds <= 0 || encodeNanos <= 0) return -1;
+        return durationSeconds / (encodeNanos / 1e9);
+    }
+}
@@ -0,0 +1,39 @@
+package se233.audioconverterapp1.model;
+
+import java.time.Instant;
+import java.util.List;
+
+// ภาพรวมของงานแปลง ณ เวลาหนึ่ง (ได้จาก ConversionManager.getMetricsSnapshot())
+// ค่าของแต่ละงานเป็นสำเนา อ่านได้จาก thread ไหนก็ได้โดยไม่เปลี่ยนตามงานที่ยังรันอยู่
+public class MetricsSnapshot {
+    private final Instant takenAt = Instant.now();
+    private final int queued;
+    private final int running;
+    private final List<JobMetrics> jobs;
+    private int finished;
+    private int failed;
+    private long bytesIn;
+    private long bytesOut;
+
+    MetricsSnapshot(int queued, int running, List<JobMetrics> jobs) {
+        this.queued = queued;
+        this.running = running;
+        this.jobs = List.copyOf(jobs);
+        for (JobMetrics job : this.jobs) {
+            bytesIn += job.getBytesIn();
+            if (job.getBytesOut() > 0) bytesOut += job.getBytesOut();
+            if (!job.isFinished()) continue;
+            finished++;
+            if (!job.getStatus().startsWith("Done") && !job.getStatus().equals("Cancelled")) failed++;
+        }
+    }
+
+    public Instant getTakenAt() { return takenAt; }
+    public int getQueued() { return queued; }       // งานที่รอ worker อยู่ในคิว
+    public int getRunning() { return running; }     // งานที่กำลังรัน (รวมช่วงของไฟล์ยาว)
+    public int getFinished() { return finished; }   // งานที่จบแล้ว ไม่ว่าผลเป็นอะไร
+    public int getFailed() { return failed; }
+    public long getBytesIn() { return bytesIn; }
+    public long getBytesOut() { return bytesOut; }
+    public List<JobMetrics> getJobs() { return jobs; }
+}
@@ -0,0 +1,203 @@
+package se233.audioconverterapp1.model;
+
+import se233.audioconverterapp1.util.LoudnessAnalyzer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// บันทึกประจำโฟลเดอร์ผลลัพธ์ ว่าไฟล์ผลลัพธ์แต่ละไฟล์แปลงมาจากต้นฉบับไหน (ขนาด/เวลา/hash) ด้วยค่าตั้งอะไร
+// ใช้ตัดสินตอนรันซ้ำว่าไฟล์ไหนยังใหม่อยู่ (ข้ามได้โดยไม่ต้องรัน ffmpeg) และไฟล์ไหนต้องแปลงใหม่
+public class OutputManifest {
+    public static final String FILE_NAME = ".audioconverter-manifest.tsv";
+    private static final int SAMPLE_BYTES = 64 * 1024; // hash ย่อของต้นฉบับจากหัว+ท้ายไฟล์ ไม่ต้องอ่านทั้งไฟล์
+
+    // ข้อมูลของไฟล์ผลลัพธ์หนึ่งไฟล์
+    private static class Entry {
+        final String sourcePath;
+        final long sourceSize;
+        final long sourceModified;
+        final String sourceHash;     // hash ย่อ (หัว+ท้าย) ใช้คัดไฟล์ที่เปลี่ยนแน่ ๆ ออกเร็ว ๆ
+        final String sourceDigest;   // SHA-256 ทั้งไฟล์ (null = manifest รุ่นก่อนที่ยังไม่มีช่องนี้)
+        final String settings;
+        final long outputSize;
+        final long outputModified;
+        final String outputChecksum;
+
+        Entry(String sourcePath, long sourceSize, long sourceModified, String sourceHash, String sourceDigest,
+              String settings, long outputSize, long outputModified, String outputChecksum) {
+            this.sourcePath = sourcePath;
+            this.sourceSize = sourceSize;
+            this.sourceModified = sourceModified;
+            this.sourceHash = sourceHash;
+            this.sourceDigest = sourceDigest;
+            this.settings = settings;
+            this.outputSize = outputSize;
+            this.outputModified = outputModified;
+            this.outputChecksum = outputChecksum;
+        }
+    }
+
+    private final Path manifestFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>(); // คีย์คือชื่อไฟล์ผลลัพธ์
+
+    private OutputManifest(Path manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    // โหลด manifest ของโฟลเดอร์ผลลัพธ์ (ถ้ายังไม่มีจะได้ manifest ว่าง)
+    public static OutputManifest load(File outputDir) {
+        OutputManifest manifest = new OutputManifest(outputDir.toPath().resolve(FILE_NAME));
+        int lineCount = 0;
+        if (Files.isRegularFile(manifest.manifestFile)) {
+            try {
+                for (String line : Files.readAllLines(manifest.manifestFile, StandardCharsets.UTF_8)) {
+                    lineCount++;
+                    manifest.parseLine(line);
+                }
+            } catch (IOException e) {
+                System.err.println("[OutputManifest] Could not read " + manifest.manifestFile + ": " + e.getMessage());
+            }
+        }
+        if (lineCount > 256 && lineCount > manifest.entries.size() * 2) manifest.compact();
+        return manifest;
+    }
+
+    // สร้างคีย์ค่าตั้งการแปลง ใช้เทียบว่าค่าตั้งเปลี่ยนหรือไม่
+    public static String settingsKey(String format, String bitrate, String sampleRate, String channel) {
+        String channels = channel.equalsIgnoreCase("mono") || channel.equals("1") ? "1" : "2";
+        return "format=" + format + ";b=" + bitrate + ";ar=" + sampleRate + ";ac=" + channels;
+    }
+
+    // เหมือนข้างบน แต่รวมการปรับความดังด้วย (ผลลัพธ์ที่ไม่ได้ปรับมีคีย์เหมือนเดิม ไฟล์ manifest เก่าจึงยังใช้ได้)
+    public static String settingsKey(String format, String bitrate, String sampleRate, String channel,
+                                     boolean normalizeLoudness) {
+        String key = settingsKey(format, bitrate, sampleRate, channel);
+        return normalizeLoudness ? key + ";loudnorm=" + LoudnessAnalyzer.TARGET : key;
+    }
+
+    // ไฟล์ผลลัพธ์นี้ถูกสร้างโดยโปรแกรมนี้หรือไม่ (ถ้าไม่ใช่ ไม่ควรเขียนทับ)
+    public boolean isTracked(File output) {
+        return entries.containsKey(output.getName());
+    }
+
+    // ไฟล์ผลลัพธ์ยังตรงกับต้นฉบับและค่าตั้งปัจจุบันหรือไม่ (ถ้าใช่ ข้ามการแปลงได้)
+    public boolean isUpToDate(File source, File output, String settings) {
+        Entry entry = entries.get(output.getName());
+        if (entry == null || !output.isFile()) return false;
+        if (!entry.settings.equals(settings)) return false;
+        if (!entry.sourcePath.equals(source.getAbsolutePath())) return false;
+        // ไฟล์ผลลัพธ์ถูกแก้/ตัดทอนหลังแปลง ต้องแปลงใหม่
+        if (output.length() != entry.outputSize || output.lastModified() != entry.outputModified) return false;
+        if (source.length() != entry.sourceSize) return false;
+        if (source.lastModified() == entry.sourceModified) return true;
+
+        // เวลาเปลี่ยนแต่ขนาดเท่าเดิม (เช่นถูก touch หรือ copy มาใหม่) ตรวจเนื้อหาก่อนตัดสิน
+        // hash ย่อไม่ตรงคือเปลี่ยนแน่นอน แต่ตรงกันยังไม่พอ (การแก้กลางไฟล์ขนาดเท่าเดิมไม่โดนหัว/ท้าย) จึงเทียบทั้งไฟล์
+        if (entry.sourceDigest == null) return false;
+        String hash = sourceHash(source);
+        if (hash == null || !hash.equals(entry.sourceHash)) return false;
+        if (!entry.sourceDigest.equals(checksum(source))) return false;
+        put(output.getName(), new Entry(entry.sourcePath, entry.sourceSize, source.lastModified(), hash,
+                entry.sourceDigest, entry.settings, entry.outputSize, entry.outputModified, entry.outputChecksum));
+        return true;
+    }
+
+    // บันทึกผลการแปลงที่สำเร็จ (เรียกจาก worker thread หลัง ffmpeg จบ)
+    public void record(File source, File output, String settings) {
+        String checksum = checksum(output);
+        put(output.getName(), new Entry(source.getAbsolutePath(), source.length(), source.lastModified(),
+                sourceHash(source), checksum(source), settings, output.length(), output.lastModified(), checksum));
+    }
+
+    private void put(String outputName, Entry entry) {
+        entries.put(outputName, entry);
+        if (outputName.indexOf('\t') >= 0 || outputName.indexOf('\n') >= 0) return;
+        synchronized (this) {
+            try (BufferedWriter writer = Files.newBufferedWriter(manifestFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(toLine(outputName, entry));
+                writer.newLine();
+            } catch (IOException e) {
+                System.err.println("[OutputManifest] Could not write " + manifestFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void parseLine(String line) {
+        String[] f = line.split("\t", -1);
+        if (f.length < 9) return;
+        try {
+            String digest = f.length > 9 && !f[9].equals("null") ? f[9] : null; // ช่องที่ 10 เพิ่มทีหลัง
+            entries.put(f[0], new Entry(f[1], Long.parseLong(f[2]), Long.parseLong(f[3]), f[4], digest, f[5],
+                    Long.parseLong(f[6]), Long.parseLong(f[7]), f[8]));
+        } catch (NumberFormatException ignored) {
+        }
+    }
+
+    private static String toLine(String outputName, Entry e) {
+        return String.join("\t", outputName, e.sourcePath, Long.toString(e.sourceSize), Long.toString(e.sourceModified),
+                String.valueOf(e.sourceHash), e.settings, Long.toString(e.outputSize), Long.toString(e.outputModified),
+                String.valueOf(e.outputChecksum), String.valueOf(e.sourceDigest));
+    }
+
+    // เขียนไฟล์ใหม่ให้เหลือเฉพาะรายการล่าสุดของแต่ละไฟล์ผลลัพธ์
+    private void compact() {
+        List<String> lines = new ArrayList<>(entries.size());
+        entries.forEach((name, entry) -> lines.add(toLine(name, entry)));
+        try {
+            Path tmp = manifestFile.resolveSibling(FILE_NAME + ".tmp");
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            Files.move(tmp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("[OutputManifest] Could not compact " + manifestFile + ": " + e.getMessage());
+        }
+    }
+
+    // hash ย่อของต้นฉบับจากขนาด + 64KB แรก + 64KB สุดท้าย (ไฟล์ 64-128KB ส่วนท้ายซ้อนกับส่วนแรก จึงครบทุก byte)
+    static String sourceHash(File source) {
+        try (RandomAccessFile raf = new RandomAccessFile(source, "r")) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long length = raf.length();
+            digest.update(Long.toString(length).getBytes(StandardCharsets.US_ASCII));
+            byte[] buffer = new byte[SAMPLE_BYTES];
+            int n = raf.read(buffer, 0, (int) Math.min(SAMPLE_BYTES, length));
+            if (n > 0) digest.update(buffer, 0, n);
+            if (length > SAMPLE_BYTES) {
+                raf.seek(length - SAMPLE_BYTES);
+                raf.readFully(buffer);
+                digest.update(buffer);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    // SHA-256 ทั้งไฟล์ (ไฟล์ผลลัพธ์ และต้นฉบับสำหรับเทียบตอนเวลาแก้ไขเปลี่ยน)
+    static String checksum(File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) digest.update(buffer, 0, n);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+}
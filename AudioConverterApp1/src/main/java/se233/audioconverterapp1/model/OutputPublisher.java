@@ -0,0 +1,86 @@
+package se233.audioconverterapp1.model;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ขั้นย้ายไฟล์ผลลัพธ์จาก scratch disk ไปโฟลเดอร์ปลายทาง แยกจาก worker ที่แปลงไฟล์
+// worker ส่งงานให้แล้วไปรับไฟล์ถัดไปได้ทันที ไม่ต้องรอการเขียนปลายทางที่ช้า (เช่น NAS)
+// จำนวนงานที่รอย้ายมีจำกัด ถ้าเต็ม worker จะรอจนมีที่ว่าง (กันไม่ให้ scratch disk เต็ม)
+public class OutputPublisher {
+    public static final int DEFAULT_THREADS = 2;      // การเขียนปลายทางเดียวกันพร้อมกันมากไปก็ไม่เร็วขึ้น
+    public static final int DEFAULT_MAX_PENDING = 8;  // งานที่ส่งมาแล้วแต่ยังย้ายไม่เสร็จ (รวมที่กำลังย้าย)
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore slots;
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    public OutputPublisher() {
+        this(DEFAULT_THREADS, DEFAULT_MAX_PENDING);
+    }
+
+    public OutputPublisher(int threads, int maxPending) {
+        int limit = Math.max(1, threads);
+        ThreadFactory factory = runnable -> {
+            Thread t = new Thread(runnable, "output-publisher-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        executor = new ThreadPoolExecutor(limit, limit, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+        slots = new Semaphore(Math.max(limit, maxPending));
+    }
+
+    // ส่งงานย้ายไฟล์เข้าคิว (รอถ้างานค้างครบจำนวนแล้ว)
+    public void submit(Runnable publish) throws InterruptedException {
+        slots.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    publish.run();
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    // จำนวนงานที่รอย้ายหรือกำลังย้ายอยู่
+    public int getPendingCount() {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+
+    // ย้ายไฟล์ไปปลายทางแบบที่ไม่มีใครเห็นไฟล์ครึ่ง ๆ กลาง ๆ ที่ปลายทาง
+    // ระบบไฟล์เดียวกัน: rename ครั้งเดียว; ต่างระบบไฟล์: คัดลอกเป็นไฟล์ชั่วคราว (ซ่อน) ในโฟลเดอร์ปลายทางก่อน
+    // แล้ว rename ทับ ถ้าคัดลอกไม่สำเร็จ ไฟล์ชั่วคราวถูกลบและปลายทางไม่ถูกแตะ
+    static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        } catch (AtomicMoveNotSupportedException e) {
+            // ต่างระบบไฟล์ (เช่น tmpfs -> NAS) ทำต่อด้านล่าง
+        }
+        Path tempDir = Files.createTempDirectory(target.toAbsolutePath().getParent(), ConversionTask.WORK_DIR_PREFIX);
+        Path copy = tempDir.resolve(target.getFileName());
+        try {
+            Files.copy(source, copy);
+            Files.move(copy, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(copy);
+            Files.deleteIfExists(tempDir);
+        }
+        Files.delete(source);
+    }
+}
@@ -0,0 +1,17 @@
+package se233.audioconverterapp1.model;
+
+// ลำดับการเริ่มงานที่รอคิว (ลำดับความสำคัญของแถวมาก่อนเสมอ แล้วค่อยเรียงตามนโยบายนี้)
+public enum SchedulingPolicy {
+    FIFO("In order"),                // ตามลำดับในตาราง
+    SHORTEST_FIRST("Shortest first"); // งานที่ประมาณว่าเสร็จเร็วที่สุดก่อน ได้ผลลัพธ์แรก ๆ เร็วขึ้นมาก
+
+    private final String label;
+
+    SchedulingPolicy(String label) {
+        this.label = label;
+    }
+
+    // ข้อความที่แสดงใน ChoiceBox
+    @Override
+    public String toString() { return label; }
+}
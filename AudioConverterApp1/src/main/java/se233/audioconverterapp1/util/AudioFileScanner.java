@@ -0,0 +1,101 @@
+package se233.audioconverterapp1.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+// คลาสค้นไฟล์ทั้งหมดในโฟลเดอร์ (ทุกชั้นย่อย) แบบขนาน: แต่ละโฟลเดอร์ถูกอ่านด้วย Files.walkFileTree
+// ระดับเดียว แล้วโฟลเดอร์ย่อยที่เจอจะถูกส่งไปอ่านต่อบน executor พร้อมกัน
+public class AudioFileScanner {
+    private final ExecutorService executor;
+    private final AtomicInteger pending = new AtomicInteger(1); // นับโฟลเดอร์ที่ยังอ่านไม่เสร็จ (+1 ของผู้เรียก)
+    private final Queue<File> found = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger foundCount = new AtomicInteger();
+    private final IntConsumer onFound;             // แจ้งจำนวนไฟล์ที่เจอแล้ว (เรียกจากหลาย thread)
+
+    private AudioFileScanner(ExecutorService executor, IntConsumer onFound) {
+        this.executor = executor;
+        this.onFound = onFound;
+    }
+
+    // ขยายรายการไฟล์/โฟลเดอร์ที่ผู้ใช้เลือกให้เป็นรายการไฟล์ทั้งหมด (เรียงตาม path) รอจนค้นเสร็จ
+    public static List<File> collectFiles(List<File> roots, ExecutorService executor, IntConsumer onFound) {
+        AudioFileScanner scanner = new AudioFileScanner(executor, onFound);
+        List<File> result = new ArrayList<>();
+        for (File root : roots) {
+            if (root.isDirectory()) scanner.submitDirectory(root.toPath());
+            else if (root.isFile()) result.add(root);
+        }
+        scanner.awaitDirectories(); // รอทุกโฟลเดอร์
+
+        List<File> walked = new ArrayList<>(scanner.found);
+        walked.sort(null); // ผลจากหลาย thread ไม่มีลำดับ จึงเรียงตาม path ให้ตารางอ่านง่าย
+        result.addAll(walked);
+        return result;
+    }
+
+    private void awaitDirectories() {
+        synchronized (pending) {
+            arrive();
+            while (pending.get() > 0) {
+                try {
+                    pending.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void arrive() {
+        if (pending.decrementAndGet() == 0) {
+            synchronized (pending) {
+                pending.notifyAll();
+            }
+        }
+    }
+
+    private void submitDirectory(Path dir) {
+        pending.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                // maxDepth = 1: โฟลเดอร์ย่อยจะมาที่ visitFile แล้วถูกส่งไปอ่านต่อแบบขนาน
+                Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isDirectory()) {
+                            submitDirectory(file);
+                        } else if (attrs.isRegularFile()) {
+                            found.add(file.toFile());
+                            if (onFound != null) onFound.accept(foundCount.incrementAndGet());
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        return FileVisitResult.CONTINUE; // ข้ามไฟล์/โฟลเดอร์ที่อ่านไม่ได้
+                    }
+                });
+            } catch (IOException e) {
+                System.err.println("[AudioFileScanner] Cannot read " + dir + ": " + e.getMessage());
+            } finally {
+                arrive();
+            }
+        });
+    }
+}
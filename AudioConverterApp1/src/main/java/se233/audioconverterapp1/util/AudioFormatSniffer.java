@@ -0,0 +1,71 @@
+package se233.audioconverterapp1.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+// คลาสตรวจชนิดไฟล์เสียงจาก magic bytes ที่หัวไฟล์ แทนการเชื่อนามสกุลไฟล์
+public class AudioFormatSniffer {
+    private static final int HEADER_SIZE = 16;
+
+    // คืนฟอร์แมตที่โปรแกรมรองรับ (mp3, wav, flac, m4a) หรือ null ถ้าไม่ใช่ไฟล์เสียงที่รู้จัก
+    public static String detect(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] header = new byte[HEADER_SIZE];
+            int n = raf.read(header);
+            if (n < 4) return null;
+
+            // ID3v2 tag อยู่หน้าข้อมูลเสียงได้ ให้ข้าม tag แล้วตรวจข้อมูลที่ตามมา
+            if (n >= 10 && header[0] == 'I' && header[1] == 'D' && header[2] == '3') {
+                long tagEnd = 10L + syncSafe(header, 6) + ((header[5] & 0x10) != 0 ? 10 : 0);
+                if (tagEnd >= raf.length()) return "mp3";
+                raf.seek(tagEnd);
+                n = raf.read(header);
+                if (n < 4) return "mp3";
+                String inner = detect(header, n);
+                return inner != null ? inner : "mp3"; // ไฟล์ที่มี ID3 ส่วนใหญ่เป็น mp3
+            }
+            String format = detect(header, n);
+            // MP4 ที่ brand ไม่ได้บอกว่าเป็นเสียง (isom, mp42, 3gp...) ต้องดู track ว่ามีแต่เสียงจริง ไม่ใช่วิดีโอ
+            if (format == null && isMp4(header, n)) return AudioHeaderParser.isAudioOnlyMp4(file) ? "m4a" : null;
+            return format;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // ตรวจจาก byte หัวไฟล์ที่อ่านมาแล้ว (MP4 ที่ brand ไม่ใช่ของไฟล์เสียงคืน null เพราะต้องดู track ก่อน)
+    public static String detect(byte[] h, int n) {
+        if (n >= 4 && h[0] == 'f' && h[1] == 'L' && h[2] == 'a' && h[3] == 'C') return "flac";
+        if (n >= 12 && h[0] == 'R' && h[1] == 'I' && h[2] == 'F' && h[3] == 'F'
+                && h[8] == 'W' && h[9] == 'A' && h[10] == 'V' && h[11] == 'E') return "wav";
+        if (isMp4(h, n) && n >= 12 && isAudioBrand(new String(h, 8, 4, StandardCharsets.US_ASCII))) return "m4a";
+        if (n >= 2 && isMpegFrameSync(h[0], h[1])) return "mp3";
+        return null;
+    }
+
+    // ไฟล์ตระกูล ISO base media (MP4, M4A, MOV, 3GP) ขึ้นต้นด้วย box ftyp
+    static boolean isMp4(byte[] h, int n) {
+        return n >= 8 && h[4] == 'f' && h[5] == 't' && h[6] == 'y' && h[7] == 'p';
+    }
+
+    // major brand ที่ใช้กับไฟล์เสียงล้วน (M4A/M4B หนังสือเสียง/M4P จาก iTunes, F4A/F4B ของ Flash)
+    private static boolean isAudioBrand(String brand) {
+        return switch (brand) {
+            case "M4A ", "M4B ", "M4P ", "F4A ", "F4B " -> true;
+            default -> false;
+        };
+    }
+
+    // MPEG audio frame sync: 11 บิตแรกเป็น 1 และ layer ไม่เป็น 00 (00 คือ AAC ADTS ซึ่งไม่ใช่ mp3)
+    private static boolean isMpegFrameSync(byte b0, byte b1) {
+        return (b0 & 0xFF) == 0xFF && (b1 & 0xE0) == 0xE0 && (b1 & 0x06) != 0 && (b1 & 0x18) != 0x08;
+    }
+
+    // ขนาด tag ของ ID3 เก็บแบบ syncsafe (ใช้ 7 บิตต่อ byte)
+    private static int syncSafe(byte[] b, int offset) {
+        return ((b[offset] & 0x7F) << 21) | ((b[offset + 1] & 0x7F) << 14)
+                | ((b[offset + 2] & 0x7F) << 7) | (b[offset + 3] & 0x7F);
+    }
+}
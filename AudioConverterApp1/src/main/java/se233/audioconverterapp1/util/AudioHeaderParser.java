@@ -0,0 +1,408 @@
+package se233.audioconverterapp1.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// อ่านความยาวและข้อมูลสตรีมจากหัวไฟล์เอง (อ่านแค่ไม่กี่ KB ผ่าน FileChannel) แทนการเริ่ม ffprobe
+//  - WAV: chunk fmt/data (ผ่าน WavHeader)
+//  - FLAC: block STREAMINFO
+//  - MP3: header Xing/Info หรือ VBRI ถ้ามี ไม่อย่างนั้นประมาณจากบิตเรตของ frame แรก (CBR)
+//  - M4A/MP4: box mvhd/mdhd และ stsd/esds ของ track เสียง
+// ค่าที่คืนใช้ชื่อ codec แบบเดียวกับ ffprobe (ConversionMode เทียบได้ตรง ๆ)
+// คืน null เมื่ออ่านไม่ได้หรือไม่แน่ใจ ให้ FFprobeHelper ไปใช้ ffprobe แทน
+public class AudioHeaderParser {
+    private static final int HEAD_SIZE = 4096;   // อ่านส่วนหัวครั้งแรกเท่านี้ (พอสำหรับ frame แรกของ mp3 เกือบทุกไฟล์)
+    private static final int MAX_BOX_DEPTH = 8;
+
+    // MPEG audio: บิตเรต (kbit/s) ของ layer III ตาม bitrate index, แยก MPEG-1 กับ MPEG-2/2.5
+    private static final int[] MP3_BITRATES_V1 = {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320};
+    private static final int[] MP3_BITRATES_V2 = {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160};
+    private static final int[] MP3_SAMPLE_RATES = {44100, 48000, 32000};
+    private static final int[] AAC_SAMPLE_RATES = {96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000,
+            12000, 11025, 8000, 7350};
+
+    public static MediaInfo parse(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer head = read(channel, 0, (int) Math.min(HEAD_SIZE, size));
+            long start = 0;
+            // ID3v2 อยู่หน้า mp3 (และบางครั้งหน้า flac) ได้ ข้ามไปอ่านส่วนที่ตามมา
+            if (head.limit() >= 10 && head.get(0) == 'I' && head.get(1) == 'D' && head.get(2) == '3') {
+                start = 10L + syncSafe(head, 6) + ((head.get(5) & 0x10) != 0 ? 10 : 0);
+                if (start >= size) return null;
+                head = read(channel, start, (int) Math.min(HEAD_SIZE, size - start));
+            }
+            byte[] magic = new byte[Math.min(16, head.limit())];
+            head.get(0, magic);
+            String format = AudioFormatSniffer.detect(magic, magic.length);
+            if (format == null && start > 0) format = "mp3"; // frame แรกอาจอยู่ถัดจาก tag ไปอีกนิด
+            // brand ทั่วไป (isom, mp42, ...) อาจเป็นวิดีโอ mp4() ตรวจ track เองแล้วคืน null ถ้ามีภาพ
+            if (format == null && AudioFormatSniffer.isMp4(magic, magic.length)) format = "m4a";
+            if (format == null) return null;
+            return switch (format) {
+                case "wav" -> start == 0 ? wav(file) : null;
+                case "flac" -> flac(head, size - start);
+                case "mp3" -> mp3(channel, head, start, size);
+                case "m4a" -> start == 0 ? mp4(channel, size) : null;
+                default -> null;
+            };
+        } catch (IOException | RuntimeException e) {
+            return null; // ไฟล์เสียหายหรือโครงสร้างแปลก ให้ ffprobe ตัดสิน
+        }
+    }
+
+    // ---- WAV ----
+    private static MediaInfo wav(File file) {
+        WavHeader header = WavHeader.read(file);
+        if (header == null) return null;
+        long bitrate = (long) header.getSampleRate() * header.getChannels() * header.getBitsPerSample();
+        return new MediaInfo(header.getDurationSeconds(), header.getCodec(), header.getSampleRate(),
+                header.getChannels(), bitrate);
+    }
+
+    // ---- FLAC ----
+    // หลัง "fLaC" คือ metadata block แรก ซึ่งตามสเปกต้องเป็น STREAMINFO (34 byte)
+    private static MediaInfo flac(ByteBuffer head, long streamSize) {
+        if (head.limit() < 8 + 34 || (head.get(4) & 0x7F) != 0) return null;
+        head.order(ByteOrder.BIG_ENDIAN);
+        int p = 8 + 10; // ข้าม block header 4 byte ของ metadata, min/max block size และ min/max frame size
+        long packed = head.getLong(p); // sample rate 20 บิต | channels-1 3 บิต | bits-1 5 บิต | total samples 36 บิต
+        int sampleRate = (int) (packed >>> 44);
+        int channels = (int) ((packed >>> 41) & 0x7) + 1;
+        long totalSamples = packed & 0xFFFFFFFFFL;
+        if (sampleRate <= 0 || totalSamples <= 0) return null; // ไม่รู้จำนวน sample ให้ ffprobe นับเอง
+        double duration = (double) totalSamples / sampleRate;
+        return new MediaInfo(duration, "flac", sampleRate, channels, (long) (streamSize * 8 / duration));
+    }
+
+    // ---- MP3 ----
+    private static MediaInfo mp3(FileChannel channel, ByteBuffer head, long start, long size) throws IOException {
+        // หา frame header ที่ถูกต้องและมี frame ถัดไปต่อกันจริง (กันเจอ byte 0xFF ในข้อมูลอื่น)
+        for (int i = 0; i + 4 <= head.limit(); i++) {
+            Mp3Frame frame = Mp3Frame.at(head, i);
+            if (frame == null) continue;
+            int next = i + frame.length;
+            if (next + 4 <= head.limit()) {
+                Mp3Frame following = Mp3Frame.at(head, next);
+                if (following == null || following.sampleRate != frame.sampleRate) continue;
+            }
+            return mp3Info(channel, head, i, frame, start + i, size);
+        }
+        return null;
+    }
+
+    private static MediaInfo mp3Info(FileChannel channel, ByteBuffer head, int offset, Mp3Frame frame,
+                                     long frameStart, long size) throws IOException {
+        head.order(ByteOrder.BIG_ENDIAN);
+        long frames = -1, bytes = -1;
+        int xing = offset + 4 + frame.sideInfoSize();
+        if (xing + 16 <= head.limit() && (tagAt(head, xing, "Xing") || tagAt(head, xing, "Info"))) {
+            int flags = head.getInt(xing + 4);
+            int p = xing + 8;
+            if ((flags & 1) != 0) { frames = head.getInt(p) & 0xFFFFFFFFL; p += 4; }
+            if ((flags & 2) != 0 && p + 4 <= head.limit()) bytes = head.getInt(p) & 0xFFFFFFFFL;
+        } else if (offset + 36 + 18 <= head.limit() && tagAt(head, offset + 36, "VBRI")) {
+            bytes = head.getInt(offset + 36 + 10) & 0xFFFFFFFFL;
+            frames = head.getInt(offset + 36 + 14) & 0xFFFFFFFFL;
+        }
+
+        long audioBytes = size - frameStart;
+        if (size >= 128 && tagAt(read(channel, size - 128, 3), 0, "TAG")) audioBytes -= 128; // ID3v1 ท้ายไฟล์
+        if (bytes <= 0) bytes = audioBytes;
+
+        double duration;
+        long bitrate;
+        if (frames > 0) { // VBR (หรือ CBR ที่มี Info): จำนวน frame แน่นอน
+            duration = (double) frames * frame.samplesPerFrame / frame.sampleRate;
+            bitrate = (long) (bytes * 8 / duration);
+        } else {          // CBR: ทุก frame บิตเรตเท่ากัน ความยาวคำนวณจากขนาดได้เลย
+            bitrate = frame.bitrate;
+            duration = audioBytes * 8.0 / bitrate;
+        }
+        if (duration <= 0) return null;
+        return new MediaInfo(duration, "mp3", frame.sampleRate, frame.channels, bitrate);
+    }
+
+    // frame header ของ MPEG audio layer III (4 byte)
+    private static final class Mp3Frame {
+        final boolean mpeg1;
+        final int bitrate;        // bit/s
+        final int sampleRate;
+        final int channels;
+        final int samplesPerFrame;
+        final int length;         // byte รวม header
+
+        private Mp3Frame(boolean mpeg1, int bitrate, int sampleRate, int channels, int length) {
+            this.mpeg1 = mpeg1;
+            this.bitrate = bitrate;
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.samplesPerFrame = mpeg1 ? 1152 : 576;
+            this.length = length;
+        }
+
+        static Mp3Frame at(ByteBuffer buf, int i) {
+            int b1 = buf.get(i) & 0xFF, b2 = buf.get(i + 1) & 0xFF, b3 = buf.get(i + 2) & 0xFF, b4 = buf.get(i + 3) & 0xFF;
+            if (b1 != 0xFF || (b2 & 0xE0) != 0xE0) return null;
+            int version = (b2 >> 3) & 0x3;          // 3 = MPEG-1, 2 = MPEG-2, 0 = MPEG-2.5, 1 = ไม่ใช้
+            int layer = (b2 >> 1) & 0x3;            // 1 = layer III
+            int bitrateIndex = b3 >> 4;
+            int rateIndex = (b3 >> 2) & 0x3;
+            if (version == 1 || layer != 1 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) return null;
+            boolean mpeg1 = version == 3;
+            int kbps = (mpeg1 ? MP3_BITRATES_V1 : MP3_BITRATES_V2)[bitrateIndex];
+            int sampleRate = MP3_SAMPLE_RATES[rateIndex] >> (mpeg1 ? 0 : version == 2 ? 1 : 2);
+            int padding = (b3 >> 1) & 0x1;
+            int channels = (b4 >> 6) == 3 ? 1 : 2;
+            int length = (mpeg1 ? 144 : 72) * kbps * 1000 / sampleRate + padding;
+            return new Mp3Frame(mpeg1, kbps * 1000, sampleRate, channels, length);
+        }
+
+        // ขนาด side information ที่อยู่ระหว่าง header กับ tag Xing/Info
+        int sideInfoSize() {
+            if (mpeg1) return channels == 1 ? 17 : 32;
+            return channels == 1 ? 9 : 17;
+        }
+    }
+
+    // ---- MP4 / M4A ----
+    // true ถ้าไฟล์ MP4 มี track เสียงและไม่มี track ภาพเลย (ใช้ตัดสินไฟล์ที่ brand ไม่ได้บอกว่าเป็นเสียง)
+    static boolean isAudioOnlyMp4(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long p = 0; p + 8 <= size; ) {
+                long[] box = boxAt(channel, p, size);
+                if (box == null) return false;
+                if (fourCC((int) box[1]).equals("moov")) return audioOnly(channel, p + box[2], p + box[0]);
+                p += box[0];
+            }
+            return false;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static boolean audioOnly(FileChannel channel, long moov, long moovEnd) throws IOException {
+        boolean sound = false;
+        for (long p = moov; p + 8 <= moovEnd; ) {
+            long[] box = boxAt(channel, p, moovEnd);
+            if (box == null) return false;
+            if (fourCC((int) box[1]).equals("trak")) {
+                Mp4Track track = track(channel, p + box[2], p + box[0]);
+                if (track.isVideo()) return false;
+                sound |= track.isSound();
+            }
+            p += box[0];
+        }
+        return sound;
+    }
+
+    // เดินตาม box: moov -> trak (ที่ hdlr เป็น "soun") -> mdia -> mdhd และ minf/stbl/stsd
+    // อ่านเฉพาะหัวของแต่ละ box จึงใช้ได้แม้ moov อยู่ท้ายไฟล์; ไฟล์ที่มี track ภาพคืน null ให้ ffprobe ตัดสิน
+    private static MediaInfo mp4(FileChannel channel, long size) throws IOException {
+        long moov = -1, moovEnd = -1, mdatSize = 0;
+        for (long p = 0; p + 8 <= size; ) {
+            long[] box = boxAt(channel, p, size);
+            if (box == null) return null;
+            String type = fourCC((int) box[1]);
+            if (type.equals("moov")) { moov = p + box[2]; moovEnd = p + box[0]; }
+            else if (type.equals("mdat")) mdatSize += box[0] - box[2];
+            p += box[0];
+        }
+        if (moov < 0) return null;
+
+        double movieDuration = -1;
+        Mp4Track sound = null;
+        for (long p = moov; p + 8 <= moovEnd; ) {
+            long[] box = boxAt(channel, p, moovEnd);
+            if (box == null) return null;
+            String type = fourCC((int) box[1]);
+            if (type.equals("mvhd")) movieDuration = mediaHeaderDuration(channel, p + box[2]);
+            else if (type.equals("trak")) {
+                Mp4Track track = track(channel, p + box[2], p + box[0]);
+                if (track.isVideo()) return null;
+                if (sound == null && track.isSound()) sound = track;
+            }
+            p += box[0];
+        }
+        if (sound == null || sound.codec == null) return null;
+        double duration = sound.duration > 0 ? sound.duration : movieDuration;
+        if (duration <= 0) return null;
+        long bitrate = sound.avgBitrate > 0 ? sound.avgBitrate : (long) (mdatSize * 8 / duration);
+        return new MediaInfo(duration, sound.codec, sound.sampleRate, sound.channels, bitrate);
+    }
+
+    private static final class Mp4Track {
+        double duration = -1;
+        String codec;
+        int sampleRate = -1;
+        int channels = -1;
+        long avgBitrate = -1;
+        String handler; // hdlr: "soun" เสียง, "vide" ภาพ, "text" chapter ฯลฯ
+
+        boolean isSound() { return "soun".equals(handler); }
+        boolean isVideo() { return "vide".equals(handler); }
+    }
+
+    private static Mp4Track track(FileChannel channel, long from, long to) throws IOException {
+        Mp4Track track = new Mp4Track();
+        walk(channel, from, to, track, 0);
+        return track;
+    }
+
+    // เดินลง box ที่เป็นภาชนะ (mdia, minf, stbl) แล้วเก็บค่าจาก box ที่ต้องการ
+    private static void walk(FileChannel channel, long from, long to, Mp4Track track, int depth) throws IOException {
+        if (depth > MAX_BOX_DEPTH) return;
+        for (long p = from; p + 8 <= to; ) {
+            long[] box = boxAt(channel, p, to);
+            if (box == null) return;
+            long body = p + box[2];
+            switch (fourCC((int) box[1])) {
+                case "mdia", "minf", "stbl" -> walk(channel, body, p + box[0], track, depth + 1);
+                case "hdlr" -> {
+                    ByteBuffer b = read(channel, body + 8, 4);
+                    if (b.limit() == 4) track.handler = fourCC(b.getInt(0));
+                }
+                case "mdhd" -> track.duration = mediaHeaderDuration(channel, body);
+                case "stsd" -> sampleEntry(channel, body, p + box[0], track);
+                default -> { }
+            }
+            p += box[0];
+        }
+    }
+
+    // mvhd/mdhd: version 0 ใช้ค่า 32 บิต, version 1 ใช้ 64 บิต (timescale อยู่หลังเวลาสร้าง/แก้ไข)
+    private static double mediaHeaderDuration(FileChannel channel, long body) throws IOException {
+        ByteBuffer b = read(channel, body, 32);
+        if (b.limit() < 24) return -1;
+        long timescale, duration;
+        if (b.get(0) == 1) {
+            if (b.limit() < 32) return -1;
+            timescale = b.getInt(20) & 0xFFFFFFFFL;
+            duration = b.getLong(24);
+        } else {
+            timescale = b.getInt(12) & 0xFFFFFFFFL;
+            duration = b.getInt(16) & 0xFFFFFFFFL;
+        }
+        return timescale > 0 && duration > 0 && duration != 0xFFFFFFFFL ? (double) duration / timescale : -1;
+    }
+
+    // stsd: sample entry แรกบอก codec, จำนวนช่อง และ sample rate (mp4a มี esds บอกรายละเอียดต่อ)
+    private static void sampleEntry(FileChannel channel, long body, long end, Mp4Track track) throws IOException {
+        long entry = body + 8; // ข้าม version/flags และ entry_count
+        long[] box = boxAt(channel, entry, end);
+        if (box == null) return;
+        ByteBuffer b = read(channel, entry + box[2], 28);
+        if (b.limit() < 28) return;
+        track.channels = b.getShort(16) & 0xFFFF;
+        track.sampleRate = (b.getInt(24) >>> 16);           // ค่า 16.16 fixed point
+        // sound description แบบ QuickTime version 1/2 มีฟิลด์เพิ่มก่อน box ลูก
+        int version = b.getShort(8);
+        long children = entry + box[2] + 28 + (version == 1 ? 16 : version == 2 ? 36 : 0);
+        switch (fourCC((int) box[1])) {
+            case "alac" -> track.codec = "alac";
+            case "mp4a" -> esds(channel, children, entry + box[0], track);
+            default -> { }
+        }
+    }
+
+    private static void esds(FileChannel channel, long from, long to, Mp4Track track) throws IOException {
+        for (long p = from; p + 8 <= to; ) {
+            long[] box = boxAt(channel, p, to);
+            if (box == null) return;
+            if (fourCC((int) box[1]).equals("esds")) {
+                int length = (int) Math.min(box[0] - box[2], 256);
+                decoderConfig(read(channel, p + box[2] + 4, length - 4), track); // ข้าม version/flags
+                return;
+            }
+            p += box[0];
+        }
+    }
+
+    // ES_Descriptor (0x03) -> DecoderConfigDescriptor (0x04) -> DecoderSpecificInfo (0x05, AudioSpecificConfig)
+    private static void decoderConfig(ByteBuffer b, Mp4Track track) {
+        int p = 0;
+        while (p + 2 <= b.limit()) {
+            int tag = b.get(p++) & 0xFF;
+            int length = 0;
+            for (int i = 0; i < 4 && p < b.limit(); i++) { // ความยาวแบบ 7 บิตต่อ byte
+                int v = b.get(p++) & 0xFF;
+                length = (length << 7) | (v & 0x7F);
+                if ((v & 0x80) == 0) break;
+            }
+            if (tag == 0x03) {
+                int flags = b.get(p + 2) & 0xFF;
+                p += 3;
+                if ((flags & 0x80) != 0) p += 2;                           // streamDependenceFlag
+                if ((flags & 0x40) != 0) p += 1 + (b.get(p) & 0xFF);       // URL_Flag
+                if ((flags & 0x20) != 0) p += 2;                           // OCRstreamFlag
+            } else if (tag == 0x04) {
+                if (p + 13 > b.limit()) return;
+                int objectType = b.get(p) & 0xFF;
+                track.codec = objectType == 0x40 || objectType == 0x66 || objectType == 0x67 || objectType == 0x68
+                        ? "aac" : objectType == 0x69 || objectType == 0x6B ? "mp3" : null;
+                track.avgBitrate = b.getInt(p + 9) & 0xFFFFFFFFL;
+                p += 13;
+            } else if (tag == 0x05) {
+                if (p + 2 > b.limit()) return;
+                int config = ((b.get(p) & 0xFF) << 8) | (b.get(p + 1) & 0xFF);
+                int rateIndex = (config >> 7) & 0xF;
+                int channelConfig = (config >> 3) & 0xF;
+                if (rateIndex < AAC_SAMPLE_RATES.length) track.sampleRate = AAC_SAMPLE_RATES[rateIndex];
+                if (channelConfig > 0 && channelConfig < 7) track.channels = channelConfig;
+                return;
+            } else {
+                p += length;
+            }
+        }
+    }
+
+    // หัวของ box ที่ position: คืน {ขนาดทั้งหมด, ชนิด, ขนาดหัว} หรือ null ถ้าขนาดผิดปกติ
+    private static long[] boxAt(FileChannel channel, long position, long limit) throws IOException {
+        ByteBuffer b = read(channel, position, 16);
+        if (b.limit() < 8) return null;
+        long size = b.getInt(0) & 0xFFFFFFFFL;
+        int type = b.getInt(4);
+        int header = 8;
+        if (size == 1) {                     // ขนาด 64 บิตอยู่ต่อจากชนิด
+            if (b.limit() < 16) return null;
+            size = b.getLong(8);
+            header = 16;
+        } else if (size == 0) {              // box สุดท้าย ยาวถึงท้ายไฟล์
+            size = limit - position;
+        }
+        if (size < header || position + size > limit) return null;
+        return new long[]{size, type, header};
+    }
+
+    // ---- helpers ----
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(Math.max(0, length)).order(ByteOrder.BIG_ENDIAN);
+        while (b.hasRemaining()) {
+            if (channel.read(b, position + b.position()) < 0) break;
+        }
+        return b.flip();
+    }
+
+    private static boolean tagAt(ByteBuffer b, int i, String tag) {
+        if (i + tag.length() > b.limit()) return false;
+        for (int k = 0; k < tag.length(); k++) {
+            if (b.get(i + k) != tag.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    private static String fourCC(int value) {
+        return new String(new char[]{(char) (value >>> 24), (char) ((value >> 16) & 0xFF), (char) ((value >> 8) & 0xFF),
+                (char) (value & 0xFF)});
+    }
+
+    private static int syncSafe(ByteBuffer b, int offset) {
+        return ((b.get(offset) & 0x7F) << 21) | ((b.get(offset + 1) & 0x7F) << 14)
+                | ((b.get(offset + 2) & 0x7F) << 7) | (b.get(offset + 3) & 0x7F);
+    }
+}
@@ -0,0 +1,158 @@
+package se233.audioconverterapp1.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+// คลาสเก็บผลการตรวจสอบความสามารถของไฟล์ ffmpeg หนึ่งตัว (รันตรวจครั้งเดียวแล้วเก็บไว้ใช้ซ้ำ)
+public class FFmpegCapabilities {
+    private final String ffmpegPath;      // path ที่ผู้ใช้ตั้งไว้
+    private final File resolvedBinary;    // ไฟล์ ffmpeg จริงที่หาเจอ (null ถ้าหาไม่เจอ)
+    private final long binaryModified;    // เวลาแก้ไขไฟล์ ffmpeg ตอนที่ตรวจ ใช้เช็คว่าต้องตรวจใหม่ไหม
+    private final boolean available;      // ffmpeg -version รันผ่านหรือไม่
+    private final String version;         // เวอร์ชันของ ffmpeg เช่น "6.1.1"
+    private final Set<String> encoders;   // encoder เสียงที่ใช้ได้ เช่น libmp3lame, aac, flac
+    private final Set<String> muxers;     // muxer ที่ใช้ได้ เช่น mp3, ipod, flac, wav
+    private final String ffprobePath;     // path ของ ffprobe ที่คู่กับ ffmpeg ตัวนี้ (null ถ้าไม่มี)
+
+    private FFmpegCapabilities(String ffmpegPath, File resolvedBinary, long binaryModified, boolean available,
+                               String version, Set<String> encoders, Set<String> muxers, String ffprobePath) {
+        this.ffmpegPath = ffmpegPath;
+        this.resolvedBinary = resolvedBinary;
+        this.binaryModified = binaryModified;
+        this.available = available;
+        this.version = version;
+        this.encoders = Collections.unmodifiableSet(encoders);
+        this.muxers = Collections.unmodifiableSet(muxers);
+        this.ffprobePath = ffprobePath;
+    }
+
+    public String getFFmpegPath() { return ffmpegPath; }
+    public boolean isAvailable() { return available; }
+    public String getVersion() { return version; }
+    public Set<String> getEncoders() { return encoders; }
+    public Set<String> getMuxers() { return muxers; }
+    public String getFFprobePath() { return ffprobePath; }
+
+    public boolean hasEncoder(String name) { return encoders.contains(name); }
+    public boolean hasMuxer(String name) { return muxers.contains(name); }
+
+    // ผลนี้ยังใช้ได้ไหม (path เดิม และไฟล์ ffmpeg ไม่ถูกแทนที่)
+    boolean isValidFor(String path) {
+        if (!ffmpegPath.equals(path)) return false;
+        File binary = resolveExecutable(path);
+        if (binary == null || resolvedBinary == null) return binary == resolvedBinary;
+        return binary.equals(resolvedBinary) && binary.lastModified() == binaryModified;
+    }
+
+    // ตรวจสอบ ffmpeg ที่ path ที่กำหนด: เวอร์ชัน, encoder, muxer และหา ffprobe ที่คู่กัน
+    static FFmpegCapabilities probe(String ffmpegPath) {
+        File binary = resolveExecutable(ffmpegPath);
+        long modified = binary != null ? binary.lastModified() : 0L;
+
+        String versionLine = firstLine(ffmpegPath, "-hide_banner", "-version");
+        if (versionLine == null) {
+            return new FFmpegCapabilities(ffmpegPath, binary, modified, false, null,
+                    new HashSet<>(), new HashSet<>(), null);
+        }
+
+        // บรรทัดแรกมีรูปแบบ "ffmpeg version 6.1.1 Copyright ..."
+        String version = versionLine;
+        String[] words = versionLine.split("\\s+");
+        if (words.length >= 3 && words[1].equals("version")) version = words[2];
+
+        Set<String> encoders = listNames(ffmpegPath, "-encoders", 'A');
+        Set<String> muxers = listNames(ffmpegPath, "-muxers", 'E');
+        return new FFmpegCapabilities(ffmpegPath, binary, modified, true, version, encoders, muxers,
+                locateFFprobe(ffmpegPath, binary));
+    }
+
+    // หา ffprobe ในโฟลเดอร์เดียวกับ ffmpeg (ใช้นามสกุล .exe เฉพาะถ้า ffmpeg เป็น .exe) ถ้าไม่มีค่อยหาใน PATH
+    private static String locateFFprobe(String ffmpegPath, File ffmpegBinary) {
+        if (ffmpegBinary != null) {
+            String suffix = ffmpegBinary.getName().toLowerCase().endsWith(".exe") ? ".exe" : "";
+            File sibling = new File(ffmpegBinary.getParentFile(), "ffprobe" + suffix);
+            if (sibling.canExecute()) return sibling.getAbsolutePath();
+        }
+        File onPath = resolveExecutable("ffprobe");
+        if (onPath != null) return onPath.getAbsolutePath();
+        return firstLine("ffprobe", "-hide_banner", "-version") != null ? "ffprobe" : null;
+    }
+
+    // แปลงชื่อคำสั่ง (เช่น "ffmpeg") หรือ path ให้เป็นไฟล์จริง โดยค้นใน PATH ถ้าไม่ได้ระบุโฟลเดอร์
+    static File resolveExecutable(String command) {
+        if (command == null || command.isBlank()) return null;
+        File direct = new File(command);
+        if (direct.isAbsolute() || command.contains(File.separator) || command.contains("/")) {
+            return direct.isFile() ? direct.getAbsoluteFile() : null;
+        }
+        String pathEnv = System.getenv("PATH");
+        if (pathEnv == null) return null;
+        boolean windows = System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+        for (String dir : pathEnv.split(File.pathSeparator)) {
+            if (dir.isEmpty()) continue;
+            File candidate = new File(dir, command);
+            if (candidate.isFile() && candidate.canExecute()) return candidate.getAbsoluteFile();
+            if (windows) {
+                File exe = new File(dir, command + ".exe");
+                if (exe.isFile()) return exe.getAbsoluteFile();
+            }
+        }
+        return null;
+    }
+
+    // รันคำสั่งแล้วคืนบรรทัดแรกของผลลัพธ์ (null ถ้ารันไม่ได้หรือ exit code ไม่เป็น 0)
+    private static String firstLine(String... command) {
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            String first;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                first = reader.readLine();
+                while (reader.readLine() != null) {
+                    // อ่านให้หมดเพื่อไม่ให้ process ค้าง
+                }
+            }
+            return process.waitFor() == 0 ? first : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // อ่านรายการจาก "ffmpeg -encoders" หรือ "-muxers"
+    // แต่ละบรรทัดมีรูปแบบ " A....D libmp3lame  ..." หรือ "  E mp3  ..." (คอลัมน์แรกเป็น flag)
+    private static Set<String> listNames(String ffmpegPath, String option, char requiredFlag) {
+        Set<String> names = new HashSet<>();
+        try {
+            Process process = new ProcessBuilder(ffmpegPath, "-hide_banner", option)
+                    .redirectErrorStream(true).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                boolean inList = false;
+                while ((line = reader.readLine()) != null) {
+                    String trimmed = line.trim();
+                    if (trimmed.startsWith("--")) { // เส้นคั่นระหว่างคำอธิบายกับรายการ
+                        inList = true;
+                        continue;
+                    }
+                    if (!inList || trimmed.isEmpty()) continue;
+                    String[] cols = trimmed.split("\\s+", 3);
+                    if (cols.length < 2 || cols[0].indexOf(requiredFlag) < 0) continue;
+                    // muxer บางตัวมีหลายชื่อคั่นด้วย comma เช่น "mov,mp4,m4a,3gp"
+                    for (String name : cols[1].split(",")) names.add(name);
+                }
+            }
+            process.waitFor();
+        } catch (Exception ignored) {
+        }
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return "FFmpegCapabilities{path=" + ffmpegPath + ", available=" + available + ", version=" + version
+                + ", encoders=" + encoders.size() + ", muxers=" + muxers.size() + ", ffprobe=" + ffprobePath + "}";
+    }
+}
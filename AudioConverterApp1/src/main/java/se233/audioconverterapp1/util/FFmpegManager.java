@@ -9,24 +9,47 @@ public class FFmpegManager {
     // ตัวแปร Preferences สำหรับเก็บค่าของ FFmpegManager
     private static final Preferences prefs = Preferences.userNodeForPackage(FFmpegManager.class);
 
+    // System property สำหรับระบุ ffmpeg ชั่วคราวโดยไม่บันทึกลง Preferences (ใช้ในโหมด headless)
+    public static final String OVERRIDE_PROPERTY = "audioconverter.ffmpeg";
+
     // เมธอดสำหรับดึง path ของ FFmpeg จาก Preferences (หรือคืนค่า default "ffmpeg" หากยังไม่ได้ตั้ง)
     public static String getFFmpegPath(){
+        String override = System.getProperty(OVERRIDE_PROPERTY);
+        if (override != null && !override.isBlank()) return override;
         return prefs.get(PREF_KEY, "ffmpeg");
     }
 
+    // ผลตรวจสอบความสามารถของ ffmpeg ล่าสุด (ตรวจครั้งเดียว ใช้ซ้ำจนกว่า path หรือไฟล์ ffmpeg จะเปลี่ยน)
+    private static volatile FFmpegCapabilities capabilities;
+
     // เมธอดสำหรับบันทึก path ของ FFmpeg ลง Preferences
     public static void setFFmpegPath(String path) {
         prefs.put(PREF_KEY, path);
+        capabilities = null; // path เปลี่ยน ต้องตรวจใหม่
     }
 
-    // เมธอดตรวจสอบความพร้อมใช้งานของ FFmpeg โดยการรันคำสั่ง ffmpeg -version
-    public static boolean isFFmpegAvailable(){
-        try {
-            Process process = new ProcessBuilder(getFFmpegPath(), "-version").start();
-            int exitCode = process.waitFor();
-            return exitCode == 0; // ถ้าออกปกติ แสดงว่า FFmpeg ใช้งานได้
-        } catch (Exception e) {
-            return false; // ถ้าเกิดข้อผิดพลาดหรือหา FFmpeg ไม่เจอ จะคืนค่า false
+    // เมธอดดึงผลตรวจสอบ ffmpeg (รัน ffmpeg จริงเฉพาะครั้งแรก หรือเมื่อ path/ไฟล์เปลี่ยน)
+    public static FFmpegCapabilities getCapabilities() {
+        String path = getFFmpegPath();
+        FFmpegCapabilities current = capabilities;
+        if (current != null && current.isValidFor(path)) return current;
+        synchronized (FFmpegManager.class) {
+            current = capabilities;
+            if (current == null || !current.isValidFor(path)) {
+                current = FFmpegCapabilities.probe(path);
+                capabilities = current;
+            }
+            return current;
         }
     }
+
+    // เมธอดตรวจสอบความพร้อมใช้งานของ FFmpeg (ใช้ผลที่แคชไว้ ไม่รัน ffmpeg ซ้ำทุกครั้ง)
+    public static boolean isFFmpegAvailable(){
+        return getCapabilities().isAvailable();
+    }
+
+    // เมธอดดึง path ของ ffprobe ที่คู่กับ ffmpeg ที่ตั้งไว้ (null ถ้าหาไม่เจอ)
+    public static String getFFprobePath() {
+        return getCapabilities().getFFprobePath();
+    }
 }
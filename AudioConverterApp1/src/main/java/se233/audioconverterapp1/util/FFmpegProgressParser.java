@@ -0,0 +1,173 @@
+package se233.audioconverterapp1.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// ตัวอ่านข้อมูล progress ของ ffmpeg (จากออปชัน -progress) ซึ่งส่งมาเป็นบรรทัด key=value
+// และจบแต่ละชุดด้วยบรรทัด progress=continue หรือ progress=end
+// อ่านระดับ byte ด้วย buffer ที่จองไว้ครั้งเดียว จึงไม่สร้าง String/object ใหม่ทุกครั้งที่อัปเดต
+public class FFmpegProgressParser {
+
+    // รับแจ้งเมื่ออ่านข้อมูลครบหนึ่งชุด คืนค่า false เพื่อหยุดอ่าน (เช่นเมื่อถูกยกเลิก)
+    public interface Listener {
+        boolean onProgress(FFmpegProgressParser progress);
+    }
+
+    private static final byte[] KEY_OUT_TIME_US = "out_time_us".getBytes();
+    private static final byte[] KEY_OUT_TIME_MS = "out_time_ms".getBytes(); // ffmpeg รุ่นเก่า (ค่าจริงเป็นไมโครวินาที)
+    private static final byte[] KEY_TOTAL_SIZE = "total_size".getBytes();
+    private static final byte[] KEY_SPEED = "speed".getBytes();
+    private static final byte[] KEY_PROGRESS = "progress".getBytes();
+    private static final byte[] VALUE_END = "end".getBytes();
+    private static final byte[] VALUE_NA = "N/A".getBytes();
+
+    private final byte[] readBuffer = new byte[8192]; // buffer สำหรับอ่านจาก stream
+    private final byte[] line = new byte[256];        // บรรทัดปัจจุบัน (บรรทัด progress สั้นกว่านี้เสมอ)
+    private int lineLength = 0;
+    private boolean lineOverflow = false;             // บรรทัดยาวเกิน buffer ให้ข้ามทั้งบรรทัด
+
+    private long outTimeUs = -1;   // ตำแหน่งเวลาที่เขียนออกไปแล้ว (ไมโครวินาที)
+    private long totalSize = -1;   // ขนาดไฟล์ผลลัพธ์ที่เขียนแล้ว (byte)
+    private double speed = -1;     // ความเร็วเทียบกับเวลาจริง เช่น 25.3 = เร็วกว่าเวลาจริง 25 เท่า
+    private boolean ended = false; // ffmpeg แจ้ง progress=end แล้ว
+    private long updates = 0;      // จำนวนชุดที่อ่านได้
+    private long malformed = 0;    // จำนวนบรรทัดที่อ่านค่าไม่ได้
+
+    private Listener listener;
+
+    // อ่าน stream จนจบ (หรือจน listener คืน false) และแจ้ง listener ทุกครั้งที่ครบหนึ่งชุด
+    public void parse(InputStream in, Listener listener) throws IOException {
+        this.listener = listener;
+        int n;
+        while ((n = in.read(readBuffer)) != -1) {
+            if (!feed(readBuffer, 0, n)) return;
+        }
+    }
+
+    // ป้อนข้อมูลดิบเข้า parser (ใช้ได้ทั้งจาก stream และจากข้อมูลในหน่วยความจำ) คืน false ถ้า listener ขอหยุด
+    public boolean feed(byte[] data, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = data[i];
+            if (b == '\n') {
+                boolean keepGoing = lineOverflow || processLine();
+                lineLength = 0;
+                lineOverflow = false;
+                if (!keepGoing) return false;
+            } else if (b != '\r') {
+                if (lineLength < line.length) line[lineLength++] = b;
+                else lineOverflow = true;
+            }
+        }
+        return true;
+    }
+
+    public void setListener(Listener listener) { this.listener = listener; }
+
+    public long getOutTimeUs() { return outTimeUs; }
+    public double getOutTimeSeconds() { return outTimeUs < 0 ? 0.0 : outTimeUs / 1_000_000.0; }
+    public long getTotalSize() { return totalSize; }
+    public double getSpeed() { return speed; }
+    public boolean isEnded() { return ended; }
+    public long getUpdateCount() { return updates; }
+    public long getMalformedCount() { return malformed; }
+
+    // แยก key กับ value ของบรรทัดปัจจุบันแล้วเก็บค่าที่สนใจ
+    private boolean processLine() {
+        int eq = -1;
+        for (int i = 0; i < lineLength; i++) {
+            if (line[i] == '=') { eq = i; break; }
+        }
+        if (eq <= 0) return true;
+        int valueStart = eq + 1;
+
+        if (keyEquals(KEY_OUT_TIME_US, eq) || keyEquals(KEY_OUT_TIME_MS, eq)) {
+            long v = parseLong(valueStart, lineLength);
+            if (v != Long.MIN_VALUE) outTimeUs = v;
+        } else if (keyEquals(KEY_TOTAL_SIZE, eq)) {
+            long v = parseLong(valueStart, lineLength);
+            if (v != Long.MIN_VALUE) totalSize = v;
+        } else if (keyEquals(KEY_SPEED, eq)) {
+            double v = parseSpeed(valueStart, lineLength);
+            if (!Double.isNaN(v)) speed = v;
+        } else if (keyEquals(KEY_PROGRESS, eq)) {
+            ended = valueEquals(VALUE_END, valueStart);
+            updates++;
+            return listener == null || listener.onProgress(this);
+        }
+        return true;
+    }
+
+    private boolean keyEquals(byte[] key, int keyLength) {
+        if (key.length != keyLength) return false;
+        for (int i = 0; i < keyLength; i++) {
+            if (line[i] != key[i]) return false;
+        }
+        return true;
+    }
+
+    private boolean valueEquals(byte[] value, int start) {
+        if (lineLength - start != value.length) return false;
+        for (int i = 0; i < value.length; i++) {
+            if (line[start + i] != value[i]) return false;
+        }
+        return true;
+    }
+
+    // อ่านเลขจำนวนเต็ม (รองรับเครื่องหมายลบ) คืน Long.MIN_VALUE ถ้าเป็น N/A หรืออ่านไม่ได้
+    private long parseLong(int start, int end) {
+        if (valueEquals(VALUE_NA, start)) return Long.MIN_VALUE; // ค่าปกติของ ffmpeg ช่วงเริ่มต้น
+        boolean negative = start < end && line[start] == '-';
+        int i = negative ? start + 1 : start;
+        if (i >= end) {
+            malformed++;
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int d = line[i] - '0';
+            if (d < 0 || d > 9) {
+                malformed++;
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + d;
+        }
+        return negative ? -value : value;
+    }
+
+    // อ่านค่า speed รูปแบบ "1.23x" (อาจมีช่องว่างนำหน้า) คืน NaN ถ้าเป็น N/A
+    private double parseSpeed(int start, int end) {
+        while (start < end && line[start] == ' ') start++;
+        if (valueEquals(VALUE_NA, start)) return Double.NaN;
+        if (end > start && line[end - 1] == 'x') end--;
+        if (start >= end) {
+            malformed++;
+            return Double.NaN;
+        }
+        long whole = 0;
+        long fraction = 0;
+        long scale = 1;
+        boolean inFraction = false;
+        for (int i = start; i < end; i++) {
+            byte b = line[i];
+            if (b == '.' && !inFraction) {
+                inFraction = true;
+                continue;
+            }
+            int d = b - '0';
+            if (d < 0 || d > 9) {
+                malformed++;
+                return Double.NaN;
+            }
+            if (inFraction) {
+                if (scale < 1_000_000_000L) {
+                    fraction = fraction * 10 + d;
+                    scale *= 10;
+                }
+            } else {
+                whole = whole * 10 + d;
+            }
+        }
+        return whole + (double) fraction / scale;
+    }
+}
@@ -4,50 +4,132 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
 
-// คลาสนี้ใช้ช่วยดึงข้อมูลระยะเวลา (duration) ของไฟล์เสียง/วีดีโอโดยใช้โปรแกรม ffprobe
+// คลาสนี้ใช้ช่วยดึงข้อมูลระยะเวลา (duration) ของไฟล์เสียง/วีดีโอ
+// อ่านจากหัวไฟล์เองก่อน (AudioHeaderParser) ใช้โปรแกรม ffprobe เฉพาะไฟล์ที่อ่านเองไม่ได้
 public class FFprobeHelper {
 
+    // แคชผล probe ลงดิสก์ ไฟล์ที่ไม่เปลี่ยนจะไม่ต้องรัน ffprobe ซ้ำ
+    private static final FileMetadataCache<MediaInfo> probeCache =
+            new FileMetadataCache<>("probe-cache.tsv", new FileMetadataCache.Codec<>() {
+                @Override
+                public String[] encode(MediaInfo info) {
+                    return new String[] {
+                            Double.toString(info.getDurationSeconds()),
+                            info.getCodec(),
+                            Integer.toString(info.getSampleRate()),
+                            Integer.toString(info.getChannels()),
+                            Long.toString(info.getBitrate())
+                    };
+                }
+
+                @Override
+                public MediaInfo decode(String[] fields) {
+                    return new MediaInfo(Double.parseDouble(fields[0]),
+                            fields[1].isEmpty() ? null : fields[1],
+                            Integer.parseInt(fields[2]),
+                            Integer.parseInt(fields[3]),
+                            Long.parseLong(fields[4]));
+                }
+            });
+
     // เมธอดอ่านความยาวไฟล์ (หน่วยวินาที) ถ้าหาไม่เจอจะคืนค่า -1
     public static double getDurationSeconds(File file) {
-        try {
-            String ffmpegPath = FFmpegManager.getFFmpegPath(); // ดึง path ของ ffmpeg
-            if (ffmpegPath == null || file == null || !file.exists()) return -1;
+        MediaInfo info = probe(file);
+        return info != null ? info.getDurationSeconds() : -1;
+    }
+
+    // เมธอดอ่านข้อมูลสตรีมเสียง (ใช้แคชก่อน, แล้วอ่านหัวไฟล์เอง, สุดท้ายค่อยรัน ffprobe) คืน null ถ้าอ่านไม่ได้
+    public static MediaInfo probe(File file) {
+        if (file == null || !file.exists()) return null;
+
+        MediaInfo cached = probeCache.get(file);
+        if (cached != null) return cached;
 
-            // หา ffprobe.exe ในโฟลเดอร์เดียวกับ ffmpeg
-            File ffmpegFile = new File(ffmpegPath);
-            File ffprobeFile = new File(ffmpegFile.getParent(), "ffprobe.exe");
+        // WAV/FLAC/MP3/M4A อ่านได้ในไม่กี่ไมโครวินาที (ไม่เก็บลงแคช เพราะอ่านใหม่ก็เร็วพอกัน)
+        MediaInfo parsed = AudioHeaderParser.parse(file);
+        if (parsed != null && parsed.getDurationSeconds() > 0) return parsed;
 
-            if (!ffprobeFile.exists()) {
-                System.err.println("[FFprobeHelper] ffprobe.exe not found in same folder as ffmpeg.");
-                return -1; // ถ้าไม่เจอ ffprobe ให้หยุด
+        MediaInfo info = runFFprobe(file);
+        if (info != null && info.getDurationSeconds() > 0) {
+            probeCache.put(file, info); // เก็บเฉพาะผลที่อ่านได้จริง
+        }
+        return info;
+    }
+
+    // เหมือน probe แต่ไม่รัน ffprobe (ใช้แค่แคชกับหัวไฟล์) สำหรับงานที่ต้องเร็ว เช่นตอนจัดคิว คืน null ถ้าอ่านไม่ได้
+    public static MediaInfo peek(File file) {
+        if (file == null || !file.exists()) return null;
+        MediaInfo cached = probeCache.get(file);
+        return cached != null ? cached : AudioHeaderParser.parse(file);
+    }
+
+    // รัน ffprobe เพื่ออ่าน duration/bitrate ของไฟล์ และ codec/sample rate/channels ของสตรีมเสียงแรก
+    private static MediaInfo runFFprobe(File file) {
+        try {
+            // ใช้ ffprobe ที่หาไว้ตอนตรวจสอบ ffmpeg (ไม่ผูกกับชื่อ ffprobe.exe จึงใช้บน Linux/macOS ได้)
+            String ffprobePath = FFmpegManager.getFFprobePath();
+            if (ffprobePath == null) {
+                System.err.println("[FFprobeHelper] ffprobe not found next to ffmpeg or on PATH.");
+                return null; // ถ้าไม่เจอ ffprobe ให้หยุด
             }
 
-            // สร้างคำสั่ง ffprobe เพื่อดึงข้อมูล duration ของไฟล์
+            // สร้างคำสั่ง ffprobe ให้พิมพ์ผลเป็น key=value บรรทัดละค่า
             ProcessBuilder pb = new ProcessBuilder(
-                    ffprobeFile.getAbsolutePath(),
+                    ffprobePath,
                     "-v", "error",
-                    "-show_entries", "format=duration",
-                    "-of", "default=noprint_wrappers=1:nokey=1",
+                    "-select_streams", "a:0",
+                    "-show_entries", "format=duration,bit_rate:stream=codec_name,sample_rate,channels,bit_rate",
+                    "-of", "default=noprint_wrappers=1",
                     file.getAbsolutePath()
             );
             pb.redirectErrorStream(true);
             Process process = pb.start();
 
-            // อ่านผลลัพธ์ที่ได้จาก ffprobe โดยดูแค่บรรทัดแรก
+            double duration = -1;
+            String codec = null;
+            int sampleRate = -1;
+            int channels = -1;
+            long streamBitrate = -1;
+            long formatBitrate = -1;
+
+            // ffprobe พิมพ์ส่วน stream ก่อน format จึงแยก bit_rate ของสองส่วนจากลำดับที่เจอ
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line = reader.readLine();
-                if (line != null && !line.isBlank()) {
-                    double duration = Double.parseDouble(line.trim());
-                    process.waitFor();
-                    return duration; // คืนค่า duration (หน่วยวินาที)
+                String line;
+                boolean inFormat = false;
+                while ((line = reader.readLine()) != null) {
+                    int eq = line.indexOf('=');
+                    if (eq <= 0) continue;
+                    String key = line.substring(0, eq).trim();
+                    String value = line.substring(eq + 1).trim();
+                    if (value.isEmpty() || value.equals("N/A")) {
+                        if (key.equals("duration")) inFormat = true;
+                        continue;
+                    }
+                    switch (key) {
+                        case "codec_name" -> codec = value;
+                        case "sample_rate" -> sampleRate = Integer.parseInt(value);
+                        case "channels" -> channels = Integer.parseInt(value);
+                        case "duration" -> {
+                            duration = Double.parseDouble(value);
+                            inFormat = true;
+                        }
+                        case "bit_rate" -> {
+                            if (inFormat) formatBitrate = Long.parseLong(value);
+                            else streamBitrate = Long.parseLong(value);
+                        }
+                        default -> { }
+                    }
                 }
             }
 
             process.waitFor();
+            if (duration <= 0 && codec == null) return null;
+            return new MediaInfo(duration, codec, sampleRate, channels,
+                    streamBitrate > 0 ? streamBitrate : formatBitrate);
         } catch (Exception e) {
-            System.err.println("[FFprobeHelper] Failed to get duration for file: " + file.getAbsolutePath());
+            System.err.println("[FFprobeHelper] Failed to probe file: " + file.getAbsolutePath());
             e.printStackTrace();
         }
-        return -1; // ถ้าไม่สามารถแปลงได้หรือเกิดข้อผิดพลาด
+        return null; // ถ้าไม่สามารถแปลงได้หรือเกิดข้อผิดพลาด
     }
 }
@@ -0,0 +1,157 @@
+package se233.audioconverterapp1.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// แคชข้อมูลที่คำนวณจากไฟล์ต้นฉบับ (เช่นผล ffprobe) เก็บลงดิสก์เพื่อใช้ซ้ำข้ามการเปิดโปรแกรม
+// คีย์คือ path แบบเต็ม + ขนาดไฟล์ + เวลาแก้ไขล่าสุด ถ้าไฟล์เปลี่ยนค่าเก่าจะถือว่าใช้ไม่ได้
+// ไฟล์แคชเป็นแบบ append-only บรรทัดละหนึ่งรายการ (คั่นด้วย tab) รายการหลังทับรายการก่อน
+public class FileMetadataCache<V> {
+
+    // ตัวแปลงค่าระหว่าง object กับฟิลด์ข้อความในไฟล์แคช
+    public interface Codec<V> {
+        String[] encode(V value);
+        V decode(String[] fields) throws Exception;
+    }
+
+    // ข้อมูลหนึ่งรายการในแคช พร้อมขนาด/เวลาของไฟล์ตอนที่บันทึก
+    private static class Entry<V> {
+        final long size;
+        final long lastModified;
+        final V value;
+
+        Entry(long size, long lastModified, V value) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.value = value;
+        }
+    }
+
+    private final Path storeFile;      // ไฟล์ที่ใช้บันทึกแคช
+    private final Codec<V> codec;      // ตัวแปลงค่า
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false; // โหลดจากดิสก์แล้วหรือยัง (โหลดครั้งแรกที่ใช้)
+
+    public FileMetadataCache(String fileName, Codec<V> codec) {
+        this(cacheDirectory().resolve(fileName), codec);
+    }
+
+    public FileMetadataCache(Path storeFile, Codec<V> codec) {
+        this.storeFile = storeFile;
+        this.codec = codec;
+    }
+
+    // โฟลเดอร์เก็บแคชของโปรแกรม (เปลี่ยนได้ด้วย -Daudioconverter.cacheDir=...)
+    public static Path cacheDirectory() {
+        String override = System.getProperty("audioconverter.cacheDir");
+        if (override != null && !override.isBlank()) return Path.of(override);
+        return Path.of(System.getProperty("user.home"), ".audioconverterapp1");
+    }
+
+    // ดึงค่าจากแคช คืน null ถ้าไม่มีหรือไฟล์ถูกแก้ไขไปแล้ว
+    public V get(File file) {
+        ensureLoaded();
+        Entry<V> entry = entries.get(file.getAbsolutePath());
+        if (entry == null) return null;
+        if (entry.size != file.length() || entry.lastModified != file.lastModified()) return null;
+        return entry.value;
+    }
+
+    // บันทึกค่าลงแคช (ทั้งในหน่วยความจำและต่อท้ายไฟล์บนดิสก์)
+    public void put(File file, V value) {
+        ensureLoaded();
+        String path = file.getAbsolutePath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+        entries.put(path, new Entry<>(size, lastModified, value));
+
+        // path ที่มี tab/ขึ้นบรรทัดใหม่เก็บลงไฟล์ไม่ได้ ให้อยู่แค่ในหน่วยความจำ
+        if (path.indexOf('\t') >= 0 || path.indexOf('\n') >= 0) return;
+        synchronized (this) {
+            try {
+                Files.createDirectories(storeFile.getParent());
+                try (BufferedWriter writer = Files.newBufferedWriter(storeFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    writer.write(toLine(path, size, lastModified, value));
+                    writer.newLine();
+                }
+            } catch (IOException e) {
+                System.err.println("[FileMetadataCache] Could not write " + storeFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // จำนวนรายการในแคช
+    public int size() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    // โหลดไฟล์แคชครั้งแรก และบีบอัดไฟล์ถ้ามีรายการซ้ำสะสมเยอะ
+    private void ensureLoaded() {
+        if (loaded) return;
+        synchronized (this) {
+            if (loaded) return;
+            int lineCount = 0;
+            if (Files.isRegularFile(storeFile)) {
+                try {
+                    for (String line : Files.readAllLines(storeFile, StandardCharsets.UTF_8)) {
+                        lineCount++;
+                        parseLine(line);
+                    }
+                } catch (IOException e) {
+                    System.err.println("[FileMetadataCache] Could not read " + storeFile + ": " + e.getMessage());
+                }
+            }
+            loaded = true;
+            if (lineCount > 1024 && lineCount > entries.size() * 2) {
+                compact();
+            }
+        }
+    }
+
+    // แปลงหนึ่งบรรทัดกลับเป็นรายการ (บรรทัดที่เสียจะถูกข้าม)
+    private void parseLine(String line) {
+        String[] parts = line.split("\t", -1);
+        if (parts.length < 3) return;
+        try {
+            long size = Long.parseLong(parts[1]);
+            long lastModified = Long.parseLong(parts[2]);
+            String[] fields = new String[parts.length - 3];
+            System.arraycopy(parts, 3, fields, 0, fields.length);
+            entries.put(parts[0], new Entry<>(size, lastModified, codec.decode(fields)));
+        } catch (Exception ignored) {
+        }
+    }
+
+    // เขียนไฟล์แคชใหม่ให้เหลือเฉพาะรายการล่าสุดของแต่ละไฟล์
+    private void compact() {
+        List<String> lines = new ArrayList<>(entries.size());
+        entries.forEach((path, entry) -> lines.add(toLine(path, entry.size, entry.lastModified, entry.value)));
+        try {
+            Path tmp = storeFile.resolveSibling(storeFile.getFileName() + ".tmp");
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            Files.move(tmp, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("[FileMetadataCache] Could not compact " + storeFile + ": " + e.getMessage());
+        }
+    }
+
+    private String toLine(String path, long size, long lastModified, V value) {
+        StringBuilder sb = new StringBuilder(path).append('\t').append(size).append('\t').append(lastModified);
+        for (String field : codec.encode(value)) {
+            sb.append('\t').append(field == null ? "" : field.replace('\t', ' ').replace('\n', ' '));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,136 @@
+package se233.audioconverterapp1.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// ปรับความดังตามมาตรฐาน EBU R128 แบบสองรอบด้วย filter loudnorm ของ ffmpeg
+//  รอบแรก (วัด): ถอดรหัสทั้งไฟล์แล้วอ่านค่า integrated loudness, true peak, LRA ที่ loudnorm พิมพ์ออกมา
+//  รอบสอง (เข้ารหัส): ส่งค่าที่วัดได้ให้ loudnorm ปรับความดังแบบ linear (ไม่บีบ dynamic) ถ้าทำได้
+// ค่าที่วัดได้ขึ้นกับต้นฉบับอย่างเดียว จึงแคชต่อไฟล์ (เหมือนผล ffprobe) แปลงเป็นฟอร์แมต/บิตเรตอื่นภายหลังไม่ต้องวัดซ้ำ
+public final class LoudnessAnalyzer {
+    // เป้าหมายของ EBU R128: -23 LUFS, true peak ไม่เกิน -1 dBTP (LRA ใช้ค่าเริ่มต้นของ loudnorm)
+    public static final double TARGET_I = -23.0;
+    public static final double TARGET_TP = -1.0;
+    public static final double TARGET_LRA = 7.0;
+    // ใช้ในคีย์ค่าตั้งของ OutputManifest (ถ้าเปลี่ยนเป้าหมาย ผลลัพธ์เก่าจะถูกแปลงใหม่)
+    public static final String TARGET = "r128:I=-23:TP=-1:LRA=7";
+
+    private static final String TARGETS = "I=" + TARGET_I + ":TP=" + TARGET_TP + ":LRA=" + TARGET_LRA;
+    private static final Pattern FIELD = Pattern.compile("\"(\\w+)\"\\s*:\\s*\"([^\"]*)\"");
+
+    // ผลการวัดของ loudnorm (ค่า -Infinity = ไฟล์เงียบทั้งไฟล์)
+    public record Measurement(double inputI, double inputTP, double inputLRA, double inputThresh, double targetOffset) {
+        // ไฟล์เงียบวัดความดังไม่ได้ ปรับไม่ได้ (loudnorm ไม่รับค่า -inf)
+        public boolean isMeasurable() {
+            return Double.isFinite(inputI) && Double.isFinite(inputTP) && Double.isFinite(inputLRA)
+                    && Double.isFinite(inputThresh) && Double.isFinite(targetOffset);
+        }
+    }
+
+    // แคชผลการวัดลงดิสก์ข้างแคชของ ffprobe (คีย์คือ path + ขนาด + เวลาแก้ไข ไฟล์เปลี่ยนก็วัดใหม่)
+    private static final FileMetadataCache<Measurement> measurementCache =
+            new FileMetadataCache<>("loudness-cache.tsv", new FileMetadataCache.Codec<>() {
+                @Override
+                public String[] encode(Measurement m) {
+                    return new String[] {
+                            TARGET,
+                            Double.toString(m.inputI()),
+                            Double.toString(m.inputTP()),
+                            Double.toString(m.inputLRA()),
+                            Double.toString(m.inputThresh()),
+                            Double.toString(m.targetOffset())
+                    };
+                }
+
+                @Override
+                public Measurement decode(String[] fields) {
+                    // target_offset คิดจากเป้าหมายตอนวัด ค่าที่วัดกับเป้าหมายอื่นใช้ไม่ได้
+                    if (!fields[0].equals(TARGET)) throw new IllegalArgumentException("Other loudness target");
+                    return new Measurement(Double.parseDouble(fields[1]), Double.parseDouble(fields[2]),
+                            Double.parseDouble(fields[3]), Double.parseDouble(fields[4]),
+                            Double.parseDouble(fields[5]));
+                }
+            });
+
+    private LoudnessAnalyzer() { }
+
+    // ผลการวัดที่แคชไว้ของไฟล์นี้ คืน null ถ้ายังไม่เคยวัดหรือไฟล์ถูกแก้ไขไปแล้ว
+    public static Measurement cached(File source) {
+        return measurementCache.get(source);
+    }
+
+    public static void store(File source, Measurement measurement) {
+        measurementCache.put(source, measurement);
+    }
+
+    // คำสั่งรอบวัด: ถอดรหัสสตรีมเสียงแรกผ่าน loudnorm แล้วทิ้งผล (-f null)
+    // loudnorm พิมพ์ผลเป็น JSON ระดับ info ทาง stderr จึงใช้ -v info แทน -v error เหมือนคำสั่งอื่น
+    public static List<String> analysisCommand(String ffmpegPath, File source) {
+        return new ArrayList<>(List.of(
+                ffmpegPath,
+                "-y",
+                "-nostdin",
+                "-hide_banner",
+                "-v", "info",
+                "-nostats",
+                "-progress", "pipe:1",
+                "-i", source.getAbsolutePath(),
+                "-map", "0:a:0",
+                "-af", "loudnorm=" + TARGETS + ":print_format=json",
+                "-f", "null",
+                "-"
+        ));
+    }
+
+    // อ่านผลจาก stderr ของรอบวัด (ใช้บล็อก JSON สุดท้าย) คืน null ถ้าไม่พบหรือไม่ครบ
+    public static Measurement parse(String output) {
+        int start = output.lastIndexOf('{');
+        int end = start < 0 ? -1 : output.indexOf('}', start);
+        if (end < 0) return null;
+        Double inputI = null, inputTP = null, inputLRA = null, inputThresh = null, targetOffset = null;
+        Matcher m = FIELD.matcher(output.substring(start, end));
+        try {
+            // อ่านเฉพาะช่องที่ใช้ (ช่องอื่นเช่น "normalization_type" : "dynamic" ไม่ใช่ตัวเลข)
+            while (m.find()) {
+                switch (m.group(1)) {
+                    case "input_i" -> inputI = parseValue(m.group(2));
+                    case "input_tp" -> inputTP = parseValue(m.group(2));
+                    case "input_lra" -> inputLRA = parseValue(m.group(2));
+                    case "input_thresh" -> inputThresh = parseValue(m.group(2));
+                    case "target_offset" -> targetOffset = parseValue(m.group(2));
+                    default -> { }
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (inputI == null || inputTP == null || inputLRA == null || inputThresh == null || targetOffset == null) {
+            return null;
+        }
+        return new Measurement(inputI, inputTP, inputLRA, inputThresh, targetOffset);
+    }
+
+    // filter ของรอบเข้ารหัส ใช้ค่าที่วัดได้ (linear=true: ปรับ gain ทั้งไฟล์เท่ากัน ถ้า LRA/true peak ของต้นฉบับอนุญาต)
+    // คืน null ถ้าวัดไม่ได้ (เช่นไฟล์เงียบ) ให้เข้ารหัสโดยไม่ปรับ
+    public static String filter(Measurement m) {
+        if (m == null || !m.isMeasurable()) return null;
+        return "loudnorm=" + TARGETS
+                + ":measured_I=" + m.inputI()
+                + ":measured_TP=" + m.inputTP()
+                + ":measured_LRA=" + m.inputLRA()
+                + ":measured_thresh=" + m.inputThresh()
+                + ":offset=" + m.targetOffset()
+                + ":linear=true:print_format=none";
+    }
+
+    // loudnorm พิมพ์ "-inf" สำหรับไฟล์เงียบ ซึ่ง Double.parseDouble อ่านไม่ได้
+    private static double parseValue(String text) {
+        String value = text.trim();
+        if (value.equals("-inf")) return Double.NEGATIVE_INFINITY;
+        if (value.equals("inf") || value.equals("+inf")) return Double.POSITIVE_INFINITY;
+        return Double.parseDouble(value);
+    }
+}
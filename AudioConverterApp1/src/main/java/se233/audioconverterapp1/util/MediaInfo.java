@@ -0,0 +1,30 @@
+package se233.audioconverterapp1.util;
+
+// คลาสเก็บข้อมูลสตรีมเสียงที่อ่านได้จาก ffprobe (ค่าใดอ่านไม่ได้จะเป็น -1 หรือ null)
+public class MediaInfo {
+    private final double durationSeconds; // ความยาวไฟล์ (วินาที)
+    private final String codec;           // ชื่อ codec เช่น mp3, flac, aac, pcm_s16le
+    private final int sampleRate;         // sample rate (Hz)
+    private final int channels;           // จำนวนช่องเสียง
+    private final long bitrate;           // บิตเรต (bit/s)
+
+    public MediaInfo(double durationSeconds, String codec, int sampleRate, int channels, long bitrate) {
+        this.durationSeconds = durationSeconds;
+        this.codec = codec;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitrate = bitrate;
+    }
+
+    public double getDurationSeconds() { return durationSeconds; }
+    public String getCodec() { return codec; }
+    public int getSampleRate() { return sampleRate; }
+    public int getChannels() { return channels; }
+    public long getBitrate() { return bitrate; }
+
+    @Override
+    public String toString() {
+        return "MediaInfo{duration=" + durationSeconds + ", codec=" + codec + ", sampleRate=" + sampleRate
+                + ", channels=" + channels + ", bitrate=" + bitrate + "}";
+    }
+}
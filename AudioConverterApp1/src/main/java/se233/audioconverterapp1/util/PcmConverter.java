@@ -0,0 +1,223 @@
+package se233.audioconverterapp1.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// แปลง WAV (PCM) เป็น WAV 16 บิตภายในโปรแกรมเอง ไม่ต้องเริ่ม ffmpeg/ffprobe
+// เหมาะกับไฟล์เสียงสั้นจำนวนมาก ที่เวลาเริ่ม process มากกว่าเวลาแปลงจริง
+//  - อ่านต้นฉบับผ่าน memory map (อ่านตรงจาก page cache ไม่ต้องคัดลอก)
+//  - เปลี่ยน sample rate ด้วย windowed-sinc (Blackman) ตัดความถี่เกิน Nyquist ของฝั่งที่ต่ำกว่า
+//  - รวม/แยกช่องเสียง (หลายช่อง -> mono ใช้ค่าเฉลี่ย, mono -> หลายช่อง คัดลอกช่องเดียวกัน)
+//  - เปลี่ยน bit depth เป็น 16 บิต (เหมือน pcm_s16le ที่ ffmpeg ใช้เป็นค่าเริ่มต้นของ .wav)
+//  - เขียนผลลัพธ์ทีละก้อนผ่าน FileChannel
+public class PcmConverter {
+    public static final String OUTPUT_CODEC = "pcm_s16le";
+    private static final int OUTPUT_BITS = 16;
+    private static final int HALF_TAPS = 16;          // จำนวน tap ข้างละด้านของ filter (ตอนไม่ลด sample rate)
+    private static final int MAX_PHASE_TABLE = 1024;  // อัตราส่วนที่มี phase มากกว่านี้คำนวณ weight สด ๆ
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MAX_RIFF_DATA = 0xFFFFFFFFL - 36;
+
+    // รับความคืบหน้า (0.0 - 1.0) คืน false เพื่อยกเลิก
+    public interface Progress {
+        boolean onProgress(double fraction);
+    }
+
+    // แปลงได้ไหม: ต้นฉบับเป็น PCM ที่ map ได้ในก้อนเดียว และเป็นการรวม/แยกช่องแบบที่รองรับ
+    public static boolean canConvert(WavHeader source, int sampleRate, int channels) {
+        if (source == null || sampleRate <= 0 || channels <= 0) return false;
+        if (source.getDataLength() > Integer.MAX_VALUE) return false; // MappedByteBuffer ได้ไม่เกิน 2 GB
+        if (source.getChannels() != channels && source.getChannels() != 1 && channels != 1) return false;
+        return outputFrames(source, sampleRate) * channels * (OUTPUT_BITS / 8) <= MAX_RIFF_DATA;
+    }
+
+    // ต้นฉบับเป็นแบบเดียวกับผลลัพธ์ที่ขออยู่แล้ว (คัดลอกไฟล์ได้เลย)
+    public static boolean matches(WavHeader source, int sampleRate, int channels) {
+        return source.getCodec().equals(OUTPUT_CODEC) && source.getSampleRate() == sampleRate
+                && source.getChannels() == channels;
+    }
+
+    // แปลงแล้วเขียนเป็น target; คืน false ถ้าถูกยกเลิก (ไฟล์ที่เขียนไม่ครบถูกลบแล้ว)
+    public static boolean convert(WavHeader source, File input, File target, int sampleRate, int channels,
+                                  Progress progress) throws IOException {
+        long frames = outputFrames(source, sampleRate);
+        boolean completed;
+        try (FileChannel in = FileChannel.open(input.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, source.getDataOffset(),
+                    source.getDataLength());
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            Reader reader = new Reader(source, data, channels);
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            writeHeader(buf, frames, sampleRate, channels);
+            completed = source.getSampleRate() == sampleRate
+                    ? copyFrames(reader, frames, channels, buf, out, progress)
+                    : resample(reader, source.getSampleRate(), sampleRate, frames, channels, buf, out, progress);
+            if (completed) drain(buf, out);
+        }
+        if (!completed) target.delete();
+        return completed;
+    }
+
+    private static long outputFrames(WavHeader source, int sampleRate) {
+        long g = gcd(source.getSampleRate(), sampleRate);
+        long up = sampleRate / g, down = source.getSampleRate() / g;
+        return (source.getFrameCount() * up + down - 1) / down;
+    }
+
+    // sample rate เท่าเดิม: เปลี่ยนแค่ช่องเสียง/bit depth
+    private static boolean copyFrames(Reader reader, long frames, int channels, ByteBuffer buf, FileChannel out,
+                                      Progress progress) throws IOException {
+        for (long frame = 0; frame < frames; frame++) {
+            if (buf.remaining() < channels * 2 && !flush(buf, out, frame, frames, progress)) return false;
+            for (int ch = 0; ch < channels; ch++) buf.putShort(toShort(reader.sample(frame, ch)));
+        }
+        return true;
+    }
+
+    // เปลี่ยน sample rate แบบ polyphase: ผลลัพธ์เฟรม n อยู่ที่ตำแหน่ง n * down / up ของต้นฉบับ
+    // (เป็นเศษส่วนตรง ๆ จึงไม่มี error สะสมแม้ไฟล์ยาว) แล้วคำนวณจาก sample รอบ ๆ ตำแหน่งนั้นด้วย filter
+    private static boolean resample(Reader reader, int inRate, int outRate, long frames, int channels,
+                                    ByteBuffer buf, FileChannel out, Progress progress) throws IOException {
+        int g = (int) gcd(inRate, outRate);
+        int up = outRate / g, down = inRate / g;
+        double cutoff = Math.min(1.0, (double) outRate / inRate); // สัดส่วนของ Nyquist ต้นฉบับที่เก็บไว้
+        int half = (int) Math.ceil(HALF_TAPS / cutoff);            // ลด rate มาก ต้องใช้ filter ยาวขึ้น
+        double[][] table = up <= MAX_PHASE_TABLE ? new double[up][] : null;
+        double[] weights = new double[2 * half];
+        double[] mixed = new double[channels];
+
+        for (long n = 0; n < frames; n++) {
+            if (buf.remaining() < channels * 2 && !flush(buf, out, n, frames, progress)) return false;
+            long position = n * down;
+            long base = position / up;
+            int phase = (int) (position % up);
+            double[] w;
+            if (table != null) {
+                w = table[phase];
+                if (w == null) w = table[phase] = weights(new double[2 * half], (double) phase / up, half, cutoff);
+            } else {
+                w = weights(weights, (double) phase / up, half, cutoff);
+            }
+            Arrays.fill(mixed, 0);
+            for (int k = 0; k < w.length; k++) {
+                long source = base - half + 1 + k;
+                if (source < 0 || source >= reader.frames) continue; // นอกไฟล์ถือเป็นความเงียบ
+                for (int ch = 0; ch < channels; ch++) mixed[ch] += w[k] * reader.sample(source, ch);
+            }
+            for (int ch = 0; ch < channels; ch++) buf.putShort(toShort(mixed[ch]));
+        }
+        return true;
+    }
+
+    // weight ของ sample รอบตำแหน่งที่มีเศษ frac (sample ที่ k อยู่ห่าง k - half + 1 - frac)
+    // ปรับให้ผลรวมเป็น 1 เพื่อไม่ให้ระดับเสียงต่างกันไปตาม phase
+    private static double[] weights(double[] into, double frac, int half, double cutoff) {
+        double sum = 0;
+        for (int k = 0; k < into.length; k++) {
+            double x = k - half + 1 - frac;
+            double window = 0.42 + 0.5 * Math.cos(Math.PI * x / half) + 0.08 * Math.cos(2 * Math.PI * x / half);
+            double value = Math.abs(x) >= half ? 0 : cutoff * sinc(cutoff * x) * window;
+            into[k] = value;
+            sum += value;
+        }
+        if (sum != 0) for (int k = 0; k < into.length; k++) into[k] /= sum;
+        return into;
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) return 1;
+        double px = Math.PI * x;
+        return Math.sin(px) / px;
+    }
+
+    private static short toShort(double value) {
+        long scaled = Math.round(value * 32768.0);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled));
+    }
+
+    // เขียนก้อนที่เต็มแล้วลงไฟล์ แล้วรายงานความคืบหน้า
+    private static boolean flush(ByteBuffer buf, FileChannel out, long done, long total, Progress progress)
+            throws IOException {
+        drain(buf, out);
+        return progress.onProgress(total == 0 ? 1.0 : (double) done / total);
+    }
+
+    private static void drain(ByteBuffer buf, FileChannel out) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) out.write(buf);
+        buf.clear();
+    }
+
+    // หัวไฟล์ WAV แบบ PCM ธรรมดา 44 byte (ขนาดรู้ล่วงหน้าจากจำนวนเฟรม จึงเขียนได้ตั้งแต่ต้น)
+    private static void writeHeader(ByteBuffer buf, long frames, int sampleRate, int channels) {
+        int blockAlign = channels * OUTPUT_BITS / 8;
+        long dataLength = frames * blockAlign;
+        buf.put(new byte[]{'R', 'I', 'F', 'F'}).putInt((int) (36 + dataLength))
+                .put(new byte[]{'W', 'A', 'V', 'E', 'f', 'm', 't', ' '}).putInt(16)
+                .putShort((short) 1).putShort((short) channels).putInt(sampleRate).putInt(sampleRate * blockAlign)
+                .putShort((short) blockAlign).putShort((short) OUTPUT_BITS)
+                .put(new byte[]{'d', 'a', 't', 'a'}).putInt((int) dataLength);
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    // อ่าน sample จาก memory map เป็นค่า -1.0 ถึง 1.0 และรวมช่องเสียงให้ตรงกับจำนวนช่องของผลลัพธ์
+    private static final class Reader {
+        private final MappedByteBuffer data;
+        private final int inChannels;
+        private final int outChannels;
+        private final int bytesPerSample;
+        private final int frameSize;
+        private final boolean floatingPoint;
+        final long frames;
+
+        Reader(WavHeader header, MappedByteBuffer data, int outChannels) {
+            this.data = data;
+            this.inChannels = header.getChannels();
+            this.outChannels = outChannels;
+            this.bytesPerSample = header.getBitsPerSample() / 8;
+            this.frameSize = header.getFrameSize();
+            this.floatingPoint = header.isFloatingPoint();
+            this.frames = header.getFrameCount();
+        }
+
+        double sample(long frame, int channel) {
+            if (inChannels == outChannels) return raw(frame, channel);
+            if (inChannels == 1) return raw(frame, 0);
+            double sum = 0; // หลายช่อง -> mono
+            for (int ch = 0; ch < inChannels; ch++) sum += raw(frame, ch);
+            return sum / inChannels;
+        }
+
+        private double raw(long frame, int channel) {
+            int offset = (int) (frame * frameSize) + channel * bytesPerSample;
+            switch (bytesPerSample) {
+                case 1:
+                    return ((data.get(offset) & 0xFF) - 128) / 128.0; // 8 บิตเป็น unsigned
+                case 2:
+                    return data.getShort(offset) / 32768.0;
+                case 3:
+                    int value = (data.get(offset) & 0xFF) | (data.get(offset + 1) & 0xFF) << 8
+                            | data.get(offset + 2) << 16;
+                    return value / 8388608.0;
+                default:
+                    return floatingPoint ? data.getFloat(offset) : data.getInt(offset) / 2147483648.0;
+            }
+        }
+    }
+}
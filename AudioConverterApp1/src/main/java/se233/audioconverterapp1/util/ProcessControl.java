@@ -0,0 +1,56 @@
+package se233.audioconverterapp1.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// ควบคุม process ภายนอก (ffmpeg) ทั้งต้นไม้: หยุดชั่วคราว, ให้ทำงานต่อ และฆ่าทิ้ง
+// รวม process ลูกด้วย เพราะ path ที่ตั้งไว้อาจเป็น script ที่เรียก ffmpeg ตัวจริงอีกที
+public final class ProcessControl {
+    // Java ส่ง signal อื่นนอกจาก kill ไม่ได้ จึงใช้คำสั่ง kill ของระบบ (Linux/macOS) ส่ง SIGSTOP/SIGCONT
+    private static final boolean SIGNALS =
+            !System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
+
+    private ProcessControl() { }
+
+    // หยุดชั่วคราวได้ไหมบนระบบนี้
+    public static boolean isSuspendSupported() {
+        return SIGNALS;
+    }
+
+    // หยุด process ไว้ (ไม่ใช้ CPU แต่ยังอยู่ในหน่วยความจำ งานที่ทำไปแล้วไม่หาย)
+    public static boolean suspend(Process process) {
+        return signal("-STOP", process);
+    }
+
+    public static boolean resume(Process process) {
+        return signal("-CONT", process);
+    }
+
+    // ฆ่าทันทีทั้งต้นไม้ (ใช้ได้แม้ process ถูกหยุดไว้หรือไม่ส่ง output ออกมาเลย)
+    // เก็บรายชื่อลูกไว้ก่อน เพราะพอตัวแม่ตาย ลูกจะไปอยู่ใต้ init แล้วหาจากตัวแม่ไม่เจอ
+    public static void destroyTree(Process process) {
+        List<ProcessHandle> children = process.descendants().toList();
+        process.destroyForcibly();
+        children.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    private static boolean signal(String signal, Process process) {
+        if (!SIGNALS || !process.isAlive()) return false;
+        List<String> command = new ArrayList<>(List.of("kill", signal, String.valueOf(process.pid())));
+        process.descendants().forEach(child -> command.add(String.valueOf(child.pid())));
+        try {
+            Process kill = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            return kill.waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package se233.audioconverterapp1.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// หาอุปกรณ์เก็บข้อมูล (FileStore) ของไฟล์/โฟลเดอร์ และจำนวนงานที่ควรอ่านเขียนอุปกรณ์นั้นพร้อมกัน
+//  - จานหมุน (HDD): งานพร้อมกันมากไปหัวอ่านต้องวิ่งไปมาระหว่างไฟล์ (seek) จนช้ากว่าทำทีละน้อย
+//  - ที่เก็บบนเครือข่าย (NAS, SMB, NFS): แบนด์วิดท์และ latency ของเครือข่ายเป็นคอขวด
+//  - SSD, tmpfs และอื่น ๆ: ไม่จำกัดแยก ใช้แค่จำนวนงานรวมของ scheduler
+public final class StorageDevices {
+    public static final int HDD_LIMIT = 2;
+    public static final int NETWORK_LIMIT = 4;
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private static final Set<String> NETWORK_TYPES = Set.of("nfs", "nfs4", "cifs", "smb", "smb2", "smb3", "smbfs",
+            "afpfs", "9p", "davfs", "webdav", "fuse.sshfs", "fuse.rclone", "ceph", "glusterfs", "lustre");
+
+    // โฟลเดอร์ -> FileStore (Files.getFileStore อ่านตาราง mount ทุกครั้ง ไฟล์ในโฟลเดอร์เดียวกันจึงหาครั้งเดียว)
+    private static final Map<Path, FileStore> STORES = new ConcurrentHashMap<>();
+    private static final Map<FileStore, Integer> LIMITS = new ConcurrentHashMap<>();
+
+    private StorageDevices() { }
+
+    // อุปกรณ์ของไฟล์ (ใช้โฟลเดอร์ที่ไฟล์อยู่) หรือของโฟลเดอร์เอง; null ถ้าหาไม่ได้
+    public static FileStore of(File file) {
+        File absolute = file.getAbsoluteFile();
+        File dir = absolute.isDirectory() ? absolute : absolute.getParentFile();
+        if (dir == null) return null;
+        Path key = dir.toPath();
+        FileStore store = STORES.get(key);
+        if (store != null) return store;
+        try {
+            store = Files.getFileStore(key);
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+        STORES.put(key, store);
+        return store;
+    }
+
+    // จำนวนงานพร้อมกันที่เหมาะกับอุปกรณ์นี้ (ดูจากชนิดระบบไฟล์ และบน Linux ดูว่าเป็นจานหมุนหรือไม่)
+    public static int defaultLimit(FileStore store) {
+        return LIMITS.computeIfAbsent(store, StorageDevices::detectLimit);
+    }
+
+    private static int detectLimit(FileStore store) {
+        String type = store.type().toLowerCase(Locale.ROOT);
+        if (NETWORK_TYPES.contains(type)) return NETWORK_LIMIT;
+        if (isRotational(store.name())) return HDD_LIMIT;
+        return UNLIMITED;
+    }
+
+    // Linux: /sys/class/block/<อุปกรณ์>/queue/rotational เป็น 1 สำหรับจานหมุน
+    // partition (เช่น sda1) ไม่มี queue ของตัวเอง ต้องดูของดิสก์ที่เป็นโฟลเดอร์แม่ (sda)
+    private static boolean isRotational(String device) {
+        if (!device.startsWith("/dev/")) return false;
+        try {
+            String name = Path.of(device).toRealPath().getFileName().toString(); // /dev/mapper/x -> dm-0
+            Path block = Path.of("/sys/class/block", name).toRealPath();
+            Path flag = block.resolve("queue/rotational");
+            if (!Files.isReadable(flag)) flag = block.getParent().resolve("queue/rotational");
+            return Files.readString(flag).trim().equals("1");
+        } catch (IOException | RuntimeException e) {
+            return false; // ไม่ใช่ Linux หรืออ่านไม่ได้: ถือว่าไม่ต้องจำกัด
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package se233.audioconverterapp1.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// อ่านหัวไฟล์ RIFF/WAVE (chunk "fmt " และตำแหน่งของ chunk "data") โดยไม่ต้องเรียก ffprobe
+// รองรับ PCM แบบ integer 8/16/24/32 บิต และ float 32 บิต (รวม WAVE_FORMAT_EXTENSIBLE ที่ข้างในเป็น PCM)
+public class WavHeader {
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final int sampleRate;
+    private final int channels;
+    private final int bitsPerSample;
+    private final boolean floatingPoint;
+    private final long dataOffset;   // ตำแหน่ง byte แรกของข้อมูลเสียง
+    private final long dataLength;   // ความยาวข้อมูลเสียง (byte) ตัดให้ไม่เกินขนาดไฟล์จริง
+
+    private WavHeader(int sampleRate, int channels, int bitsPerSample, boolean floatingPoint, long dataOffset,
+                      long dataLength) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitsPerSample = bitsPerSample;
+        this.floatingPoint = floatingPoint;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
+    }
+
+    // คืน null ถ้าไม่ใช่ WAV หรือเป็น codec อื่นที่ไม่ใช่ PCM (เช่น ADPCM) ซึ่งต้องให้ ffmpeg จัดการ
+    public static WavHeader read(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer buf = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+            if (!readFully(channel, buf, 0, 12)) return null;
+            if (buf.getInt(0) != fourCC("RIFF") || buf.getInt(8) != fourCC("WAVE")) return null;
+
+            int format = -1, channels = 0, sampleRate = 0, bits = 0;
+            long position = 12;
+            // เดินทีละ chunk จนเจอ "data" (chunk "fmt " ต้องมาก่อนตามสเปก)
+            while (position + 8 <= fileSize) {
+                if (!readFully(channel, buf, position, 8)) return null;
+                int id = buf.getInt(0);
+                long size = buf.getInt(4) & 0xFFFFFFFFL;
+                long body = position + 8;
+                if (id == fourCC("fmt ")) {
+                    if (size < 16 || !readFully(channel, buf, body, (int) Math.min(size, 40))) return null;
+                    format = buf.getShort(0) & 0xFFFF;
+                    channels = buf.getShort(2) & 0xFFFF;
+                    sampleRate = buf.getInt(4);
+                    bits = buf.getShort(14) & 0xFFFF;
+                    if (format == FORMAT_EXTENSIBLE && size >= 40) {
+                        format = buf.getShort(24) & 0xFFFF; // 2 byte แรกของ SubFormat GUID คือรหัสฟอร์แมตจริง
+                    }
+                } else if (id == fourCC("data")) {
+                    if (format < 0) return null;
+                    boolean isFloat = format == FORMAT_FLOAT;
+                    if (format != FORMAT_PCM && !isFloat) return null;
+                    if (isFloat ? bits != 32 : bits != 8 && bits != 16 && bits != 24 && bits != 32) return null;
+                    if (channels <= 0 || sampleRate <= 0) return null;
+                    // ไฟล์ที่เขียนไม่จบ (หรือแบบ stream) มักใส่ขนาดผิด ใช้เท่าที่มีอยู่จริงในไฟล์
+                    long length = Math.min(size, fileSize - body);
+                    int frameSize = channels * bits / 8;
+                    return new WavHeader(sampleRate, channels, bits, isFloat, body, length - length % frameSize);
+                }
+                position = body + size + (size & 1); // chunk ที่ขนาดเป็นเลขคี่มี byte เติมอีก 1
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buf, long position, int length)
+            throws IOException {
+        buf.clear().limit(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) return false;
+        }
+        return true;
+    }
+
+    private static int fourCC(String id) {
+        return id.charAt(0) | id.charAt(1) << 8 | id.charAt(2) << 16 | id.charAt(3) << 24;
+    }
+
+    public int getSampleRate() { return sampleRate; }
+    public int getChannels() { return channels; }
+    public int getBitsPerSample() { return bitsPerSample; }
+    public boolean isFloatingPoint() { return floatingPoint; }
+    public long getDataOffset() { return dataOffset; }
+    public long getDataLength() { return dataLength; }
+    public int getFrameSize() { return channels * bitsPerSample / 8; }
+    public long getFrameCount() { return dataLength / getFrameSize(); }
+    public double getDurationSeconds() { return (double) getFrameCount() / sampleRate; }
+
+    // ชื่อ codec แบบเดียวกับที่ ffprobe รายงาน (ใช้เทียบกับ ConversionMode)
+    public String getCodec() {
+        if (floatingPoint) return "pcm_f32le";
+        return bitsPerSample == 8 ? "pcm_u8" : "pcm_s" + bitsPerSample + "le";
+    }
+}
@@ -0,0 +1,46 @@
+package se233.audioconverterapp1.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversionTaskTest {
+    @Test
+    void segmentBoundsCoverEverySampleOnce() {
+        long[] bounds = ConversionTask.segmentBounds(44100L * 600 + 7, 7); // ไม่หารลงตัว
+
+        assertEquals(8, bounds.length);
+        assertEquals(0, bounds[0]);
+        assertEquals(44100L * 600 + 7, bounds[7]);
+        for (int i = 1; i < bounds.length; i++) assertTrue(bounds[i] > bounds[i - 1]);
+    }
+
+    @Test
+    void joinedSegmentsHaveTheSourceSampleCount() {
+        for (int rate : new int[] {8000, 22050, 44100, 48000, 96000, 192000}) {
+            for (int count : new int[] {2, 3, 7, 16}) {
+                int[] source = new int[rate * 3 + 11];
+                for (int i = 0; i < source.length; i++) source[i] = i;
+
+                // ตัดแต่ละช่วงตามที่ ffmpeg ได้รับ: -ss ปัดกลับเป็น sample, atrim=end_sample นับจากจุด seek
+                long[] bounds = ConversionTask.segmentBounds(source.length, count);
+                int[] joined = new int[0];
+                for (int i = 0; i < count; i++) {
+                    int start = (int) Math.round(Double.parseDouble(ConversionTask.seekTime(bounds[i], rate)) * rate);
+                    int end = i == count - 1 ? source.length : start + (int) (bounds[i + 1] - bounds[i]);
+                    int[] part = Arrays.copyOfRange(source, start, end);
+                    int offset = joined.length;
+                    joined = Arrays.copyOf(joined, offset + part.length);
+                    System.arraycopy(part, 0, joined, offset, part.length);
+                }
+
+                assertEquals(source.length, joined.length, rate + " Hz, " + count + " segments");
+                assertArrayEquals(source, joined, rate + " Hz, " + count + " segments");
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package se233.audioconverterapp1.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopeningKeepsOnlyUnfinishedJobs() {
+        Path file = dir.resolve("jobs.journal");
+        JobJournal journal = JobJournal.open(file);
+        long done = journal.queued(row("/music/a.wav"), "mp3", "192k", "44100", "2", "/out", false);
+        long running = journal.queued(row("/music/b.wav"), "mp3+flac", "320k", "48000", "1", "/out", true);
+        long waiting = journal.queued(row("/music/c.wav"), "m4a", "128k", "44100", "2", "/out2", false);
+        long failed = journal.queued(row("/music/d.wav"), "mp3", "192k", "44100", "2", "/out", false);
+        journal.started(done);
+        journal.done(done);
+        journal.started(running);
+        journal.started(failed);
+        journal.failed(failed);
+        journal.close();
+
+        List<JobJournal.Job> jobs = JobJournal.open(file).unfinishedJobs();
+
+        assertEquals(List.of(running, waiting), jobs.stream().map(JobJournal.Job::getId).toList());
+        JobJournal.Job b = jobs.get(0);
+        assertEquals("/music/b.wav", b.getSourcePath());
+        assertEquals("wav", b.getSourceFormat());
+        assertEquals("mp3+flac", b.getTargetFormats());
+        assertEquals("320k", b.getBitrate());
+        assertEquals("48000", b.getSampleRate());
+        assertEquals("1", b.getChannel());
+        assertEquals("/out", b.getOutputDir());
+        assertTrue(b.isNormalizeLoudness());
+        assertTrue(b.wasStarted());
+        assertFalse(jobs.get(1).wasStarted());
+        assertFalse(jobs.get(1).isNormalizeLoudness());
+    }
+
+    @Test
+    void compactsAndContinuesIds() throws Exception {
+        Path file = dir.resolve("jobs.journal");
+        JobJournal journal = JobJournal.open(file);
+        for (int i = 0; i < 10; i++) {
+            long id = journal.queued(row("/music/" + i + ".wav"), "mp3", "192k", "44100", "2", "/out", false);
+            if (i < 9) journal.cancelled(id);
+        }
+        journal.close();
+
+        JobJournal reopened = JobJournal.open(file);
+        long next = reopened.queued(row("/music/new.wav"), "mp3", "192k", "44100", "2", "/out", false);
+
+        assertEquals(11, next); // id ไม่ซ้ำกับงานเก่าแม้งานเก่าถูกตัดออกจากไฟล์แล้ว
+        reopened.close();
+        assertEquals(2, Files.readAllLines(file).size());
+        assertEquals(2, JobJournal.open(file).unfinishedJobs().size());
+    }
+
+    @Test
+    void readsOlderLinesAndSkipsDamagedOnes() throws Exception {
+        Path file = dir.resolve("jobs.journal");
+        Files.write(file, List.of(
+                "Q\t1\t/music/a.wav\twav\tmp3\t192k\t44100\t2\t/out",          // journal ก่อนมีช่อง loudnorm
+                "Q\t2\t/music/b.wav\twav\tmp3\t192k\t44100\t2\t/out\tloudnorm",
+                "R\t2",
+                "Q\tx\t/music/c.wav\twav\tmp3\t192k\t44100\t2\t/out",          // id เสีย
+                "Q\t3\t/music/short.wav",                                       // ช่องไม่ครบ
+                "garbage",
+                "D\t9"));                                                       // งานที่ไม่รู้จัก
+
+        JobJournal journal = JobJournal.open(file);
+        List<JobJournal.Job> jobs = journal.unfinishedJobs();
+
+        assertEquals(List.of(1L, 2L), jobs.stream().map(JobJournal.Job::getId).toList());
+        assertFalse(jobs.get(0).isNormalizeLoudness());
+        assertTrue(jobs.get(1).isNormalizeLoudness());
+        assertTrue(jobs.get(1).wasStarted());
+        assertEquals(10, journal.queued(row("/music/e.wav"), "mp3", "192k", "44100", "2", "/out", false));
+    }
+
+    @Test
+    void pathsThatCannotBeStoredAreNotJournaled() {
+        Path file = dir.resolve("jobs.journal");
+        JobJournal journal = JobJournal.open(file);
+        journal.queued(row("/music/tab\there.wav"), "mp3", "192k", "44100", "2", "/out", false);
+        journal.holdSync();
+        journal.queued(row("/music/ok.wav"), "mp3", "192k", "44100", "2", "/out", false);
+        journal.resumeSync();
+        journal.close();
+
+        List<JobJournal.Job> jobs = JobJournal.open(file).unfinishedJobs();
+
+        assertEquals(1, jobs.size());
+        assertTrue(jobs.get(0).getSourcePath().endsWith("ok.wav"));
+    }
+
+    private static FileInfo row(String path) {
+        return new FileInfo(path, "wav", 1000);
+    }
+}
@@ -0,0 +1,113 @@
+package se233.audioconverterapp1.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutputManifestTest {
+    private static final String SETTINGS = OutputManifest.settingsKey("mp3", "192k", "44100", "2");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordedOutputIsUpToDateAfterReload() throws Exception {
+        File source = file("in/song.wav", "source audio");
+        File output = file("out/song.mp3", "encoded audio");
+
+        OutputManifest.load(output.getParentFile()).record(source, output, SETTINGS);
+        OutputManifest reloaded = OutputManifest.load(output.getParentFile());
+
+        assertTrue(reloaded.isTracked(output));
+        assertTrue(reloaded.isUpToDate(source, output, SETTINGS));
+        assertFalse(reloaded.isUpToDate(source, output, OutputManifest.settingsKey("mp3", "320k", "44100", "2")));
+        assertFalse(reloaded.isTracked(new File(output.getParentFile(), "other.mp3")));
+    }
+
+    @Test
+    void changedOutputOrSourceNeedsConverting() throws Exception {
+        File source = file("in/song.wav", "source audio");
+        File output = file("out/song.mp3", "encoded audio");
+        OutputManifest manifest = OutputManifest.load(output.getParentFile());
+        manifest.record(source, output, SETTINGS);
+
+        Files.writeString(output.toPath(), "truncated"); // ผลลัพธ์ถูกแก้หลังแปลง
+        assertFalse(manifest.isUpToDate(source, output, SETTINGS));
+
+        manifest.record(source, output, SETTINGS);
+        Files.writeString(source.toPath(), "source AUDIO"); // ขนาดเท่าเดิม เนื้อหาเปลี่ยน
+        source.setLastModified(source.lastModified() + 5000);
+        assertFalse(manifest.isUpToDate(source, output, SETTINGS));
+    }
+
+    @Test
+    void touchedSourceWithSameContentIsStillUpToDate() throws Exception {
+        File source = file("in/song.wav", "source audio");
+        File output = file("out/song.mp3", "encoded audio");
+        OutputManifest.load(output.getParentFile()).record(source, output, SETTINGS);
+
+        source.setLastModified(source.lastModified() + 5000); // เช่นถูก copy มาใหม่
+        OutputManifest reloaded = OutputManifest.load(output.getParentFile());
+
+        assertTrue(reloaded.isUpToDate(source, output, SETTINGS));
+        // เวลาใหม่ถูกบันทึกไว้แล้ว โหลดอีกรอบยังตรงกันอยู่
+        assertTrue(OutputManifest.load(output.getParentFile()).isUpToDate(source, output, SETTINGS));
+    }
+
+    @Test
+    void sameSizeEditOutsideHeadAndTailIsNotUpToDate() throws Exception {
+        for (int size : new int[] {100 * 1024, 1024 * 1024}) { // ส่วนท้ายซ้อนกับส่วนแรก และไฟล์ใหญ่กว่าสองส่วน
+            File source = dir.resolve("in/" + size + ".wav").toFile();
+            Files.createDirectories(source.toPath().getParent());
+            byte[] bytes = new byte[size];
+            Files.write(source.toPath(), bytes);
+            File output = file("out/" + size + ".mp3", "encoded audio");
+            OutputManifest manifest = OutputManifest.load(output.getParentFile());
+            manifest.record(source, output, SETTINGS);
+
+            bytes[size / 2 + 40 * 1024] = 1; // หลัง 64KB แรก (ไฟล์ใหญ่: อยู่กลางไฟล์ ไม่โดนหัว/ท้ายเลย)
+            Files.write(source.toPath(), bytes);
+            source.setLastModified(source.lastModified() + 5000);
+
+            assertFalse(manifest.isUpToDate(source, output, SETTINGS), size + " bytes");
+            assertFalse(OutputManifest.load(output.getParentFile()).isUpToDate(source, output, SETTINGS));
+        }
+    }
+
+    @Test
+    void settingsKeyNormalizesChannelsAndAddsLoudness() {
+        assertEquals(OutputManifest.settingsKey("flac", "0", "48000", "Mono"),
+                OutputManifest.settingsKey("flac", "0", "48000", "1"));
+        assertEquals(SETTINGS, OutputManifest.settingsKey("mp3", "192k", "44100", "2", false));
+        assertNotEquals(SETTINGS, OutputManifest.settingsKey("mp3", "192k", "44100", "2", true));
+    }
+
+    @Test
+    void ignoresDamagedManifestLines() throws Exception {
+        File source = file("in/song.wav", "source audio");
+        File output = file("out/song.mp3", "encoded audio");
+        OutputManifest.load(output.getParentFile()).record(source, output, SETTINGS);
+        Path manifestFile = output.getParentFile().toPath().resolve(OutputManifest.FILE_NAME);
+        Files.writeString(manifestFile, "garbage\nsong.mp3\tx\tnot-a-number\t1\t2\t3\t4\t5\t6\n",
+                StandardOpenOption.APPEND);
+
+        OutputManifest reloaded = OutputManifest.load(output.getParentFile());
+
+        assertTrue(reloaded.isUpToDate(source, output, SETTINGS));
+    }
+
+    private File file(String name, String content) throws Exception {
+        Path path = dir.resolve(name);
+        Files.createDirectories(path.getParent());
+        return Files.writeString(path, content).toFile();
+    }
+}
@@ -0,0 +1,58 @@
+package se233.audioconverterapp1.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AudioFormatSnifferTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void detectsByContentNotExtension() throws Exception {
+        assertEquals("wav", detect("a.mp3", TestAudio.wav(TestAudio.PCM, 1, 8000, 16, new byte[16])));
+        assertEquals("flac", detect("a.bin", TestAudio.flac(44100, 2, 16, 44100, 100)));
+        assertEquals("mp3", detect("a.wav", TestAudio.mp3(3, false, 0)));
+        assertEquals("mp3", detect("tagged", TestAudio.concat(TestAudio.id3v2(100), TestAudio.mp3(3, false, 0))));
+        assertNull(detect("notes.m4a", "plain text, not audio".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void audioBrandsAreM4a() throws Exception {
+        for (String brand : new String[] {"M4A ", "M4B ", "M4P "}) {
+            assertEquals("m4a", detect("a.mp4", TestAudio.m4a(brand, 44100, 2, 44100, 128000, 100)), brand);
+        }
+    }
+
+    @Test
+    void genericBrandNeedsAnAudioOnlyTrackList() throws Exception {
+        byte[] audio = TestAudio.m4a("mp42", 44100, 2, 44100, 128000, 100, TestAudio.track("text"));
+        byte[] video = TestAudio.m4a("isom", 44100, 2, 44100, 128000, 100, TestAudio.track("vide"));
+
+        assertEquals("m4a", detect("audio.mp4", audio));
+        assertNull(detect("movie.mp4", video));
+        assertNull(AudioFormatSniffer.detect(audio, 16)); // จากหัวไฟล์อย่างเดียวยังตัดสินไม่ได้
+        assertNull(detect("empty.mp4", TestAudio.box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    @Test
+    void headerParserLeavesVideoToFfprobe() throws Exception {
+        File audio = TestAudio.write(dir, "audio.mp4", TestAudio.m4a("mp42", 48000, 1, 48000, 96000, 100));
+        File video = TestAudio.write(dir, "movie.m4a",
+                TestAudio.m4a("M4A ", 48000, 1, 48000, 96000, 100, TestAudio.track("vide")));
+
+        assertNotNull(AudioHeaderParser.parse(audio));
+        assertNull(AudioHeaderParser.parse(video));
+    }
+
+    private String detect(String name, byte[] bytes) throws Exception {
+        return AudioFormatSniffer.detect(TestAudio.write(dir, name, bytes));
+    }
+}
@@ -0,0 +1,111 @@
+package se233.audioconverterapp1.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AudioHeaderParserTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void wavUsesPcmBitrate() throws Exception {
+        MediaInfo info = parse("a.wav", TestAudio.wav(TestAudio.PCM, 2, 48000, 24, new byte[48000 * 6 / 2]));
+
+        assertEquals("pcm_s24le", info.getCodec());
+        assertEquals(48000, info.getSampleRate());
+        assertEquals(2, info.getChannels());
+        assertEquals(0.5, info.getDurationSeconds(), 1e-9);
+        assertEquals(48000L * 2 * 24, info.getBitrate());
+    }
+
+    @Test
+    void flacReadsStreamInfo() throws Exception {
+        byte[] flac = TestAudio.flac(44100, 2, 16, 44100 * 3, 1000);
+        MediaInfo info = parse("a.flac", flac);
+
+        assertEquals("flac", info.getCodec());
+        assertEquals(44100, info.getSampleRate());
+        assertEquals(2, info.getChannels());
+        assertEquals(3.0, info.getDurationSeconds(), 1e-9);
+        assertEquals((long) (flac.length * 8 / 3.0), info.getBitrate());
+    }
+
+    @Test
+    void flacWithoutSampleCountIsLeftToFfprobe() throws Exception {
+        assertNull(parse("stream.flac", TestAudio.flac(44100, 2, 16, 0, 1000)));
+    }
+
+    @Test
+    void cbrMp3DurationComesFromSize() throws Exception {
+        MediaInfo info = parse("cbr.mp3", TestAudio.mp3(100, false, 0));
+
+        assertEquals("mp3", info.getCodec());
+        assertEquals(44100, info.getSampleRate());
+        assertEquals(2, info.getChannels());
+        assertEquals(128000, info.getBitrate());
+        assertEquals(100 * TestAudio.MP3_FRAME_128K * 8 / 128000.0, info.getDurationSeconds(), 1e-9);
+    }
+
+    @Test
+    void xingFrameCountGivesExactDuration() throws Exception {
+        MediaInfo info = parse("vbr.mp3", TestAudio.mp3(50, true, 500));
+
+        assertEquals(1, info.getChannels());
+        assertEquals(500 * 1152 / 44100.0, info.getDurationSeconds(), 1e-9);
+    }
+
+    @Test
+    void skipsId3v2AndId3v1Tags() throws Exception {
+        byte[] id3v1 = new byte[128];
+        System.arraycopy("TAG".getBytes(StandardCharsets.US_ASCII), 0, id3v1, 0, 3);
+        byte[] tagged = TestAudio.concat(TestAudio.id3v2(300), TestAudio.mp3(100, false, 0), id3v1);
+
+        MediaInfo info = parse("tagged.mp3", tagged);
+
+        assertNotNull(info);
+        assertEquals(100 * TestAudio.MP3_FRAME_128K * 8 / 128000.0, info.getDurationSeconds(), 1e-9);
+    }
+
+    @Test
+    void m4aReadsTrackHeaderAndDecoderConfig() throws Exception {
+        MediaInfo info = parse("a.m4a", TestAudio.m4a("M4A ", 44100, 2, 44100 * 2, 128000, 1000));
+
+        assertEquals("aac", info.getCodec());
+        assertEquals(44100, info.getSampleRate());
+        assertEquals(2, info.getChannels());
+        assertEquals(2.0, info.getDurationSeconds(), 1e-9);
+        assertEquals(128000, info.getBitrate());
+    }
+
+    @Test
+    void m4aWithoutAverageBitrateUsesMdatSize() throws Exception {
+        MediaInfo info = parse("b.m4a", TestAudio.m4a("M4A ", 48000, 1, 48000 * 4, 0, 64000));
+
+        assertEquals(1, info.getChannels());
+        assertEquals(48000, info.getSampleRate());
+        assertEquals(64000 * 8 / 4, info.getBitrate());
+    }
+
+    @Test
+    void unknownOrCorruptFilesReturnNull() throws Exception {
+        assertNull(parse("text.mp3", "hello, this is not audio".getBytes(StandardCharsets.US_ASCII)));
+        assertNull(parse("empty.wav", new byte[0]));
+        // ขนาด box เกินไฟล์
+        byte[] broken = TestAudio.m4a("M4A ", 44100, 2, 44100, 128000, 100);
+        assertNull(parse("cut.m4a", Arrays.copyOf(broken, broken.length - 50)));
+    }
+
+    private MediaInfo parse(String name, byte[] bytes) throws Exception {
+        File file = TestAudio.write(dir, name, bytes);
+        return AudioHeaderParser.parse(file);
+    }
+}
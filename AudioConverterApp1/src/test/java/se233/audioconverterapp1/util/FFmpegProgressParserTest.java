@@ -0,0 +1,83 @@
+package se233.audioconverterapp1.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FFmpegProgressParserTest {
+    // สองชุดแรกของ ffmpeg -progress จริง (ย่อ) ตามด้วยชุดสุดท้าย
+    private static final String OUTPUT = """
+            bitrate=N/A
+            total_size=N/A
+            out_time_us=N/A
+            speed=N/A
+            progress=continue
+            bitrate= 128.0kbits/s
+            total_size=262144
+            out_time_us=16384000
+            out_time_ms=16384000
+            out_time=00:00:16.384000
+            speed=32.7x
+            progress=continue
+            total_size=1048576
+            out_time_us=65536000
+            speed= 30.05x
+            progress=end
+            """;
+
+    @Test
+    void readsEachBlockAndTheEnd() throws Exception {
+        FFmpegProgressParser parser = new FFmpegProgressParser();
+        List<Double> times = new ArrayList<>();
+        parser.parse(new ByteArrayInputStream(OUTPUT.getBytes(StandardCharsets.US_ASCII)), p -> {
+            times.add(p.getOutTimeSeconds());
+            return true;
+        });
+
+        assertEquals(List.of(0.0, 16.384, 65.536), times);
+        assertEquals(1048576, parser.getTotalSize());
+        assertEquals(30.05, parser.getSpeed(), 1e-9);
+        assertTrue(parser.isEnded());
+        assertEquals(3, parser.getUpdateCount());
+        assertEquals(0, parser.getMalformedCount());
+    }
+
+    @Test
+    void linesSplitAcrossReadsAndCrLfAreJoined() {
+        FFmpegProgressParser parser = new FFmpegProgressParser();
+        byte[] bytes = OUTPUT.replace("\n", "\r\n").getBytes(StandardCharsets.US_ASCII);
+        for (byte b : bytes) parser.feed(new byte[] {b}, 0, 1); // ทีละ byte
+
+        assertEquals(65536000, parser.getOutTimeUs());
+        assertEquals(3, parser.getUpdateCount());
+        assertTrue(parser.isEnded());
+    }
+
+    @Test
+    void listenerCanStopReading() throws Exception {
+        FFmpegProgressParser parser = new FFmpegProgressParser();
+        parser.parse(new ByteArrayInputStream(OUTPUT.getBytes(StandardCharsets.US_ASCII)), _ -> false);
+
+        assertEquals(1, parser.getUpdateCount());
+        assertFalse(parser.isEnded());
+    }
+
+    @Test
+    void oldOutTimeMsKeyAndBadValues() {
+        FFmpegProgressParser parser = new FFmpegProgressParser();
+        String text = "out_time_ms=2500000\nspeed=fast\ntotal_size=12a\n" + "x".repeat(300) + "=1\nprogress=continue\n";
+        parser.feed(text.getBytes(StandardCharsets.US_ASCII), 0, text.length());
+
+        assertEquals(2.5, parser.getOutTimeSeconds(), 1e-9);
+        assertEquals(2, parser.getMalformedCount()); // speed และ total_size (บรรทัดยาวเกินถูกข้ามเงียบ ๆ)
+        assertEquals(-1, parser.getTotalSize());
+        assertEquals(1, parser.getUpdateCount());
+    }
+}
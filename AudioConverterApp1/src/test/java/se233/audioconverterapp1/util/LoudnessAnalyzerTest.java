@@ -0,0 +1,70 @@
+package se233.audioconverterapp1.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoudnessAnalyzerTest {
+    // ท้าย stderr ของรอบวัด (loudnorm พิมพ์ JSON หลังบรรทัดอื่นของ ffmpeg)
+    private static final String OUTPUT = """
+            size=N/A time=00:03:12.00 bitrate=N/A speed= 210x
+            [Parsed_loudnorm_0 @ 0x55d5c1e0] {"not": "this block"}
+            [Parsed_loudnorm_0 @ 0x55d5c1e0]
+            {
+            	"input_i" : "-14.52",
+            	"input_tp" : "-0.31",
+            	"input_lra" : "6.10",
+            	"input_thresh" : "-24.80",
+            	"output_i" : "-23.02",
+            	"output_tp" : "-9.62",
+            	"output_lra" : "5.90",
+            	"output_thresh" : "-33.27",
+            	"normalization_type" : "dynamic",
+            	"target_offset" : "0.02"
+            }
+            """;
+
+    @Test
+    void parsesLastJsonBlock() {
+        LoudnessAnalyzer.Measurement m = LoudnessAnalyzer.parse(OUTPUT);
+
+        assertNotNull(m);
+        assertEquals(-14.52, m.inputI(), 1e-9);
+        assertEquals(-0.31, m.inputTP(), 1e-9);
+        assertEquals(6.10, m.inputLRA(), 1e-9);
+        assertEquals(-24.80, m.inputThresh(), 1e-9);
+        assertEquals(0.02, m.targetOffset(), 1e-9);
+        assertTrue(m.isMeasurable());
+    }
+
+    @Test
+    void silentFileIsNotMeasurable() {
+        String silent = OUTPUT.replace("\"-14.52\"", "\"-inf\"").replace("\"-0.31\"", "\"-inf\"");
+        LoudnessAnalyzer.Measurement m = LoudnessAnalyzer.parse(silent);
+
+        assertNotNull(m);
+        assertEquals(Double.NEGATIVE_INFINITY, m.inputI());
+        assertFalse(m.isMeasurable());
+        assertNull(LoudnessAnalyzer.filter(m)); // เข้ารหัสโดยไม่ปรับ
+    }
+
+    @Test
+    void incompleteOrGarbledOutputGivesNull() {
+        assertNull(LoudnessAnalyzer.parse("ffmpeg: error while decoding"));
+        assertNull(LoudnessAnalyzer.parse(OUTPUT.replace("\"target_offset\" : \"0.02\"", "")));
+        assertNull(LoudnessAnalyzer.parse(OUTPUT.replace("\"6.10\"", "\"six\"")));
+        assertNull(LoudnessAnalyzer.parse(OUTPUT.substring(0, OUTPUT.lastIndexOf('}'))));
+    }
+
+    @Test
+    void filterPassesMeasuredValuesForLinearMode() {
+        String filter = LoudnessAnalyzer.filter(LoudnessAnalyzer.parse(OUTPUT));
+
+        assertEquals("loudnorm=I=-23.0:TP=-1.0:LRA=7.0:measured_I=-14.52:measured_TP=-0.31:measured_LRA=6.1"
+                + ":measured_thresh=-24.8:offset=0.02:linear=true:print_format=none", filter);
+    }
+}
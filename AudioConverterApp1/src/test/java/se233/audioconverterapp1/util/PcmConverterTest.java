@@ -0,0 +1,124 @@
+package se233.audioconverterapp1.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PcmConverterTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void downmixesStereoToMonoByAveraging() throws Exception {
+        // L = 0.5, R = -0.25 -> (0.5 - 0.25) / 2 = 0.125 = 4096
+        File output = convert(TestAudio.wav(TestAudio.PCM, 2, 8000, 16,
+                TestAudio.pcm16((short) 16384, (short) -8192, (short) 0, (short) 32767)), 8000, 1);
+
+        assertArrayEquals(new short[] {4096, 16384}, TestAudio.readPcm16(output));
+        WavHeader header = WavHeader.read(output);
+        assertEquals(1, header.getChannels());
+        assertEquals(8000, header.getSampleRate());
+        assertEquals(2, header.getFrameCount());
+    }
+
+    @Test
+    void duplicatesMonoToStereo() throws Exception {
+        File output = convert(TestAudio.wav(TestAudio.PCM, 1, 8000, 16,
+                TestAudio.pcm16((short) 1000, (short) -2000)), 8000, 2);
+
+        assertArrayEquals(new short[] {1000, 1000, -2000, -2000}, TestAudio.readPcm16(output));
+    }
+
+    @Test
+    void widensUnsigned8BitTo16Bit() throws Exception {
+        // 8 บิตเป็น unsigned: 192 = +0.5, 64 = -0.5, 128 = 0
+        File output = convert(TestAudio.wav(TestAudio.PCM, 1, 8000, 8, new byte[] {(byte) 192, 64, (byte) 128}),
+                8000, 1);
+
+        assertArrayEquals(new short[] {16384, -16384, 0}, TestAudio.readPcm16(output));
+    }
+
+    @Test
+    void clipsFloatSamplesOutsideFullScale() throws Exception {
+        ByteBuffer floats = TestAudio.le(12).putFloat(0.25f).putFloat(-1.0f).putFloat(2.0f);
+        File output = convert(TestAudio.wav(TestAudio.FLOAT, 1, 8000, 32, floats.array()), 8000, 1);
+
+        // ค่าเกิน 1.0 ถูกตัดที่ค่าสูงสุดของ 16 บิต
+        assertArrayEquals(new short[] {8192, -32768, 32767}, TestAudio.readPcm16(output));
+    }
+
+    @Test
+    void halvingSampleRateKeepsConstantLevel() throws Exception {
+        short[] samples = new short[4800];
+        Arrays.fill(samples, (short) 10000);
+        File output = convert(TestAudio.wav(TestAudio.PCM, 1, 48000, 16, TestAudio.pcm16(samples)), 24000, 1);
+
+        short[] result = TestAudio.readPcm16(output);
+        assertEquals(2400, result.length);
+        assertEquals(24000, WavHeader.read(output).getSampleRate());
+        // ห่างจากขอบไฟล์ (ที่ filter เห็นความเงียบ) ระดับต้องเท่าเดิม เพราะ weight รวมกันได้ 1
+        for (int i = 100; i < result.length - 100; i++) assertEquals(10000, result[i], 2);
+    }
+
+    @Test
+    void upsamplingFollowsSineWave() throws Exception {
+        int inRate = 44100, outRate = 48000;
+        double frequency = 1000;
+        short[] samples = new short[inRate / 10];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) Math.round(16000 * Math.sin(2 * Math.PI * frequency * i / inRate));
+        }
+        File output = convert(TestAudio.wav(TestAudio.PCM, 1, inRate, 16, TestAudio.pcm16(samples)), outRate, 1);
+
+        short[] result = TestAudio.readPcm16(output);
+        assertEquals(outRate / 10, result.length);
+        for (int n = 200; n < result.length - 200; n++) {
+            double expected = 16000 * Math.sin(2 * Math.PI * frequency * n / outRate);
+            assertEquals(expected, result[n], 40, "frame " + n);
+        }
+    }
+
+    @Test
+    void cancellingDeletesPartialOutput() throws Exception {
+        // มากกว่า buffer 64 KB ของผลลัพธ์ ความคืบหน้าจึงถูกรายงานก่อนจบ
+        File input = TestAudio.write(dir, "long.wav",
+                TestAudio.wav(TestAudio.PCM, 2, 44100, 16, new byte[100_000 * 4]));
+        File target = dir.resolve("out.wav").toFile();
+
+        boolean completed = PcmConverter.convert(WavHeader.read(input), input, target, 44100, 2, _ -> false);
+
+        assertFalse(completed);
+        assertFalse(target.exists());
+    }
+
+    @Test
+    void decidesWhatItCanConvert() throws Exception {
+        WavHeader surround = WavHeader.read(TestAudio.write(dir, "6ch.wav",
+                TestAudio.wav(TestAudio.PCM, 6, 48000, 16, new byte[12 * 10])));
+        WavHeader stereo = WavHeader.read(TestAudio.write(dir, "2ch.wav",
+                TestAudio.wav(TestAudio.PCM, 2, 44100, 16, new byte[4 * 10])));
+
+        assertFalse(PcmConverter.canConvert(surround, 48000, 2)); // 5.1 -> stereo ต้องใช้ ffmpeg
+        assertTrue(PcmConverter.canConvert(surround, 48000, 1));
+        assertTrue(PcmConverter.canConvert(stereo, 22050, 1));
+        assertFalse(PcmConverter.canConvert(null, 44100, 2));
+        assertTrue(PcmConverter.matches(stereo, 44100, 2));
+        assertFalse(PcmConverter.matches(stereo, 48000, 2));
+    }
+
+    private File convert(byte[] wav, int sampleRate, int channels) throws Exception {
+        File input = TestAudio.write(dir, "in.wav", wav);
+        File output = dir.resolve("out.wav").toFile();
+        assertTrue(PcmConverter.convert(WavHeader.read(input), input, output, sampleRate, channels, _ -> true));
+        return output;
+    }
+}
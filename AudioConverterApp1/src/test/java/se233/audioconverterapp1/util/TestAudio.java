@@ -0,0 +1,180 @@
+package se233.audioconverterapp1.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// สร้างไฟล์เสียงเล็ก ๆ ในหน่วยความจำสำหรับเทสต์ (หัวไฟล์ตามสเปก ข้อมูลเสียงเท่าที่เทสต์ต้องใช้)
+final class TestAudio {
+    static final int PCM = 1;
+    static final int FLOAT = 3;
+    static final int ADPCM = 2;
+    static final int EXTENSIBLE = 0xFFFE;
+
+    private TestAudio() { }
+
+    // WAV แบบ "fmt " 16 byte ตามด้วย chunk อื่น (ถ้ามี) แล้วจึง "data"
+    static byte[] wav(int format, int channels, int sampleRate, int bits, byte[] data, byte[]... extraChunks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] fmt = le(16)
+                .putShort((short) format).putShort((short) channels).putInt(sampleRate)
+                .putInt(sampleRate * channels * bits / 8).putShort((short) (channels * bits / 8))
+                .putShort((short) bits).array();
+        writeChunk(out, "fmt ", fmt);
+        for (byte[] chunk : extraChunks) out.writeBytes(chunk);
+        writeChunk(out, "data", data);
+        return riff(out.toByteArray());
+    }
+
+    // WAVE_FORMAT_EXTENSIBLE: "fmt " 40 byte ที่ SubFormat GUID ขึ้นต้นด้วยรหัสฟอร์แมตจริง
+    static byte[] extensibleWav(int subFormat, int channels, int sampleRate, int bits, byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] fmt = le(40)
+                .putShort((short) EXTENSIBLE).putShort((short) channels).putInt(sampleRate)
+                .putInt(sampleRate * channels * bits / 8).putShort((short) (channels * bits / 8))
+                .putShort((short) bits).putShort((short) 22).putShort((short) bits).putInt(0)
+                .putShort((short) subFormat).array();
+        writeChunk(out, "fmt ", fmt);
+        writeChunk(out, "data", data);
+        return riff(out.toByteArray());
+    }
+
+    // chunk ที่ไม่เกี่ยวกับเสียง (เช่น LIST) ขนาดเป็นเลขคี่ได้ จะเติม byte ให้เป็นเลขคู่ตามสเปก
+    static byte[] chunk(String id, byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeChunk(out, id, body);
+        return out.toByteArray();
+    }
+
+    // sample 16 บิตแบบ little-endian เรียงตามเฟรม (ช่องเสียงสลับกัน)
+    static byte[] pcm16(short... samples) {
+        ByteBuffer buf = le(samples.length * 2);
+        for (short sample : samples) buf.putShort(sample);
+        return buf.array();
+    }
+
+    // FLAC: "fLaC" + STREAMINFO (บล็อกสุดท้าย) ตามด้วยข้อมูลเสียงปลอมยาว audioBytes
+    static byte[] flac(int sampleRate, int channels, int bits, long totalSamples, int audioBytes) {
+        ByteBuffer buf = be(4 + 4 + 34 + audioBytes);
+        buf.put("fLaC".getBytes(StandardCharsets.US_ASCII));
+        buf.putInt(0x80 << 24 | 34);                       // last-metadata-block, type 0, ขนาด 34
+        buf.putShort((short) 4096).putShort((short) 4096); // min/max block size
+        buf.put(new byte[6]);                              // min/max frame size (ไม่รู้)
+        buf.putLong((long) sampleRate << 44 | (long) (channels - 1) << 41 | (long) (bits - 1) << 36 | totalSamples);
+        return buf.array();                                // MD5 และข้อมูลเสียงเป็น 0
+    }
+
+    // MPEG-1 layer III ที่ 44.1 kHz: frame ละ 417 byte ที่ 128 kbit/s (ไม่มี padding)
+    static final int MP3_FRAME_128K = 417;
+
+    // frame ของ mp3 ติดกัน count frame (ข้อมูลเสียงเป็น 0) frame แรกใส่ tag Xing ได้ถ้า xingFrames > 0
+    static byte[] mp3(int count, boolean mono, long xingFrames) {
+        ByteBuffer buf = be(count * MP3_FRAME_128K);
+        for (int i = 0; i < count; i++) {
+            int start = i * MP3_FRAME_128K;
+            buf.putInt(start, 0xFFFB9000 | (mono ? 0xC0 : 0x00));
+        }
+        if (xingFrames > 0) {
+            int xing = 4 + (mono ? 17 : 32); // หลัง side information
+            buf.put(xing, "Xing".getBytes(StandardCharsets.US_ASCII));
+            buf.putInt(xing + 4, 0x3);       // มีจำนวน frame และจำนวน byte
+            buf.putInt(xing + 8, (int) xingFrames);
+            buf.putInt(xing + 12, count * MP3_FRAME_128K);
+        }
+        return buf.array();
+    }
+
+    // ID3v2.3 ยาว bodySize byte (ขนาดเก็บแบบ syncsafe)
+    static byte[] id3v2(int bodySize) {
+        ByteBuffer buf = be(10 + bodySize);
+        buf.put("ID3".getBytes(StandardCharsets.US_ASCII)).put((byte) 3).put((byte) 0).put((byte) 0);
+        buf.put((byte) (bodySize >> 21 & 0x7F)).put((byte) (bodySize >> 14 & 0x7F))
+                .put((byte) (bodySize >> 7 & 0x7F)).put((byte) (bodySize & 0x7F));
+        return buf.array();
+    }
+
+    // M4A ที่มี track เสียง AAC-LC หนึ่ง track: ftyp, moov (mvhd, trak/mdia/mdhd+hdlr+minf/stbl/stsd/mp4a/esds), mdat
+    static byte[] m4a(String brand, int sampleRate, int channels, long durationUnits, long avgBitrate, int mdatBytes,
+                      byte[]... extraTracks) {
+        byte[] ftyp = box("ftyp", be(8).put(brand.getBytes(StandardCharsets.US_ASCII)).putInt(0).array());
+        byte[] mvhd = box("mvhd", be(100).putInt(12, 1000).putInt(16, (int) (durationUnits * 1000 / sampleRate))
+                .array());
+        byte[] mdhd = box("mdhd", be(24).putInt(12, sampleRate).putInt(16, (int) durationUnits).array());
+        byte[] hdlr = box("hdlr", be(25).put(8, "soun".getBytes(StandardCharsets.US_ASCII)).array());
+
+        int rateIndex = switch (sampleRate) {
+            case 48000 -> 3;
+            case 44100 -> 4;
+            default -> 8; // 16000
+        };
+        int config = 2 << 11 | rateIndex << 7 | channels << 3; // AudioSpecificConfig: AAC-LC
+        ByteBuffer esds = be(4 + 2 + 3 + 2 + 13 + 2 + 2);
+        esds.putInt(0);                                                     // version/flags
+        esds.put((byte) 0x03).put((byte) (3 + 15 + 4)).putShort((short) 1).put((byte) 0); // ES_Descriptor
+        esds.put((byte) 0x04).put((byte) (13 + 4)).put((byte) 0x40).put((byte) 0x15)  // DecoderConfig: AAC
+                .put(new byte[3]).putInt((int) avgBitrate).putInt((int) avgBitrate);
+        esds.put((byte) 0x05).put((byte) 2).putShort((short) config);      // DecoderSpecificInfo
+        byte[] entry = box("mp4a", concat(be(28).putShort(6, (short) 1).putShort(16, (short) channels)
+                .putShort(18, (short) 16).putInt(24, sampleRate << 16).array(), box("esds", esds.array())));
+        byte[] stsd = box("stsd", concat(be(8).putInt(4, 1).array(), entry));
+        byte[] trak = box("trak", box("mdia", mdhd, hdlr, box("minf", box("stbl", stsd))));
+        return concat(ftyp, box("moov", mvhd, trak, concat(extraTracks)), box("mdat", new byte[mdatBytes]));
+    }
+
+    // trak ที่มีแค่ hdlr (พอให้รู้ชนิด เช่น "vide" หรือ "text")
+    static byte[] track(String handler) {
+        return box("trak", box("mdia", box("hdlr", be(25).put(8, handler.getBytes(StandardCharsets.US_ASCII)).array())));
+    }
+
+    static byte[] box(String type, byte[]... children) {
+        byte[] body = concat(children);
+        return concat(be(8).putInt(8 + body.length).put(type.getBytes(StandardCharsets.US_ASCII)).array(), body);
+    }
+
+    static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) out.writeBytes(part);
+        return out.toByteArray();
+    }
+
+    static ByteBuffer le(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    static ByteBuffer be(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    static File write(Path dir, String name, byte[] bytes) throws IOException {
+        return Files.write(dir.resolve(name), bytes).toFile();
+    }
+
+    // อ่าน sample 16 บิตจากไฟล์ WAV ที่ PcmConverter เขียน (หัวไฟล์ 44 byte)
+    static short[] readPcm16(File file) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        short[] samples = new short[(buf.limit() - 44) / 2];
+        for (int i = 0; i < samples.length; i++) samples[i] = buf.getShort(44 + i * 2);
+        return samples;
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String id, byte[] body) {
+        out.writeBytes(id.getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(le(4).putInt(body.length).array());
+        out.writeBytes(body);
+        if ((body.length & 1) != 0) out.write(0);
+    }
+
+    private static byte[] riff(byte[] chunks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("RIFF".getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(le(4).putInt(4 + chunks.length).array());
+        out.writeBytes("WAVE".getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(chunks);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package se233.audioconverterapp1.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WavHeaderTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsPcm16Stereo() throws Exception {
+        File file = TestAudio.write(dir, "a.wav",
+                TestAudio.wav(TestAudio.PCM, 2, 44100, 16, new byte[44100 * 4]));
+
+        WavHeader header = WavHeader.read(file);
+
+        assertNotNull(header);
+        assertEquals(44100, header.getSampleRate());
+        assertEquals(2, header.getChannels());
+        assertEquals(16, header.getBitsPerSample());
+        assertFalse(header.isFloatingPoint());
+        assertEquals(44, header.getDataOffset());
+        assertEquals(44100, header.getFrameCount());
+        assertEquals(1.0, header.getDurationSeconds(), 1e-9);
+        assertEquals("pcm_s16le", header.getCodec());
+    }
+
+    @Test
+    void skipsOtherChunksIncludingPadByte() throws Exception {
+        // LIST ขนาด 5 byte ตามด้วย byte เติม 1 byte ก่อนถึง data
+        byte[] list = TestAudio.chunk("LIST", new byte[5]);
+        File file = TestAudio.write(dir, "list.wav",
+                TestAudio.wav(TestAudio.PCM, 1, 8000, 16, new byte[1600], list));
+
+        WavHeader header = WavHeader.read(file);
+
+        assertNotNull(header);
+        assertEquals(12 + 24 + 14 + 8, header.getDataOffset());
+        assertEquals(800, header.getFrameCount());
+    }
+
+    @Test
+    void readsExtensibleAndFloatFormats() throws Exception {
+        File extensible = TestAudio.write(dir, "ext.wav",
+                TestAudio.extensibleWav(TestAudio.PCM, 2, 48000, 24, new byte[48000 * 6]));
+        File floats = TestAudio.write(dir, "float.wav",
+                TestAudio.wav(TestAudio.FLOAT, 1, 22050, 32, new byte[22050 * 4]));
+        File bytes = TestAudio.write(dir, "u8.wav",
+                TestAudio.wav(TestAudio.PCM, 1, 8000, 8, new byte[8000]));
+
+        assertEquals("pcm_s24le", WavHeader.read(extensible).getCodec());
+        assertEquals(48000, WavHeader.read(extensible).getFrameCount());
+        WavHeader floatHeader = WavHeader.read(floats);
+        assertTrue(floatHeader.isFloatingPoint());
+        assertEquals("pcm_f32le", floatHeader.getCodec());
+        assertEquals("pcm_u8", WavHeader.read(bytes).getCodec());
+    }
+
+    @Test
+    void clampsDataSizeToWholeFramesInFile() throws Exception {
+        // ไฟล์ที่เขียนไม่จบ: หัวบอก 1000 byte แต่มีจริง 403 byte
+        byte[] wav = TestAudio.wav(TestAudio.PCM, 2, 8000, 16, new byte[1000]);
+        byte[] truncated = Arrays.copyOf(wav, 44 + 403);
+        File file = TestAudio.write(dir, "short.wav", truncated);
+
+        WavHeader header = WavHeader.read(file);
+
+        assertNotNull(header);
+        assertEquals(400, header.getDataLength());
+        assertEquals(100, header.getFrameCount());
+    }
+
+    @Test
+    void rejectsNonPcmAndNonWav() throws Exception {
+        File adpcm = TestAudio.write(dir, "adpcm.wav",
+                TestAudio.wav(TestAudio.ADPCM, 1, 8000, 4, new byte[100]));
+        File odd = TestAudio.write(dir, "12bit.wav",
+                TestAudio.wav(TestAudio.PCM, 1, 8000, 12, new byte[100]));
+        File other = TestAudio.write(dir, "x.wav", "not a riff file at all".getBytes());
+
+        assertNull(WavHeader.read(adpcm));
+        assertNull(WavHeader.read(odd));
+        assertNull(WavHeader.read(other));
+    }
+}